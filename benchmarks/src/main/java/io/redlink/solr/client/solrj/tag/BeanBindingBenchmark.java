@@ -0,0 +1,131 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Compares the binding of tagged documents to beans by the
+ * {@link DocumentObjectBinder} with the {@link BeanBinder} used by
+ * {@link Tag#getDocs(Class)} and {@link TagResponse#getBean(Object, Class)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanBindingBenchmark {
+
+    /**
+     * Bean for the documents created by {@link TagPayloads}
+     */
+    public static class Entity {
+        @Field
+        String id;
+        @Field("field_0")
+        String field0;
+        @Field("field_1")
+        String field1;
+        @Field("field_2")
+        String field2;
+        @Field("field_3")
+        String field3;
+        @Field("field_4")
+        String field4;
+    }
+
+    @Param({"1000", "10000"})
+    public int tags;
+
+    @Param({"100", "1000"})
+    public int docs;
+
+    private NamedList<Object> namedList;
+    private TagResponse response;
+    private DocumentObjectBinder documentObjectBinder;
+    private BeanBinder<Entity> beanBinder;
+
+    @Setup
+    public void setup() {
+        namedList = TagPayloads.createResponse(tags, 1, docs, 5, 42L);
+        response = TagPayloads.toTagResponse(namedList);
+        documentObjectBinder = new DocumentObjectBinder();
+        beanBinder = BeanBinder.of(Entity.class);
+    }
+
+    /**
+     * Eager binding of all results via {@link TagResponse#getBeans(Class)}
+     */
+    @Benchmark
+    public Object getBeans() {
+        return response.getBeans(Entity.class);
+    }
+
+    /**
+     * Binding of every document of every tag by the {@link DocumentObjectBinder}
+     */
+    @Benchmark
+    public void documentObjectBinderPerTag(Blackhole bh) {
+        for(Tag tag : response.getTags()){
+            for(SolrDocument doc : tag.getDocs()){
+                bh.consume(documentObjectBinder.getBean(Entity.class, doc));
+            }
+        }
+    }
+
+    /**
+     * Binding of every document of every tag by the {@link BeanBinder}
+     * (without memorisation)
+     */
+    @Benchmark
+    public void beanBinderPerTag(Blackhole bh) {
+        for(Tag tag : response.getTags()){
+            for(SolrDocument doc : tag.getDocs()){
+                bh.consume(beanBinder.bind(doc, null));
+            }
+        }
+    }
+
+    /**
+     * {@link Tag#getDocs(Class)} on a new response (every document is bound
+     * once and memorised)
+     */
+    @Benchmark
+    public void tagDocsNewResponse(Blackhole bh) {
+        for(Tag tag : TagPayloads.toTagResponse(namedList).getTags()){
+            for(Entity entity : tag.getDocs(Entity.class)){
+                bh.consume(entity);
+            }
+        }
+    }
+
+    /**
+     * {@link Tag#getDocs(Class)} on a response with memorised beans
+     */
+    @Benchmark
+    public void tagDocsMemorised(Blackhole bh) {
+        for(Tag tag : response.getTags()){
+            for(Entity entity : tag.getDocs(Entity.class)){
+                bh.consume(entity);
+            }
+        }
+    }
+}
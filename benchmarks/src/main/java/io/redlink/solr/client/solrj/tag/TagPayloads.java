@@ -0,0 +1,105 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * Creates synthetic responses of the SolrTextTagger request handler
+ */
+final class TagPayloads {
+
+    static final String ID_FIELD = "id";
+
+    private TagPayloads() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates a response
+     * @param numTags the number of tags
+     * @param idsPerTag the number of ids referenced by every tag
+     * @param numDocs the number of documents (ids of tags are randomly
+     * selected from those)
+     * @param numFields the number of fields of every document (in addition
+     * to the id field)
+     * @param seed the random seed
+     * @return the response
+     */
+    static NamedList<Object> createResponse(int numTags, int idsPerTag, int numDocs, int numFields, long seed) {
+        Random rnd = new Random(seed);
+        NamedList<Object> header = new SimpleOrderedMap<>();
+        header.add("status", 0);
+        header.add("QTime", rnd.nextInt(100));
+        List<NamedList<Object>> tags = new ArrayList<>(numTags);
+        int offset = 0;
+        for(int i = 0; i < numTags; i++){
+            offset += 1 + rnd.nextInt(20);
+            int end = offset + 3 + rnd.nextInt(15);
+            NamedList<Object> tag = new NamedList<>();
+            tag.add("startOffset", offset);
+            tag.add("endOffset", end);
+            List<Object> ids = new ArrayList<>(idsPerTag);
+            for(int j = 0; j < idsPerTag; j++){
+                ids.add(id(rnd.nextInt(numDocs)));
+            }
+            tag.add("ids", ids);
+            tags.add(tag);
+            offset = end;
+        }
+        SolrDocumentList docs = new SolrDocumentList();
+        for(int i = 0; i < numDocs; i++){
+            SolrDocument doc = new SolrDocument();
+            doc.setField(ID_FIELD, id(i));
+            for(int f = 0; f < numFields; f++){
+                doc.setField("field_" + f, "value " + rnd.nextInt(100000));
+            }
+            docs.add(doc);
+        }
+        docs.setNumFound(numDocs);
+        docs.setStart(0);
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("responseHeader", header);
+        res.add("tagsCount", numTags);
+        res.add("tags", tags);
+        res.add("response", docs);
+        return res;
+    }
+
+    /**
+     * Serializes a response in the javabin format
+     * @param res the response
+     * @return the javabin bytes
+     */
+    static byte[] toJavabin(NamedList<Object> res) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            new JavaBinCodec().marshal(res, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a {@link TagResponse} for the parsed response
+     */
+    static TagResponse toTagResponse(NamedList<Object> res) {
+        TagResponse response = new TagResponse(null);
+        response.setDocIdField(ID_FIELD);
+        response.setResponse(res);
+        return response;
+    }
+
+    private static String id(int i) {
+        return "doc-" + i;
+    }
+}
@@ -0,0 +1,142 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Benchmarks the parsing of tag responses and the access to tags and their
+ * documents. Run with <code>-prof gc</code> to report the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagResponseBenchmark {
+
+    @Param({"1000", "10000"})
+    public int tags;
+
+    @Param({"1", "5"})
+    public int idsPerTag;
+
+    @Param({"100", "1000"})
+    public int docs;
+
+    @Param({"5"})
+    public int fields;
+
+    private NamedList<Object> namedList;
+    private byte[] javabin;
+    private TagResponse response;
+
+    @Setup
+    public void setup() {
+        namedList = TagPayloads.createResponse(tags, idsPerTag, docs, fields, 42L);
+        javabin = TagPayloads.toJavabin(namedList);
+        response = TagPayloads.toTagResponse(namedList);
+    }
+
+    /**
+     * Decoding of the javabin response only
+     */
+    @Benchmark
+    public NamedList<Object> decodeJavabin() {
+        return new BinaryResponseParser().processResponse(new ByteArrayInputStream(javabin), null);
+    }
+
+    /**
+     * Decoding of the javabin response and {@link TagResponse#setResponse(NamedList)}
+     */
+    @Benchmark
+    public TagResponse decodeAndSetResponse() {
+        return TagPayloads.toTagResponse(new BinaryResponseParser()
+                .processResponse(new ByteArrayInputStream(javabin), null));
+    }
+
+    /**
+     * {@link TagResponse#setResponse(NamedList)} of an already decoded response
+     */
+    @Benchmark
+    public TagResponse setResponse() {
+        return TagPayloads.toTagResponse(namedList);
+    }
+
+    /**
+     * Decoding by the {@link StreamingTagResponseParser}
+     */
+    @Benchmark
+    public NamedList<Object> decodeStreaming(Blackhole bh) {
+        return new StreamingTagResponseParser(new TagStreamingCallback() {
+
+            @Override
+            public void onTag(int start, int end, List<Object> ids) {
+                bh.consume(start);
+                bh.consume(end);
+                bh.consume(ids);
+            }
+
+            @Override
+            public void onDocument(SolrDocument doc) {
+                bh.consume(doc);
+            }
+        }).processResponse(new ByteArrayInputStream(javabin), null);
+    }
+
+    /**
+     * Iteration over the tags and their documents via {@link Tag#getDocs()}
+     */
+    @Benchmark
+    public void iterateTagDocs(Blackhole bh) {
+        for(Tag tag : response.getTags()){
+            bh.consume(tag.getStart());
+            bh.consume(tag.getEnd());
+            for(SolrDocument doc : tag.getDocs()){
+                bh.consume(doc);
+            }
+        }
+    }
+
+    /**
+     * Iteration over the tags and their ids via {@link Tag#getIds()}
+     */
+    @Benchmark
+    public void iterateTagIds(Blackhole bh) {
+        for(Tag tag : response.getTags()){
+            for(Object id : tag.getIds()){
+                bh.consume(id);
+            }
+        }
+    }
+
+    /**
+     * Allocation free iteration over the offsets
+     */
+    @Benchmark
+    public void forEachTag(Blackhole bh) {
+        response.forEachTag((start, end) -> {
+            bh.consume(start);
+            bh.consume(end);
+        });
+    }
+}
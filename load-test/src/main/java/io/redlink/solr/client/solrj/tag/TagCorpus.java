@@ -0,0 +1,104 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * Creates a synthetic tagger dictionary and a corpus of documents mentioning
+ * the entries of the dictionary
+ */
+final class TagCorpus {
+
+    static final String ID_FIELD = "id";
+    static final String NAME_FIELD = "name";
+    static final String TYPE_FIELD = "type";
+    static final String POPULARITY_FIELD = "popularity";
+
+    private static final String[] TYPES = {"person", "place", "organization"};
+    private static final String CONSONANTS = "bcdfghklmnprstvz";
+    private static final String VOWELS = "aeiou";
+    private static final String[] FILLER = {"the", "of", "and", "in", "to", "was", "for", "on", "with",
+            "by", "at", "from", "that", "as", "report", "said", "after", "during", "near", "between"};
+
+    private TagCorpus() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates the documents of the dictionary. Names have one to three
+     * synthetic words. Some names are shared by several documents.
+     * @param numEntries the number of documents
+     * @param seed the random seed
+     * @return the documents
+     */
+    static List<SolrDocument> createDictionary(int numEntries, long seed) {
+        Random rnd = new Random(seed);
+        List<SolrDocument> docs = new ArrayList<>(numEntries);
+        for(int i = 0; i < numEntries; i++){
+            SolrDocument doc = new SolrDocument();
+            doc.setField(ID_FIELD, "e" + i);
+            if(i > 0 && rnd.nextInt(20) == 0){ //ambiguous name
+                doc.setField(NAME_FIELD, docs.get(rnd.nextInt(i)).getFirstValue(NAME_FIELD));
+            } else {
+                int numWords = 1 + rnd.nextInt(3);
+                StringBuilder name = new StringBuilder();
+                for(int w = 0; w < numWords; w++){
+                    if(w > 0){
+                        name.append(' ');
+                    }
+                    String word = word(rnd, 2 + rnd.nextInt(3));
+                    name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                }
+                doc.setField(NAME_FIELD, name.toString());
+            }
+            doc.setField(TYPE_FIELD, TYPES[rnd.nextInt(TYPES.length)]);
+            doc.setField(POPULARITY_FIELD, rnd.nextInt(10000));
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    /**
+     * Creates documents with filler words and mentions of dictionary names
+     * @param dictionary the dictionary documents
+     * @param numDocs the number of documents
+     * @param length the length of the documents in chars
+     * @param mentionRatio the ratio of words that start a mention
+     * @param seed the random seed
+     * @return the documents
+     */
+    static List<String> createDocuments(List<SolrDocument> dictionary, int numDocs, int length,
+            double mentionRatio, long seed) {
+        Random rnd = new Random(seed);
+        List<String> docs = new ArrayList<>(numDocs);
+        for(int i = 0; i < numDocs; i++){
+            StringBuilder doc = new StringBuilder(length + 64);
+            while(doc.length() < length){
+                if(doc.length() > 0){
+                    doc.append(rnd.nextInt(12) == 0 ? ". " : " ");
+                }
+                if(!dictionary.isEmpty() && rnd.nextDouble() < mentionRatio){
+                    doc.append(dictionary.get(rnd.nextInt(dictionary.size())).getFirstValue(NAME_FIELD));
+                } else if(rnd.nextInt(4) == 0){
+                    doc.append(word(rnd, 1 + rnd.nextInt(4)));
+                } else {
+                    doc.append(FILLER[rnd.nextInt(FILLER.length)]);
+                }
+            }
+            docs.add(doc.toString());
+        }
+        return docs;
+    }
+
+    private static String word(Random rnd, int syllables) {
+        StringBuilder word = new StringBuilder(syllables * 2);
+        for(int s = 0; s < syllables; s++){
+            word.append(CONSONANTS.charAt(rnd.nextInt(CONSONANTS.length())));
+            word.append(VOWELS.charAt(rnd.nextInt(VOWELS.length())));
+        }
+        return word.toString();
+    }
+}
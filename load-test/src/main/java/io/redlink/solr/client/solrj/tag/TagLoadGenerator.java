@@ -0,0 +1,373 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Drives {@link TagRequest}s against a tagger and reports the throughput,
+ * latency percentiles, client side allocations and heap usage.
+ * <p>
+ * By default a {@link TaggerStandIn} with a generated dictionary is started.
+ * Use <code>--url</code> to test a real tagger collection instead.
+ * <p>
+ * With a <code>--rate</code> requests are sent open-loop: request
+ * <i>n</i> is due at <code>start + n/rate</code> and its latency is measured
+ * from that time, so that queuing in the client (all
+ * <code>--concurrency</code> workers busy) is included in the latency. Without
+ * a rate every worker sends the next request as soon as the previous one
+ * completes (closed-loop).
+ * <p>
+ * Options (<code>--name=value</code>):
+ * <ul>
+ * <li><code>url</code>: base URL of a tagger collection (default: start a stand-in)
+ * <li><code>path</code>: the tag request handler path (default: <code>/tag</code>)
+ * <li><code>rate</code>: requests per second (default: <code>0</code> for closed-loop)
+ * <li><code>concurrency</code>: number of workers (default: <code>8</code>)
+ * <li><code>duration</code>, <code>warmup</code>: in seconds (default: <code>30</code>, <code>5</code>)
+ * <li><code>dictionary</code>: number of dictionary entries of the stand-in (default: <code>100000</code>)
+ * <li><code>documents</code>, <code>length</code>: number and length (chars) of the documents (default: <code>1000</code>, <code>2000</code>)
+ * <li><code>mentions</code>: ratio of words starting a mention (default: <code>0.1</code>)
+ * <li><code>overlaps</code>: the {@link Overlaps} (default: <code>NO_SUB</code>)
+ * <li><code>delay</code>: additional server side time of the stand-in in milliseconds (default: <code>0</code>)
+ * <li><code>maxErrorRate</code>: exit with status <code>1</code> if exceeded (default: <code>0</code>)
+ * <li><code>seed</code>: the random seed (default: <code>42</code>)
+ * </ul>
+ */
+public class TagLoadGenerator {
+
+    private final SolrClient client;
+    private final List<String> corpus;
+    private final CompiledTagParams params;
+    private final String path;
+    private final int concurrency;
+    private final double rate;
+    private final long seed;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong chars = new AtomicLong();
+    private final AtomicLong tags = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong next = new AtomicLong();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean allocationSupported;
+
+    /**
+     * Creates a load generator
+     * @param client the client
+     * @param corpus the documents
+     * @param params the tag params
+     * @param path the tag request handler path
+     * @param concurrency the number of workers
+     * @param rate the requests per second or <code>0</code> for closed-loop
+     * @param seed the random seed used to select documents
+     */
+    public TagLoadGenerator(SolrClient client, List<String> corpus, CompiledTagParams params, String path,
+            int concurrency, double rate, long seed) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        if(corpus == null || corpus.isEmpty()){
+            throw new IllegalArgumentException("The parsed corpus MUST NOT be NULL nor empty!");
+        }
+        if(concurrency < 1){
+            throw new IllegalArgumentException("The concurrency MUST BE >= 1 (parsed: " + concurrency + ")");
+        }
+        this.client = client;
+        this.corpus = corpus;
+        this.params = params;
+        this.path = path;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.seed = seed;
+        this.allocationSupported = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported();
+        if(allocationSupported){
+            ((com.sun.management.ThreadMXBean)threads).setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * Runs the load test. Requests started before the end of the warmup are
+     * not recorded.
+     * @param warmup the warmup time
+     * @param duration the measurement time
+     * @param unit the time unit
+     * @return the report
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public Report run(long warmup, long duration, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureStart = start + unit.toNanos(warmup);
+        long end = measureStart + unit.toNanos(duration);
+        HeapProbe heap = new HeapProbe();
+        List<Thread> workers = new ArrayList<>(concurrency);
+        for(int i = 0; i < concurrency; i++){
+            Random rnd = new Random(seed + i);
+            Thread worker = new Thread(() -> work(rnd, start, measureStart, end, heap), "tag-load-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        for(Thread worker : workers){
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - measureStart;
+        return new Report(latencies, errors.get(), chars.get(), tags.get(),
+                allocationSupported ? allocated.get() : -1, elapsed, heap.finish());
+    }
+
+    private void work(Random rnd, long start, long measureStart, long end, HeapProbe heap) {
+        long interval = rate > 0 ? (long)(TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        while(true){
+            long due;
+            if(interval > 0){
+                due = start + next.getAndIncrement() * interval;
+                if(due >= end){
+                    return;
+                }
+                for(long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()){
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                due = System.nanoTime();
+                if(due >= end){
+                    return;
+                }
+            }
+            boolean measured = due >= measureStart;
+            if(measured){
+                heap.start();
+            }
+            String content = corpus.get(rnd.nextInt(corpus.size()));
+            long allocatedBefore = measured ? allocatedBytes() : 0;
+            try {
+                TagRequest request = new TagRequest(params, content, "text/plain; charset=UTF-8");
+                if(path != null){
+                    request.setPath(path);
+                }
+                TagResponse response = request.process(client);
+                if(measured){
+                    tags.addAndGet(response.getTagCount());
+                }
+            } catch (Exception e) {
+                if(measured){
+                    errors.incrementAndGet();
+                }
+            }
+            if(measured){
+                latencies.record(System.nanoTime() - due);
+                allocated.addAndGet(allocatedBytes() - allocatedBefore);
+                chars.addAndGet(content.length());
+            }
+        }
+    }
+
+    private long allocatedBytes() {
+        return allocationSupported ? ((com.sun.management.ThreadMXBean)threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * Tracks the peak heap usage and the garbage collections during the
+     * measurement
+     */
+    private static final class HeapProbe {
+
+        private volatile boolean started;
+        private long gcCount;
+        private long gcTime;
+
+        void start() {
+            if(!started){
+                synchronized (this) {
+                    if(!started){
+                        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+                            pool.resetPeakUsage();
+                        }
+                        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+                            gcCount -= Math.max(0, gc.getCollectionCount());
+                            gcTime -= Math.max(0, gc.getCollectionTime());
+                        }
+                        started = true;
+                    }
+                }
+            }
+        }
+
+        synchronized long[] finish() {
+            long peak = 0;
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+                if(pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null){
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            long count = gcCount;
+            long time = gcTime;
+            for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+                count += Math.max(0, gc.getCollectionCount());
+                time += Math.max(0, gc.getCollectionTime());
+            }
+            System.gc();
+            long retained = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            return new long[]{peak, retained, count, time};
+        }
+    }
+
+    /**
+     * The results of a load test
+     */
+    public static final class Report {
+
+        private final LatencyHistogram latencies;
+        private final long errors;
+        private final long chars;
+        private final long tags;
+        private final long allocated;
+        private final long elapsedNanos;
+        private final long[] heap;
+
+        Report(LatencyHistogram latencies, long errors, long chars, long tags, long allocated,
+                long elapsedNanos, long[] heap) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.chars = chars;
+            this.tags = tags;
+            this.allocated = allocated;
+            this.elapsedNanos = elapsedNanos;
+            this.heap = heap;
+        }
+
+        public long getRequestCount() {
+            return latencies.getCount();
+        }
+
+        public long getErrorCount() {
+            return errors;
+        }
+
+        public double getErrorRate() {
+            return getRequestCount() == 0 ? 0 : (double)errors / getRequestCount();
+        }
+
+        /**
+         * The throughput
+         * @return the requests per second
+         */
+        public double getThroughput() {
+            return getRequestCount() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * The latencies (from the due time of a request to its completion)
+         * @return the histogram of the latencies in nanoseconds
+         */
+        public LatencyHistogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * The bytes allocated by the client per request
+         * @return the bytes or <code>-1</code> if not supported by the JVM
+         */
+        public long getAllocatedBytesPerRequest() {
+            return allocated < 0 || getRequestCount() == 0 ? -1 : allocated / getRequestCount();
+        }
+
+        public void print(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.printf(Locale.ROOT, "requests:    %d in %.1fs (%d errors, %.2f%%)%n", getRequestCount(), seconds,
+                    errors, getErrorRate() * 100);
+            out.printf(Locale.ROOT, "throughput:  %.1f req/s, %.0f chars/s, %.1f tags/req%n", getThroughput(),
+                    chars / seconds, getRequestCount() == 0 ? 0d : (double)tags / getRequestCount());
+            out.printf(Locale.ROOT, "latency:     mean %.2fms, p50 %.2fms, p90 %.2fms, p99 %.2fms, p99.9 %.2fms, max %.2fms%n",
+                    latencies.getMean() / 1e6, ms(50), ms(90), ms(99), ms(99.9), latencies.getMax() / 1e6);
+            if(allocated >= 0){
+                out.printf(Locale.ROOT, "allocation:  %d bytes/req, %.1f MB/s (client threads)%n",
+                        getAllocatedBytesPerRequest(), allocated / seconds / (1 << 20));
+            }
+            out.printf(Locale.ROOT, "heap:        peak %.1f MB, %.1f MB after GC, %d GCs (%d ms)%n",
+                    heap[0] / (double)(1 << 20), heap[1] / (double)(1 << 20), heap[2], heap[3]);
+        }
+
+        private double ms(double percentile) {
+            return latencies.getPercentile(percentile) / 1e6;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args){
+            if(!arg.startsWith("--") || arg.indexOf('=') < 0){
+                throw new IllegalArgumentException("Unsupported argument '" + arg + "' (expected --name=value)");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        List<SolrDocument> dictionary = TagCorpus.createDictionary(
+                Integer.parseInt(options.getOrDefault("dictionary", "100000")), seed);
+        List<String> corpus = TagCorpus.createDocuments(dictionary,
+                Integer.parseInt(options.getOrDefault("documents", "1000")),
+                Integer.parseInt(options.getOrDefault("length", "2000")),
+                Double.parseDouble(options.getOrDefault("mentions", "0.1")), seed);
+        CompiledTagParams params = new TagParams()
+                .setOverlaps(Overlaps.valueOf(options.getOrDefault("overlaps", Overlaps.NO_SUB.name())))
+                .setFields(TagCorpus.ID_FIELD, TagCorpus.NAME_FIELD, TagCorpus.TYPE_FIELD)
+                .compile();
+        TaggerStandIn standIn = null;
+        String url = options.get("url");
+        if(url == null){
+            standIn = new TaggerStandIn(TagDictionary.build(dictionary, TagCorpus.NAME_FIELD, TagCorpus.ID_FIELD,
+                    null), "tagger", concurrency);
+            standIn.setDelay(Long.parseLong(options.getOrDefault("delay", "0")), TimeUnit.MILLISECONDS);
+            url = standIn.getBaseUrl();
+        }
+        Report report;
+        ModifiableSolrParams clientParams = new ModifiableSolrParams();
+        clientParams.set(HttpClientUtil.PROP_MAX_CONNECTIONS, 2 * concurrency);
+        clientParams.set(HttpClientUtil.PROP_MAX_CONNECTIONS_PER_HOST, 2 * concurrency);
+        try (CloseableHttpClient httpClient = HttpClientUtil.createClient(clientParams);
+                SolrClient client = new HttpSolrClient.Builder(url).withHttpClient(httpClient).build()) {
+            TagLoadGenerator generator = new TagLoadGenerator(client, corpus, params, options.get("path"),
+                    concurrency, Double.parseDouble(options.getOrDefault("rate", "0")), seed);
+            System.out.println("tagging " + corpus.size() + " documents at " + url + " (concurrency: "
+                    + concurrency + ", rate: " + options.getOrDefault("rate", "closed-loop") + ")");
+            report = generator.run(Long.parseLong(options.getOrDefault("warmup", "5")),
+                    Long.parseLong(options.getOrDefault("duration", "30")), TimeUnit.SECONDS);
+        } finally {
+            if(standIn != null){
+                standIn.close();
+            }
+        }
+        report.print(System.out);
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("maxErrorRate", "0"));
+        if(report.getRequestCount() == 0 || report.getErrorRate() > maxErrorRate){
+            System.out.println("FAILED: error rate " + report.getErrorRate() + " > " + maxErrorRate);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for a Solr server with the SolrTextTagger request handler.
+ * <p>
+ * Serves <code>POST {baseUrl}/tag</code> requests over HTTP (on the loopback
+ * interface) by using a {@link LocalTagger}. Responses use the
+ * <code>javabin</code> format and the structure of the SolrTextTagger, so
+ * that {@link TagRequest}s are processed by the unmodified SolrJ client stack
+ * (HTTP, response parsing and tag processing). Request bodies may be gzip
+ * compressed (<code>Content-Encoding: gzip</code>, see {@link GzipContentStream}).
+ * <p>
+ * Tags are found by the {@link LocalTagger}. Its analysis only approximates the
+ * one of a tagger field and offset adjustments are not supported, so results
+ * can differ from a real SolrTextTagger.
+ */
+public class TaggerStandIn implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final String PATH = "/tag";
+
+    static {
+        //without TCP_NODELAY delayed ACKs add ~40ms to every response
+        if(System.getProperty("sun.net.httpserver.nodelay") == null){
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final LocalTagger tagger;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String collection;
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long delayNanos;
+
+    /**
+     * Starts the stand-in on a free port
+     * @param dictionary the dictionary
+     * @param collection the name of the collection
+     * @param threads the number of threads processing requests
+     * @throws IOException if the server can not be started
+     */
+    public TaggerStandIn(TagDictionary dictionary, String collection, int threads) throws IOException {
+        if(dictionary == null){
+            throw new IllegalArgumentException("The parsed dictionary MUST NOT be NULL!");
+        }
+        if(collection == null){
+            throw new IllegalArgumentException("The parsed collection MUST NOT be NULL!");
+        }
+        this.tagger = new LocalTagger(dictionary);
+        this.collection = collection;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "tagger-stand-in-" + collection);
+            t.setDaemon(true);
+            return t;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/solr/" + collection + PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+        log.info("started tagger stand-in at {} ({} dictionary entries)", getBaseUrl(), dictionary.size());
+    }
+
+    /**
+     * The base URL of the collection (as used for an <code>HttpSolrClient</code>)
+     * @return the base URL
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + "/solr/" + collection;
+    }
+
+    /**
+     * Simulates additional server side processing time
+     * @param delay the delay added to every request
+     * @param unit the time unit of the delay
+     */
+    public void setDelay(long delay, TimeUnit unit) {
+        this.delayNanos = unit.toNanos(delay);
+    }
+
+    /**
+     * The number of processed requests
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        requests.incrementAndGet();
+        NamedList<Object> res;
+        int status = 200;
+        try {
+            if(!"POST".equals(exchange.getRequestMethod())){
+                throw new SolrException(ErrorCode.BAD_REQUEST, "Only POST requests are supported");
+            }
+            ModifiableSolrParams params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String wt = params.get(CommonParams.WT, "javabin");
+            if(!"javabin".equals(wt)){
+                throw new SolrException(ErrorCode.BAD_REQUEST, "Unsupported response writer '" + wt + "'");
+            }
+            CharSequence content = readContent(exchange);
+            if(delayNanos > 0){
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+            res = tagger.tag(params, content).getResponse();
+            @SuppressWarnings("unchecked")
+            NamedList<Object> header = (NamedList<Object>)res.get("responseHeader");
+            int idx = header == null ? -1 : header.indexOf("QTime", 0);
+            if(idx >= 0){
+                header.setVal(idx, (int)TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        } catch (SolrException e) {
+            status = e.code();
+            res = error(status, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = ErrorCode.SERVICE_UNAVAILABLE.code;
+            res = error(status, "Interrupted");
+        } catch (Exception | Error e) {
+            log.warn("Unable to process tag request", e);
+            status = ErrorCode.SERVER_ERROR.code;
+            res = error(status, e.toString());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        new JavaBinCodec().marshal(res, out);
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(status, out.size());
+        try (OutputStream body = exchange.getResponseBody()) {
+            out.writeTo(body);
+        }
+    }
+
+    private static NamedList<Object> error(int status, String msg) {
+        NamedList<Object> header = new SimpleOrderedMap<>();
+        header.add("status", status);
+        header.add("QTime", 0);
+        NamedList<Object> error = new SimpleOrderedMap<>();
+        error.add("msg", msg);
+        error.add("code", status);
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("responseHeader", header);
+        res.add("error", error);
+        return res;
+    }
+
+    private static ModifiableSolrParams parseQuery(String query) throws IOException {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        if(query != null){
+            for(String param : query.split("&")){
+                if(param.isEmpty()){
+                    continue;
+                }
+                int idx = param.indexOf('=');
+                String name = URLDecoder.decode(idx < 0 ? param : param.substring(0, idx), "UTF-8");
+                String value = idx < 0 ? "" : URLDecoder.decode(param.substring(idx + 1), "UTF-8");
+                params.add(name, value);
+            }
+        }
+        return params;
+    }
+
+    private static CharSequence readContent(HttpExchange exchange) throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if(contentType != null){
+            int idx = contentType.toLowerCase().indexOf("charset=");
+            if(idx >= 0){
+                try {
+                    charset = Charset.forName(contentType.substring(idx + 8).trim());
+                } catch (IllegalArgumentException e) {
+                    throw new SolrException(ErrorCode.BAD_REQUEST, "Unsupported charset of Content-Type '"
+                            + contentType + "'", e);
+                }
+            }
+        }
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean gzip = encoding != null && "gzip".equalsIgnoreCase(encoding.trim());
+        if(encoding != null && !gzip && !"identity".equalsIgnoreCase(encoding.trim())){
+            throw new SolrException(ErrorCode.UNSUPPORTED_MEDIA_TYPE, "Unsupported Content-Encoding '"
+                    + encoding + "'");
+        }
+        StringBuilder content = new StringBuilder();
+        char[] buffer = new char[4096];
+        try (InputStream in = gzip ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+                Reader reader = new InputStreamReader(in, charset)) {
+            for(int n = reader.read(buffer); n >= 0; n = reader.read(buffer)){
+                content.append(buffer, 0, n);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
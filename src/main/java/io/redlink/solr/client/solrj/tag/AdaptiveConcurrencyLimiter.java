@@ -0,0 +1,179 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Limits the number of in-flight requests based on the observed latency.
+ * <p>
+ * The limit is adjusted by a gradient algorithm: the latency without load
+ * (the minimum latency, slowly drifting towards higher latencies) and a short
+ * term exponential moving average of the latency are tracked. If the short
+ * term latency rises above the no-load latency (multiplied by the tolerance)
+ * requests are queuing up at the server and the limit is reduced
+ * proportionally. Otherwise the limit grows by about the square root of the
+ * current limit. Errors (e.g. timeouts) reduce the limit multiplicatively.
+ * <p>
+ * Latencies are normalized by the size of the content so that large
+ * documents do not reduce the limit just because they take longer.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @see AdaptiveTagExecutor
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 4;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_TOLERANCE = 1.5;
+    /**
+     * Latencies of contents up to this size (in chars or bytes) are not normalized
+     */
+    static final long NORMALIZATION_SIZE = 4096;
+
+    private static final double SHORT_ALPHA = 0.1;
+    private static final double DRIFT_ALPHA = 0.001;
+    private static final double ERROR_BACKOFF = 0.7;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    private double limit;
+    private int inFlight;
+    private double shortLatency;
+    private double noLoadLatency;
+    private long samples;
+    private long errors;
+
+    /**
+     * Creates a limiter with the default settings
+     */
+    public AdaptiveConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Creates a limiter
+     * @param initialLimit the initial limit
+     * @param minLimit the minimum limit (&gt; 0)
+     * @param maxLimit the maximum limit
+     * @param tolerance the factor (&gt;= 1) the short term latency may exceed
+     * the no-load latency before the limit is reduced
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if(minLimit <= 0 || maxLimit < minLimit){
+            throw new IllegalArgumentException("The limits MUST fulfill 0 < minLimit <= maxLimit (parsed: min="
+                    + minLimit + ", max=" + maxLimit + ")");
+        }
+        if(tolerance < 1){
+            throw new IllegalArgumentException("The tolerance MUST BE >= 1 (parsed: " + tolerance + ")");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Acquires a permit if the number of in-flight requests is below the limit
+     * @return <code>true</code> if acquired. In this case {@link #release(long, long, boolean)}
+     * MUST be called when the request completes
+     */
+    public synchronized boolean tryAcquire() {
+        if(inFlight < (int)limit){
+            inFlight++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Releases a permit and adjusts the limit
+     * @param latencyNanos the latency of the request
+     * @param size the size of the content or <code>-1</code> if unknown
+     * @param overload if the request failed because of an overload signal
+     * (e.g. a timeout or a 503 response)
+     */
+    public void release(long latencyNanos, long size, boolean overload) {
+        latencies.record(latencyNanos);
+        double normalized = size > NORMALIZATION_SIZE ? latencyNanos * ((double)NORMALIZATION_SIZE / size) : latencyNanos;
+        synchronized (this) {
+            inFlight--;
+            if(overload){
+                errors++;
+                limit = Math.max(minLimit, limit * ERROR_BACKOFF);
+                return;
+            }
+            samples++;
+            if(samples == 1){
+                shortLatency = normalized;
+                noLoadLatency = normalized;
+                return;
+            }
+            shortLatency += SHORT_ALPHA * (normalized - shortLatency);
+            if(normalized < noLoadLatency){
+                noLoadLatency = normalized;
+            } else { //adapt to permanent changes (e.g. a slower server)
+                noLoadLatency += DRIFT_ALPHA * (normalized - noLoadLatency);
+            }
+            if(inFlight + 1 < limit / 2){
+                return; //the limit is not the bottleneck
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * noLoadLatency / shortLatency));
+            double target = limit * gradient + Math.sqrt(limit);
+            limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+        }
+    }
+
+    /**
+     * Releases a permit without adjusting the limit (e.g. for requests
+     * failing with a client error)
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * The current limit
+     * @return the maximum number of in-flight requests
+     */
+    public synchronized int getLimit() {
+        return (int)limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * The number of requests that released their permit with an overload signal
+     * @return the number of errors
+     */
+    public synchronized long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * The (not normalized) latencies of all released requests
+     * @return the histogram of the latencies in nanoseconds
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveConcurrencyLimiter [limit=" + (int)limit + ", inFlight=" + inFlight + ", shortLatency="
+                + (long)shortLatency + "ns, noLoadLatency=" + (long)noLoadLatency + "ns, errors=" + errors + "]";
+    }
+}
@@ -0,0 +1,341 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.ContentStream;
+
+/**
+ * Asynchronous execution of {@link TagRequest}s against a single {@link SolrClient}
+ * with an {@link AdaptiveConcurrencyLimiter adaptive} number of in-flight
+ * requests per tag request handler path.
+ * <p>
+ * The limit and the queue of a path are shared by all executors created for
+ * the same {@link SolrClient}. The limiter is created by the factory of the
+ * executor that first sends a request to the path.
+ * <p>
+ * Requests exceeding the current limit are queued. If the queue of a path
+ * holds {@link #getMaxQueued()} requests the returned future fails with a
+ * {@link RejectedExecutionException} (back-pressure). Callers can also check
+ * {@link #isSaturated(String)} before submitting requests. Queued requests
+ * are executed by the executor service of the executor they were submitted to.
+ * <p>
+ * Timeouts, IO errors and <code>503</code>/<code>504</code> responses are
+ * treated as overload signals and reduce the limit. Other errors (e.g.
+ * <code>400</code>) do not change the limit.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  try (AdaptiveTagExecutor executor = new AdaptiveTagExecutor(client)) {
+ *      executor.setMaxQueued(1000);
+ *      CompletableFuture&lt;TagResponse&gt; response = executor.tag(request);
+ *  }
+ * </pre>
+ *
+ * @see TagExecutor for a fixed number of in-flight requests
+ */
+public class AdaptiveTagExecutor implements Closeable {
+
+    public static final int DEFAULT_MAX_QUEUED = 1000;
+
+    private static final String DEFAULT_PATH = "/tag";
+
+    /*
+     * The lanes of all executors by client and path
+     */
+    private static final Map<SolrClient, Map<String, Lane>> LANES = new WeakHashMap<>();
+
+    private final SolrClient client;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Supplier<AdaptiveConcurrencyLimiter> limiterFactory;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>(); //the shared lanes of the client
+    private volatile int maxQueued = DEFAULT_MAX_QUEUED;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates an executor with limiters using the default settings
+     * @param client the client
+     */
+    public AdaptiveTagExecutor(SolrClient client) {
+        this(client, AdaptiveConcurrencyLimiter::new, null);
+    }
+
+    /**
+     * Creates an executor
+     * @param client the client
+     * @param limiterFactory creates the limiter for a path
+     * @param executor the executor service used to execute requests or
+     * <code>null</code> to create a pool of daemon threads (shut down by
+     * {@link #close()}). Parsed executors are not shut down by {@link #close()}
+     */
+    public AdaptiveTagExecutor(SolrClient client, Supplier<AdaptiveConcurrencyLimiter> limiterFactory,
+            ExecutorService executor) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        if(limiterFactory == null){
+            throw new IllegalArgumentException("The parsed limiter factory MUST NOT be NULL!");
+        }
+        this.client = client;
+        this.limiterFactory = limiterFactory;
+        this.ownsExecutor = executor == null;
+        this.executor = executor != null ? executor : Executors.newCachedThreadPool(new AdaptiveThreadFactory());
+    }
+
+    public SolrClient getClient() {
+        return client;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * The maximum number of queued requests per path
+     * @param maxQueued the maximum number of queued requests (&gt;= 0)
+     */
+    public void setMaxQueued(int maxQueued) {
+        if(maxQueued < 0){
+            throw new IllegalArgumentException("The maximum number of queued requests MUST NOT be negative (parsed: "
+                    + maxQueued + ")");
+        }
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * The limiter of the parsed path (shared by all executors of the client)
+     * @param path the path or <code>null</code> for the default path of the {@link TagRequest}
+     * @return the limiter
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String path) {
+        return lane(path).limiter;
+    }
+
+    /**
+     * The number of queued requests of the parsed path (of all executors of
+     * the client)
+     * @param path the path or <code>null</code> for the default path of the {@link TagRequest}
+     * @return the number of queued requests
+     */
+    public int getQueued(String path) {
+        Lane lane = lane(path);
+        synchronized (lane) {
+            return lane.queue.size();
+        }
+    }
+
+    /**
+     * If requests for the parsed path are rejected
+     * @param path the path or <code>null</code> for the default path of the {@link TagRequest}
+     * @return <code>true</code> if the queue of the path is full
+     */
+    public boolean isSaturated(String path) {
+        return getQueued(path) >= maxQueued;
+    }
+
+    /**
+     * The number of rejected requests
+     * @return the number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private Lane lane(String path) {
+        return lanes.computeIfAbsent(path == null ? DEFAULT_PATH : path, p -> {
+            synchronized (LANES) {
+                return LANES.computeIfAbsent(client, c -> new HashMap<>())
+                        .computeIfAbsent(p, key -> new Lane(limiterFactory.get()));
+            }
+        });
+    }
+
+    /**
+     * Asynchronously executes the parsed request
+     * @param request the request
+     * @return the future response. Fails with a {@link RejectedExecutionException}
+     * if the queue of the path of the request is full
+     */
+    public CompletableFuture<TagResponse> tag(TagRequest request) {
+        CompletableFuture<TagResponse> future = new CompletableFuture<>();
+        Lane lane = lane(request.getPath());
+        Task task = new Task(this, request, future);
+        synchronized (lane) {
+            if(!lane.queue.isEmpty() || !lane.limiter.tryAcquire()){
+                if(lane.queue.size() >= maxQueued){
+                    rejected.incrementAndGet();
+                    future.completeExceptionally(new RejectedExecutionException("Unable to tag: "
+                            + lane.queue.size() + " requests queued for path " + request.getPath() + " ("
+                            + lane.limiter + ")"));
+                } else {
+                    lane.queue.add(task);
+                }
+                task = null;
+            }
+        }
+        if(task != null){
+            execute(lane, task);
+        } else {
+            drain(lane); //a permit may have been released concurrently
+        }
+        return future;
+    }
+
+    private static void execute(Lane lane, Task task) {
+        try {
+            task.owner.executor.execute(() -> task.owner.run(lane, task));
+        } catch (RejectedExecutionException e) { //e.g. executor shut down
+            lane.limiter.release();
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    private void run(Lane lane, Task task) {
+        if(task.future.isDone()){ //canceled while queued
+            lane.limiter.release();
+            drain(lane);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            TagResponse response = task.request.process(client);
+            lane.limiter.release(System.nanoTime() - start, size(task.request), false);
+            task.future.complete(response);
+        } catch (Exception | Error e) {
+            if(isOverload(e)){
+                lane.limiter.release(System.nanoTime() - start, size(task.request), true);
+            } else {
+                lane.limiter.release();
+            }
+            task.future.completeExceptionally(e);
+        } finally {
+            drain(lane);
+        }
+    }
+
+    /**
+     * Executes queued tasks while permits are available
+     */
+    private static void drain(Lane lane) {
+        while(true){
+            Task next;
+            synchronized (lane) {
+                if(lane.queue.isEmpty() || !lane.limiter.tryAcquire()){
+                    return;
+                }
+                next = lane.queue.poll();
+            }
+            execute(lane, next);
+        }
+    }
+
+    static boolean isOverload(Throwable e) {
+        for(Throwable t = e; t != null; t = t.getCause()){
+            if(t instanceof SocketTimeoutException){
+                return true;
+            }
+            if(t instanceof SolrException){
+                int code = ((SolrException)t).code();
+                return code == SolrException.ErrorCode.SERVICE_UNAVAILABLE.code || code == 504;
+            }
+            if(t instanceof IOException){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The size of the content of the request
+     * @return the size or <code>-1</code> if unknown
+     */
+    private static long size(TagRequest request) {
+        CharSequence content = request.getContent();
+        if(content != null){
+            return content.length();
+        }
+        try {
+            Collection<ContentStream> streams = request.getContentStreams();
+            long size = 0;
+            if(streams != null){
+                for(ContentStream stream : streams){
+                    Long s = stream.getSize();
+                    if(s == null){
+                        return -1;
+                    }
+                    size += s;
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Shuts down the executor service if it was created by this instance.
+     * Already submitted requests are still executed.
+     */
+    @Override
+    public void close() {
+        if(ownsExecutor){
+            executor.shutdown();
+        }
+    }
+
+    private static final class Lane {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final Deque<Task> queue = new ArrayDeque<>();
+
+        Lane(AdaptiveConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+    }
+
+    private static final class Task {
+
+        private final AdaptiveTagExecutor owner;
+        private final TagRequest request;
+        private final CompletableFuture<TagResponse> future;
+
+        Task(AdaptiveTagExecutor owner, TagRequest request, CompletableFuture<TagResponse> future) {
+            this.owner = owner;
+            this.request = request;
+            this.future = future;
+        }
+    }
+
+    private static final class AdaptiveThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "adaptive-tag-executor-" + pool + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Tags many short texts (e.g. titles or tweets) with a single request to the
+ * tag request handler.
+ * <p>
+ * Texts are joined by a {@link #getSeparator() separator} and sent as a single
+ * content. The returned tags are split back per text and their offsets are
+ * rebased to the text. Tags spanning several texts are dropped. As the
+ * overlap resolution of the server could prefer such tags over tags within a
+ * single text, the batch is requested with {@link Overlaps#ALL} and the
+ * requested {@link TagParams#getOverlaps() overlaps} are applied per text.
+ * <p>
+ * {@link SolrDocument}s referenced by tags of several texts are shared by
+ * the responses of those texts.
+ * <p>
+ * The batch is requested without a tags limit. The requested
+ * {@link TagParams#getTagsLimit() tags limit} is applied per text.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  BatchTagRequest request = new BatchTagRequest(params);
+ *  for(String title : titles){
+ *      request.add(title);
+ *  }
+ *  List&lt;TagResponse&gt; responses = request.process(client); //one per title
+ * </pre>
+ *
+ * @see BatchTagger
+ */
+public class BatchTagRequest {
+
+    public static final String DEFAULT_SEPARATOR = "\n\n";
+
+    private final SolrParams params;
+    private final StringBuilder content = new StringBuilder();
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+    private String separator = DEFAULT_SEPARATOR;
+    private String path;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+
+    public BatchTagRequest(SolrParams params) {
+        this.params = params;
+    }
+
+    public SolrParams getParams() {
+        return params;
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Setter for the separator used to join texts. MUST be set before the
+     * first text is added.
+     * @param separator the separator
+     */
+    public void setSeparator(String separator) {
+        if(separator == null || separator.isEmpty()){
+            throw new IllegalArgumentException("The parsed separator MUST NOT be NULL nor empty!");
+        }
+        if(size > 0){
+            throw new IllegalStateException("The separator can not be changed after texts were added!");
+        }
+        this.separator = separator;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Adds a text to the batch
+     * @param text the text
+     * @return the index of the text in the list of responses returned by
+     * {@link #process(SolrClient)}
+     */
+    public int add(CharSequence text) {
+        if(text == null){
+            throw new IllegalArgumentException("The parsed text MUST NOT be NULL!");
+        }
+        if(size > 0){
+            content.append(separator);
+        }
+        if(size == starts.length){
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = content.length();
+        content.append(text);
+        ends[size] = content.length();
+        return size++;
+    }
+
+    /**
+     * The number of texts in the batch
+     * @return the number of texts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The length of the batched content (including separators)
+     * @return the number of chars
+     */
+    public int length() {
+        return content.length();
+    }
+
+    /**
+     * Removes all texts from the batch
+     */
+    public void clear() {
+        content.setLength(0);
+        size = 0;
+    }
+
+    /**
+     * Sends the batch with a single request and splits the response per text.
+     * @param client the client
+     * @return the responses in the order the texts were added
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public List<TagResponse> process(SolrClient client) throws SolrServerException, IOException {
+        if(size == 0){
+            return new ArrayList<>();
+        }
+        Overlaps overlaps = TagParams.getOverlaps(params);
+        int tagsLimit = TagParams.getTagsLimit(params);
+        ModifiableSolrParams batchParams = params == null ? new ModifiableSolrParams() : new ModifiableSolrParams(params);
+        batchParams.set(TagParams.STT_OVERLAPPS, Overlaps.ALL.name());
+        batchParams.set(TagParams.STT_TAGS_LIMIT, Integer.MAX_VALUE); //applied per text
+        String batch = content.toString(); //the responses keep views over the batch
+        TagRequest request = new TagRequest(batchParams, batch, contentType);
+        if(path != null){
+            request.setPath(path);
+        }
+        request.setDocIdField(docIdField);
+        TagResponse response = request.process(client);
+
+        TagResponseBuilder[] builders = new TagResponseBuilder[size];
+        for(int i = 0; i < size; i++){
+            builders[i] = new TagResponseBuilder(docIdField).addHeader(response.getHeader())
+                    .setContent(params, CharBuffer.wrap(batch, starts[i], ends[i]));
+        }
+        for(TagResponse.Tag tag : response.getTags()){
+            int i = textOf(tag.getStart());
+            if(i >= 0 && tag.getEnd() <= ends[i]){ //drop tags spanning multiple texts
+                builders[i].addTag(tag.getStart() - starts[i], tag.getEnd() - starts[i], tag.getIds());
+                for(SolrDocument doc : tag.getDocs()){ //shared by all responses
+                    builders[i].addDocument(doc);
+                }
+            }
+        }
+        List<TagResponse> responses = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            responses.add(builders[i].applyOverlaps(overlaps).limit(tagsLimit).build(client));
+        }
+        return responses;
+    }
+
+    /**
+     * The index of the text containing the parsed offset
+     * @param offset the offset
+     * @return the index or <code>-1</code> if the offset is within a separator
+     */
+    private int textOf(int offset) {
+        int idx = Arrays.binarySearch(starts, 0, size, offset);
+        if(idx < 0){
+            idx = -idx - 2; //the text starting before the offset
+        }
+        return idx >= 0 && offset < ends[idx] ? idx : -1;
+    }
+}
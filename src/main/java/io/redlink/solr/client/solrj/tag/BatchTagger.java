@@ -0,0 +1,286 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * Collects short texts in {@link BatchTagRequest}s that are sent as soon as
+ * the maximum number of texts or chars is reached or the oldest text waited
+ * for the maximum delay.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  try (BatchTagger tagger = new BatchTagger(client, params)) {
+ *      tagger.setMaxTexts(200);
+ *      tagger.setMaxDelay(20, TimeUnit.MILLISECONDS);
+ *      for(String tweet : tweets){
+ *          tagger.tag(tweet).thenAccept(response -&gt; process(tweet, response));
+ *      }
+ *  } //close() sends pending texts
+ * </pre>
+ */
+public class BatchTagger implements Closeable {
+
+    public static final int DEFAULT_MAX_TEXTS = 100;
+    public static final int DEFAULT_MAX_CHARS = 64 * 1024;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+    private static final AtomicInteger SCHEDULER_COUNT = new AtomicInteger();
+
+    private final SolrClient client;
+    private final SolrParams params;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int maxTexts = DEFAULT_MAX_TEXTS;
+    private int maxChars = DEFAULT_MAX_CHARS;
+    private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_DELAY_MILLIS);
+    private String path;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+
+    private final Object lock = new Object();
+    private BatchTagRequest batch;
+    private List<CompletableFuture<TagResponse>> pending;
+    private ScheduledFuture<?> timer;
+    private boolean closed;
+
+    public BatchTagger(SolrClient client, SolrParams params) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        this.client = client;
+        this.params = params;
+        int num = SCHEDULER_COUNT.incrementAndGet();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "batch-tagger-" + num);
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    public int getMaxTexts() {
+        return maxTexts;
+    }
+
+    /**
+     * The maximum number of texts of a batch
+     * @param maxTexts the maximum number of texts (&gt; 0)
+     */
+    public void setMaxTexts(int maxTexts) {
+        if(maxTexts <= 0){
+            throw new IllegalArgumentException("The maximum number of texts MUST BE > 0 (parsed: " + maxTexts + ")");
+        }
+        this.maxTexts = maxTexts;
+    }
+
+    public int getMaxChars() {
+        return maxChars;
+    }
+
+    /**
+     * The number of chars of a batch that triggers sending the batch
+     * @param maxChars the maximum number of chars (&gt; 0)
+     */
+    public void setMaxChars(int maxChars) {
+        if(maxChars <= 0){
+            throw new IllegalArgumentException("The maximum number of chars MUST BE > 0 (parsed: " + maxChars + ")");
+        }
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * The maximum delay of the first text of a batch
+     * @param unit the time unit
+     * @return the delay
+     */
+    public long getMaxDelay(TimeUnit unit) {
+        return unit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The maximum time the first text added to a batch waits before the
+     * batch is sent
+     * @param delay the delay (<code>0</code> sends every text immediately)
+     * @param unit the time unit
+     */
+    public void setMaxDelay(long delay, TimeUnit unit) {
+        if(delay < 0){
+            throw new IllegalArgumentException("The maximum delay MUST NOT be negative (parsed: " + delay + ")");
+        }
+        this.maxDelayNanos = unit.toNanos(delay);
+    }
+
+    /**
+     * Setter for the executor used to send batches
+     * @param executor the executor or <code>null</code> to use the
+     * {@link ForkJoinPool#commonPool() common pool}
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Adds the text to the current batch
+     * @param text the text
+     * @return the future completed with the response for the parsed text
+     * when the batch was processed
+     * @throws IllegalStateException if this tagger is closed
+     */
+    public CompletableFuture<TagResponse> tag(CharSequence text) {
+        CompletableFuture<TagResponse> future = new CompletableFuture<>();
+        BatchTagRequest full = null;
+        List<CompletableFuture<TagResponse>> fullPending = null;
+        synchronized (lock) {
+            if(closed){
+                throw new IllegalStateException("This BatchTagger is closed!");
+            }
+            if(batch == null){
+                BatchTagRequest created = newBatch();
+                batch = created;
+                pending = new ArrayList<>();
+                if(maxDelayNanos > 0){
+                    timer = scheduler.schedule(() -> flush(created), maxDelayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            batch.add(text);
+            pending.add(future);
+            if(batch.size() >= maxTexts || batch.length() >= maxChars || maxDelayNanos == 0){
+                full = batch;
+                fullPending = pending;
+                reset();
+            }
+        }
+        if(full != null){
+            send(full, fullPending);
+        }
+        return future;
+    }
+
+    /**
+     * Sends the current batch (if any)
+     */
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * Sends the current batch
+     * @param expected the expected batch or <code>null</code> to send any batch.
+     * Used by timers to not send a batch created after the expected one was sent
+     */
+    private void flush(BatchTagRequest expected) {
+        BatchTagRequest current;
+        List<CompletableFuture<TagResponse>> currentPending;
+        synchronized (lock) {
+            if(expected != null && batch != expected){
+                return;
+            }
+            current = batch;
+            currentPending = pending;
+            reset();
+        }
+        if(current != null){
+            send(current, currentPending);
+        }
+    }
+
+    /**
+     * Sends the pending texts and stops the timer. Batches already sent are
+     * not waited for.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    private BatchTagRequest newBatch() {
+        BatchTagRequest request = new BatchTagRequest(params);
+        request.setPath(path);
+        request.setDocIdField(docIdField);
+        request.setContentType(contentType);
+        return request;
+    }
+
+    /**
+     * Resets the current batch. MUST be called while holding the {@link #lock}
+     */
+    private void reset() {
+        batch = null;
+        pending = null;
+        if(timer != null){
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void send(BatchTagRequest request, List<CompletableFuture<TagResponse>> futures) {
+        try {
+            executor.execute(() -> {
+                try {
+                    List<TagResponse> responses = request.process(client);
+                    for(int i = 0; i < futures.size(); i++){
+                        futures.get(i).complete(responses.get(i));
+                    }
+                } catch (SolrServerException | IOException | RuntimeException e) {
+                    for(CompletableFuture<TagResponse> future : futures){
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RuntimeException e) { //e.g. RejectedExecutionException
+            for(CompletableFuture<TagResponse> future : futures){
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
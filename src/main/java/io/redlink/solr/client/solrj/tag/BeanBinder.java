@@ -0,0 +1,311 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.beans.BindingException;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * Binds {@link SolrDocument}s to beans with {@link Field} annotations by using
+ * {@link MethodHandle}s created once per class.
+ * <p>
+ * Supports single and multi valued (arrays, {@link List}s, {@link Set}s and
+ * {@link Collection}s) fields and setters. Beans with features not supported
+ * by this binder (wildcard fields, {@link Map} fields and child documents) are
+ * bound by the {@link DocumentObjectBinder}.
+ * <p>
+ * Instances are immutable, thread-safe and cached per class.
+ *
+ * @param <T> the type of the bean
+ */
+final class BeanBinder<T> {
+
+    private static final ClassValue<BeanBinder<?>> BINDERS = new ClassValue<BeanBinder<?>>() {
+        @Override
+        protected BeanBinder<?> computeValue(Class<?> type) {
+            return new BeanBinder<>(type);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Property[] properties;
+    /*
+     * true if the type uses features only supported by the DocumentObjectBinder
+     */
+    private final boolean fallback;
+
+    private BeanBinder(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Property> props = new ArrayList<>();
+        boolean unsupported = false;
+        for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+            for(java.lang.reflect.Field field : c.getDeclaredFields()){
+                Field annotation = field.getAnnotation(Field.class);
+                if(annotation != null){
+                    String name = DocumentObjectBinder.DEFAULT.equals(annotation.value()) ?
+                            field.getName() : annotation.value();
+                    Property prop = unsupported(annotation, name, field.getType()) ? null :
+                        Property.create(name, field.getType(), () -> lookup.unreflectSetter(accessible(field)));
+                    if(prop == null){
+                        unsupported = true;
+                    } else {
+                        props.add(prop);
+                    }
+                }
+            }
+            for(Method method : c.getDeclaredMethods()){
+                Field annotation = method.getAnnotation(Field.class);
+                if(annotation != null){
+                    if(method.getParameterCount() != 1 || !method.getName().startsWith("set")
+                            || method.getName().length() < 4){
+                        unsupported = true; //e.g. annotated getters
+                        continue;
+                    }
+                    String name = DocumentObjectBinder.DEFAULT.equals(annotation.value()) ?
+                            Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4) :
+                                annotation.value();
+                    Class<?> paramType = method.getParameterTypes()[0];
+                    Property prop = unsupported(annotation, name, paramType) ? null :
+                        Property.create(name, paramType, () -> lookup.unreflect(accessible(method)));
+                    if(prop == null){
+                        unsupported = true;
+                    } else {
+                        props.add(prop);
+                    }
+                }
+            }
+        }
+        MethodHandle ctor = null;
+        if(!unsupported && !Modifier.isAbstract(type.getModifiers())){
+            try {
+                Constructor<?> c = type.getDeclaredConstructor();
+                ctor = lookup.unreflectConstructor(accessible(c)).asType(CONSTRUCTOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+                ctor = null;
+            }
+        }
+        this.fallback = unsupported || ctor == null;
+        this.constructor = ctor;
+        this.properties = fallback ? new Property[0] : props.toArray(new Property[props.size()]);
+    }
+
+    private static boolean unsupported(Field annotation, String name, Class<?> type) {
+        return annotation.child() || name.indexOf('*') >= 0 || Map.class.isAssignableFrom(type);
+    }
+
+    private static <A extends AccessibleObject> A accessible(A member) {
+        member.setAccessible(true);
+        return member;
+    }
+
+    /**
+     * The binder for the parsed class
+     * @param type the class
+     * @return the binder
+     */
+    @SuppressWarnings("unchecked")
+    static <T> BeanBinder<T> of(Class<T> type) {
+        return (BeanBinder<T>)BINDERS.get(type);
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * If beans of this type are bound by the {@link DocumentObjectBinder}
+     * @return the state
+     */
+    boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Binds the parsed document
+     * @param doc the document
+     * @param fallbackBinder the binder used for types not supported by this
+     * binder or <code>null</code> to create a new {@link DocumentObjectBinder}
+     * if required
+     * @return the bean
+     * @throws BindingException if the document can not be bound
+     */
+    T bind(SolrDocument doc, DocumentObjectBinder fallbackBinder) {
+        if(fallback){
+            return (fallbackBinder == null ? new DocumentObjectBinder() : fallbackBinder).getBean(type, doc);
+        }
+        Object bean;
+        try {
+            bean = constructor.invokeExact();
+        } catch (Throwable t) {
+            throw new BindingException("Unable to instantiate " + type.getName(), t);
+        }
+        for(Property prop : properties){
+            Object value = doc.getFieldValue(prop.name);
+            if(value != null){
+                prop.set(bean, value);
+            }
+        }
+        return type.cast(bean);
+    }
+
+    /**
+     * A bound field or setter
+     */
+    private static final class Property {
+
+        private enum Kind { SINGLE, ARRAY, LIST, SET }
+
+        interface SetterFactory {
+            MethodHandle create() throws IllegalAccessException;
+        }
+
+        private final String name;
+        private final Kind kind;
+        private final Class<?> valueType;
+        private final MethodHandle setter;
+
+        private Property(String name, Kind kind, Class<?> valueType, MethodHandle setter) {
+            this.name = name;
+            this.kind = kind;
+            this.valueType = valueType;
+            this.setter = setter;
+        }
+
+        /**
+         * Creates the property
+         * @return the property or <code>null</code> if not supported
+         */
+        static Property create(String name, Class<?> type, SetterFactory factory) {
+            Kind kind;
+            Class<?> valueType;
+            if(type.isArray()){
+                kind = Kind.ARRAY;
+                valueType = type.getComponentType();
+            } else if(Collection.class.isAssignableFrom(type)){
+                if(type.isAssignableFrom(ArrayList.class)){
+                    kind = Kind.LIST;
+                } else if(type.isAssignableFrom(LinkedHashSet.class)){
+                    kind = Kind.SET;
+                } else {
+                    return null; //concrete collection types
+                }
+                valueType = Object.class;
+            } else {
+                kind = Kind.SINGLE;
+                valueType = type;
+            }
+            try {
+                return new Property(name, kind, valueType, factory.create().asType(SETTER_TYPE));
+            } catch (IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        void set(Object bean, Object value) {
+            Object converted;
+            switch (kind) {
+            case ARRAY:
+                converted = toArray(value);
+                break;
+            case LIST:
+                converted = value instanceof Collection ? new ArrayList<>((Collection<?>)value) : singleton(value);
+                break;
+            case SET:
+                converted = value instanceof Collection ? new LinkedHashSet<>((Collection<?>)value) :
+                    new LinkedHashSet<>(singleton(value));
+                break;
+            default:
+                converted = value instanceof Collection ? first((Collection<?>)value) : value;
+                if(valueType.isPrimitive()){
+                    if(converted == null){
+                        return;
+                    }
+                    converted = toPrimitiveWrapper(converted);
+                }
+            }
+            try {
+                setter.invokeExact(bean, converted);
+            } catch (Throwable t) {
+                throw new BindingException("Unable to set '" + name + "' to " + value + " ("
+                        + value.getClass().getName() + ")", t);
+            }
+        }
+
+        private Object toArray(Object value) {
+            if(valueType == byte.class){
+                if(value instanceof byte[]){
+                    return value;
+                } else if(value instanceof ByteBuffer){
+                    ByteBuffer buffer = ((ByteBuffer)value).duplicate();
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    return bytes;
+                }
+            }
+            Collection<?> values = value instanceof Collection ? (Collection<?>)value : singleton(value);
+            Object array = Array.newInstance(valueType, values.size());
+            int i = 0;
+            for(Object v : values){
+                Array.set(array, i++, valueType.isPrimitive() ? toPrimitiveWrapper(v) : v);
+            }
+            return array;
+        }
+
+        /**
+         * Converts numbers to the wrapper type of the {@link #valueType}
+         * (e.g. a {@link Integer} to a {@link Long})
+         */
+        private Object toPrimitiveWrapper(Object value) {
+            if(!(value instanceof Number)){
+                return value;
+            }
+            Number n = (Number)value;
+            if(valueType == long.class){
+                return n instanceof Long ? n : Long.valueOf(n.longValue());
+            } else if(valueType == int.class){
+                return n instanceof Integer ? n : Integer.valueOf(n.intValue());
+            } else if(valueType == double.class){
+                return n instanceof Double ? n : Double.valueOf(n.doubleValue());
+            } else if(valueType == float.class){
+                return n instanceof Float ? n : Float.valueOf(n.floatValue());
+            } else if(valueType == short.class){
+                return n instanceof Short ? n : Short.valueOf(n.shortValue());
+            } else if(valueType == byte.class){
+                return n instanceof Byte ? n : Byte.valueOf(n.byteValue());
+            } else {
+                return value;
+            }
+        }
+
+        private static List<Object> singleton(Object value) {
+            List<Object> list = new ArrayList<>(1);
+            list.add(value);
+            return list;
+        }
+
+        private static Object first(Collection<?> values) {
+            return values.isEmpty() ? null : values.iterator().next();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+
+/**
+ * {@link ContentStream} that streams the remaining bytes of a {@link ByteBuffer}
+ * (e.g. a direct or a memory-mapped buffer) without copying them to the heap.
+ * <p>
+ * Every call to {@link #getStream()} reads from a
+ * {@link ByteBuffer#duplicate() duplicate} so the position of the parsed buffer
+ * is not changed and the stream can be read multiple times (e.g. on retries).
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagRequest request = new TagRequest(params,
+ *      ByteBufferContentStream.map(file, "text/plain; charset=UTF-8"));
+ * </pre>
+ */
+public class ByteBufferContentStream extends ContentStreamBase {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a content stream for the remaining bytes of the parsed buffer.
+     * Changes to the content of the buffer are visible to the stream.
+     * @param buffer the buffer
+     * @param contentType the content type. If the content type does not
+     * specify a <code>charset</code> the content is expected to be
+     * <code>UTF-8</code> encoded.
+     */
+    public ByteBufferContentStream(ByteBuffer buffer, String contentType) {
+        if(buffer == null){
+            throw new IllegalArgumentException("The parsed ByteBuffer MUST NOT be NULL!");
+        }
+        this.buffer = buffer.duplicate();
+        this.contentType = contentType;
+        this.size = Long.valueOf(this.buffer.remaining());
+        this.sourceInfo = "buffer";
+    }
+
+    /**
+     * Memory maps the parsed file
+     * @param file the file
+     * @param contentType the content type
+     * @return the content stream
+     * @throws IOException if the file can not be mapped
+     * @throws IllegalArgumentException if the file is larger as
+     * {@link Integer#MAX_VALUE} bytes
+     */
+    public static ByteBufferContentStream map(Path file, String contentType) throws IOException {
+        if(file == null){
+            throw new IllegalArgumentException("The parsed File MUST NOT be NULL!");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBufferContentStream stream = map(channel, 0, channel.size(), contentType);
+            stream.name = file.toString();
+            stream.sourceInfo = "file";
+            return stream;
+        }
+    }
+
+    /**
+     * Memory maps a region of the parsed channel. The mapping stays valid
+     * after the channel is closed.
+     * @param channel the channel
+     * @param position the start of the region
+     * @param size the size of the region in bytes
+     * @param contentType the content type
+     * @return the content stream
+     * @throws IOException if the region can not be mapped
+     * @throws IllegalArgumentException if the size is larger as
+     * {@link Integer#MAX_VALUE} bytes
+     */
+    public static ByteBufferContentStream map(FileChannel channel, long position, long size, String contentType)
+            throws IOException {
+        if(channel == null){
+            throw new IllegalArgumentException("The parsed FileChannel MUST NOT be NULL!");
+        }
+        if(size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Unable to map regions with more as " + Integer.MAX_VALUE
+                    + " bytes (parsed size: " + size + ")! Use the ChunkedTagger to tag larger contents.");
+        }
+        ByteBufferContentStream stream = new ByteBufferContentStream(
+                channel.map(MapMode.READ_ONLY, position, size), contentType);
+        stream.sourceInfo = "channel";
+        return stream;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    /**
+     * {@link InputStream} reading from a {@link ByteBuffer}
+     */
+    static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+            buffer.mark(); //reset() without mark(..) returns to the start
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(len == 0){
+                return 0;
+            }
+            if(!buffer.hasRemaining()){
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skip = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skip);
+            return skip;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() {
+            buffer.reset();
+        }
+    }
+}
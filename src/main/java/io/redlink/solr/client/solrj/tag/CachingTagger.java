@@ -0,0 +1,279 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+import io.redlink.solr.client.solrj.tag.TagResultCache.CachedResult;
+import io.redlink.solr.client.solrj.tag.TagResultCache.Key;
+
+/**
+ * Tags content by using a {@link TagResultCache} in front of {@link TagRequest}s.
+ * <p>
+ * In {@link #isParagraphMode() paragraph mode} the content is split into
+ * paragraphs (separated by empty lines) and results are cached per paragraph.
+ * Only paragraphs not present in the cache are sent to Solr (within a single
+ * request) and the tags of all paragraphs are merged into a single
+ * {@link TagResponse}. Tags spanning several paragraphs are not supported
+ * in this mode.
+ * <p>
+ * Solr is always asked for {@link Overlaps#ALL all} tags without a tags limit.
+ * The requested {@link TagParams#getOverlaps() overlaps} are applied per
+ * paragraph by the {@link OverlapResolver} and the requested
+ * {@link TagParams#getTagsLimit() tags limit} is applied on the merged tags.
+ * Cached results therefore do not depend on the tags limit.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagResultCache cache = new TagResultCache(100000, 1, TimeUnit.HOURS);
+ *  CachingTagger tagger = new CachingTagger(client, cache);
+ *  tagger.setParagraphMode(true);
+ *  TagResponse response = tagger.tag(params, content);
+ * </pre>
+ *
+ * @see TagResultCache
+ */
+public class CachingTagger {
+
+    /**
+     * Separator used to join paragraphs missing in the cache
+     */
+    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+
+    private final SolrClient client;
+    private final TagResultCache cache;
+    private boolean paragraphMode = false;
+    private String path;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+
+    public CachingTagger(SolrClient client, TagResultCache cache) {
+        if(cache == null){
+            throw new IllegalArgumentException("The parsed TagResultCache MUST NOT be NULL!");
+        }
+        this.client = client;
+        this.cache = cache;
+    }
+
+    public TagResultCache getCache() {
+        return cache;
+    }
+
+    public boolean isParagraphMode() {
+        return paragraphMode;
+    }
+
+    /**
+     * If enabled the content is split into paragraphs and results are cached
+     * per paragraph
+     * @param paragraphMode the state
+     */
+    public void setParagraphMode(boolean paragraphMode) {
+        this.paragraphMode = paragraphMode;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Tags the parsed content
+     * @param params the tag parameter
+     * @param content the content
+     * @return the response
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public TagResponse tag(SolrParams params, String content) throws SolrServerException, IOException {
+        int tagsLimit = TagParams.getTagsLimit(params);
+        ModifiableSolrParams keyParams = params == null ? new ModifiableSolrParams() : new ModifiableSolrParams(params);
+        keyParams.remove(TagParams.STT_TAGS_LIMIT); //applied on the merged tags
+        String canonicalParams = TagResultCache.canonicalParams(path, keyParams);
+        List<int[]> paragraphs = paragraphMode ? splitParagraphs(content) :
+            content.isEmpty() ? Collections.emptyList() : Collections.singletonList(new int[]{0, content.length()});
+        CachedResult[] entries = new CachedResult[paragraphs.size()];
+        Map<Key, List<Integer>> missing = new LinkedHashMap<>();
+        Key[] keys = new Key[paragraphs.size()];
+        for(int i = 0; i < paragraphs.size(); i++){
+            int[] p = paragraphs.get(i);
+            keys[i] = TagResultCache.key(canonicalParams, content, p[0], p[1]);
+            entries[i] = cache.get(keys[i]);
+            if(entries[i] == null){
+                missing.computeIfAbsent(keys[i], k -> new ArrayList<>()).add(i);
+            }
+        }
+        TagResponseBuilder builder = new TagResponseBuilder(docIdField).setContent(params, content);
+        if(!missing.isEmpty()){
+            tagMissing(params, content, paragraphs, missing, entries, builder);
+        }
+        for(int i = 0; i < paragraphs.size(); i++){
+            CachedResult entry = entries[i];
+            int offset = paragraphs.get(i)[0];
+            for(int t = 0; t < entry.starts.length; t++){
+                builder.addTag(entry.starts[t] + offset, entry.ends[t] + offset, entry.ids.get(t));
+            }
+            for(SolrDocument doc : entry.docs){
+                builder.addDocument(doc);
+            }
+        }
+        return builder.limit(tagsLimit).build(client);
+    }
+
+    /**
+     * Tags all paragraphs missing in the cache with a single request and adds
+     * the results to the cache. Results of a truncated response are used
+     * but not cached.
+     */
+    private void tagMissing(SolrParams params, String content, List<int[]> paragraphs,
+            Map<Key, List<Integer>> missing, CachedResult[] entries, TagResponseBuilder builder)
+                    throws SolrServerException, IOException {
+        StringBuilder text = new StringBuilder();
+        int[] offsets = new int[missing.size()];
+        int[] lengths = new int[missing.size()];
+        int i = 0;
+        for(List<Integer> idx : missing.values()){
+            int[] p = paragraphs.get(idx.get(0));
+            if(i > 0){
+                text.append(PARAGRAPH_SEPARATOR);
+            }
+            offsets[i] = text.length();
+            lengths[i] = p[1] - p[0];
+            text.append(content, p[0], p[1]);
+            i++;
+        }
+        Overlaps overlaps = TagParams.getOverlaps(params);
+        ModifiableSolrParams allParams = params == null ? new ModifiableSolrParams() : new ModifiableSolrParams(params);
+        allParams.set(TagParams.STT_OVERLAPPS, Overlaps.ALL.name());
+        allParams.set(TagParams.STT_TAGS_LIMIT, Integer.MAX_VALUE);
+        TagRequest request = new TagRequest(allParams, new CharSequenceContentStream(text, contentType));
+        if(path != null){
+            request.setPath(path);
+        }
+        request.setDocIdField(docIdField);
+        TagResponse response = request.process(client);
+        builder.addHeader(response.getHeader());
+        SolrDocumentList results = response.getResults();
+        //tags or documents (rows) cut by a limit
+        boolean truncated = response.getTags().size() >= allParams.getInt(TagParams.STT_TAGS_LIMIT)
+                || (results != null && results.getNumFound() > results.size());
+        //assign tags to paragraphs (tags are sorted by start offset)
+        List<List<TagResponse.Tag>> paragraphTags = new ArrayList<>(offsets.length);
+        for(int p = 0; p < offsets.length; p++){
+            paragraphTags.add(new ArrayList<>());
+        }
+        int p = 0;
+        for(TagResponse.Tag tag : response.getTags()){
+            while(p < offsets.length - 1 && tag.getStart() >= offsets[p + 1]){
+                p++;
+            }
+            if(tag.getStart() >= offsets[p] && tag.getEnd() <= offsets[p] + lengths[p]){
+                paragraphTags.get(p).add(tag);
+            } //else tag crossing the paragraph separator
+        }
+        p = 0;
+        for(Map.Entry<Key, List<Integer>> m : missing.entrySet()){
+            List<TagResponse.Tag> tags = paragraphTags.get(p);
+            int[] allStarts = new int[tags.size()];
+            int[] allEnds = new int[tags.size()];
+            for(int t = 0; t < tags.size(); t++){
+                allStarts[t] = tags.get(t).getStart() - offsets[p];
+                allEnds[t] = tags.get(t).getEnd() - offsets[p];
+            }
+            int[] retained = new OverlapResolver(overlaps).resolve(allStarts, allEnds);
+            int[] starts = new int[retained.length];
+            int[] ends = new int[retained.length];
+            List<List<Object>> ids = new ArrayList<>(retained.length);
+            Map<Object, SolrDocument> docs = new LinkedHashMap<>();
+            for(int t = 0; t < retained.length; t++){
+                TagResponse.Tag tag = tags.get(retained[t]);
+                starts[t] = allStarts[retained[t]];
+                ends[t] = allEnds[retained[t]];
+                ids.add(new ArrayList<>(tag.getIds()));
+                for(SolrDocument doc : tag.getDocs()){
+                    docs.putIfAbsent(doc.get(docIdField), doc);
+                }
+            }
+            CachedResult entry = cache.createResult(starts, ends, ids, new ArrayList<>(docs.values()));
+            if(!truncated){
+                cache.put(m.getKey(), entry);
+            }
+            for(Integer idx : m.getValue()){
+                entries[idx] = entry;
+            }
+            p++;
+        }
+    }
+
+    /**
+     * Splits the content in paragraphs separated by empty lines. Leading and
+     * trailing whitespace of paragraphs is not included.
+     * @param content the content
+     * @return the <code>[start, end)</code> offsets of the paragraphs
+     */
+    static List<int[]> splitParagraphs(String content) {
+        List<int[]> paragraphs = new ArrayList<>();
+        int length = content.length();
+        int start = -1; //start of the current paragraph
+        int end = -1; //end of the last non whitespace char of the current paragraph
+        int newLines = 0; //line breaks since the last non whitespace char
+        for(int i = 0; i < length; i++){
+            char c = content.charAt(i);
+            if(c == '\n'){
+                newLines++;
+            } else if(!Character.isWhitespace(c)){
+                if(start >= 0 && newLines > 1){
+                    paragraphs.add(new int[]{start, end});
+                    start = -1;
+                }
+                if(start < 0){
+                    start = i;
+                }
+                end = i + 1;
+                newLines = 0;
+            }
+        }
+        if(start >= 0){
+            paragraphs.add(new int[]{start, end});
+        }
+        return paragraphs;
+    }
+}
@@ -0,0 +1,254 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+
+/**
+ * {@link ContentStream} for a {@link CharSequence} (e.g. a {@link StringBuilder}
+ * or a {@link CharBuffer} view over a region of a larger text).
+ * <p>
+ * In contrast to {@link ContentStreamBase.StringStream} the content is neither
+ * copied to a {@link String} nor encoded to a <code>byte[]</code>. The
+ * {@link #getStream() stream} encodes the chars incrementally using a small
+ * buffer while the content is sent to Solr.
+ * <p>
+ * The {@link CharSequence} MUST NOT be modified while the request is processed.
+ */
+public class CharSequenceContentStream extends ContentStreamBase {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CharSequence content;
+    private final Charset charset;
+
+    /**
+     * Creates a content stream for the parsed chars
+     * @param content the content
+     * @param contentType the content type. The <code>charset</code> parameter of
+     * the content type is used for encoding. If not present <code>UTF-8</code>
+     * is used.
+     */
+    public CharSequenceContentStream(CharSequence content, String contentType) {
+        if(content == null){
+            throw new IllegalArgumentException("The parsed CharSequence MUST NOT be NULL!");
+        }
+        this.content = content;
+        this.contentType = contentType;
+        String cs = getCharsetFromContentType(contentType);
+        this.charset = cs == null ? StandardCharsets.UTF_8 : Charset.forName(cs);
+        this.sourceInfo = "chars";
+    }
+
+    /**
+     * The content of this stream
+     * @return the content
+     */
+    CharSequence getContent() {
+        return content;
+    }
+
+    /**
+     * The size in bytes. Only calculated for <code>UTF-8</code>.
+     * @return the size or <code>null</code> if not known
+     */
+    @Override
+    public Long getSize() {
+        if(size == null && StandardCharsets.UTF_8.equals(charset)){
+            size = Long.valueOf(utf8Length(content));
+        }
+        return size;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return new EncodingInputStream(CharBuffer.wrap(content), charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    @Override
+    public Reader getReader() throws IOException {
+        return new CharSequenceReader(content);
+    }
+
+    /**
+     * The number of bytes of the parsed chars encoded as UTF-8. Unpaired
+     * surrogates are counted as a single byte as they are replaced by
+     * <code>'?'</code> on encoding.
+     */
+    static long utf8Length(CharSequence chars) {
+        long length = 0;
+        int len = chars.length();
+        for(int i = 0; i < len; i++){
+            char c = chars.charAt(i);
+            if(c < 0x80){
+                length++;
+            } else if(c < 0x800){
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(chars.charAt(i + 1))){
+                length += 4;
+                i++;
+            } else if(Character.isSurrogate(c)){
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * {@link InputStream} that encodes chars on demand
+     */
+    private static final class EncodingInputStream extends InputStream {
+
+        private final CharBuffer chars;
+        private final CharsetEncoder encoder;
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean endOfInput;
+        private boolean flushed;
+
+        EncodingInputStream(CharBuffer chars, CharsetEncoder encoder) {
+            this.chars = chars;
+            this.encoder = encoder;
+            bytes.flip(); //start with an empty buffer
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!fill()){
+                return -1;
+            }
+            return bytes.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len == 0){
+                return 0;
+            }
+            if(!fill()){
+                return -1;
+            }
+            int n = Math.min(len, bytes.remaining());
+            bytes.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return bytes.remaining();
+        }
+
+        /**
+         * Ensures that encoded bytes are available
+         * @return <code>false</code> if all chars are encoded and read
+         */
+        private boolean fill() throws IOException {
+            while(!bytes.hasRemaining() && !flushed){
+                bytes.clear();
+                CoderResult result;
+                if(!endOfInput){
+                    result = encoder.encode(chars, bytes, true);
+                    if(result.isUnderflow()){
+                        endOfInput = true;
+                    }
+                } else {
+                    result = encoder.flush(bytes);
+                    if(result.isUnderflow()){
+                        flushed = true;
+                    }
+                }
+                if(result.isError()){
+                    result.throwException();
+                }
+                bytes.flip();
+            }
+            return bytes.hasRemaining();
+        }
+    }
+
+    /**
+     * {@link Reader} over a {@link CharSequence}
+     */
+    private static final class CharSequenceReader extends Reader {
+
+        private final CharSequence chars;
+        private int pos;
+        private int mark;
+
+        CharSequenceReader(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read() {
+            return pos < chars.length() ? chars.charAt(pos++) : -1;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if(len == 0){
+                return 0;
+            }
+            int end = Math.min(chars.length(), pos + len);
+            if(pos >= end){
+                return -1;
+            }
+            int n = end - pos;
+            if(chars instanceof String){
+                ((String)chars).getChars(pos, end, cbuf, off);
+            } else {
+                for(int i = 0; i < n; i++){
+                    cbuf[off + i] = chars.charAt(pos + i);
+                }
+            }
+            pos = end;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skip = (int)Math.max(0, Math.min(n, chars.length() - pos));
+            pos += skip;
+            return skip;
+        }
+
+        @Override
+        public boolean ready() {
+            return true;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readAheadLimit) {
+            mark = pos;
+        }
+
+        @Override
+        public void reset() {
+            pos = mark;
+        }
+
+        @Override
+        public void close() {
+            //nothing to close
+        }
+    }
+}
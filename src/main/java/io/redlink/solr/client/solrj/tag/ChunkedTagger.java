@@ -0,0 +1,274 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Tags very large documents by splitting them into chunks that are tagged
+ * concurrently. The tags of all chunks are merged into a single {@link TagResponse}.
+ * <p>
+ * Chunks are split at sentence boundaries (or at whitespace if no sentence
+ * boundary is found near the chunk end) and consecutive chunks do overlap by
+ * {@link #getOverlap()} chars. Chunks are requested with {@link Overlaps#ALL}
+ * and without a tags limit. Tags within the overlap zone are taken from the
+ * chunk they start in before the middle of the overlap zone and the requested
+ * {@link TagParams#getOverlaps() overlaps} are applied on the merged tags by the
+ * {@link OverlapResolver}, so that tags crossing chunk boundaries are resolved
+ * the same way as by the tagger. The {@link TagParams#getTagsLimit() tags limit}
+ * is applied on the resolved tags.
+ * <p>
+ * The overlap MUST BE at least twice as long as the longest label of the
+ * tagger dictionary, as otherwise tags starting in the first half of the
+ * overlap zone may cross the end of the chunk and be truncated or lost.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  ChunkedTagger tagger = new ChunkedTagger(client);
+ *  tagger.setChunkSize(100000);
+ *  tagger.setOverlap(1000);
+ *  TagResponse response = tagger.tag(params, content);
+ * </pre>
+ */
+public class ChunkedTagger {
+
+    public static final int DEFAULT_CHUNK_SIZE = 100000;
+    public static final int DEFAULT_OVERLAP = 1000;
+
+    /**
+     * The maximum number of chars searched backwards for a sentence boundary
+     * relative to the chunk size
+     */
+    private static final float SENTENCE_SEARCH_RANGE = 0.1f;
+
+    private final SolrClient client;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int overlap = DEFAULT_OVERLAP;
+    private String path;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+
+    public ChunkedTagger(SolrClient client) {
+        this.client = client;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Setter for the maximum number of chars of a chunk
+     * @param chunkSize the chunk size. MUST BE greater as the {@link #getOverlap() overlap}
+     */
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize <= 0){
+            throw new IllegalArgumentException("The chunk size MUST BE > 0 (parsed: " + chunkSize + ")");
+        }
+        if(overlap >= chunkSize){
+            throw new IllegalArgumentException("The chunk size MUST BE greater as the overlap (parsed: "
+                    + chunkSize + ", overlap: " + overlap + ")");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * Setter for the number of chars consecutive chunks do overlap. Tags are
+     * taken from the chunk they start in before the middle of the overlap zone,
+     * so this MUST BE at least twice as long as the longest label in the
+     * dictionary of the tagger.
+     * @param overlap the overlap. MUST BE smaller as the {@link #getChunkSize() chunk size}
+     */
+    public void setOverlap(int overlap) {
+        if(overlap < 0){
+            throw new IllegalArgumentException("The overlap MUST NOT be negative (parsed: " + overlap + ")");
+        }
+        if(overlap >= chunkSize){
+            throw new IllegalArgumentException("The overlap MUST BE smaller as the chunk size (parsed: "
+                    + overlap + ", chunk size: " + chunkSize + ")");
+        }
+        this.overlap = overlap;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Setter for the pool used to tag the chunks. By default the
+     * {@link ForkJoinPool#commonPool()} is used.
+     * @param pool the pool
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Tags the parsed content
+     * @param params the tag parameter
+     * @param content the content
+     * @return the merged response of all chunks
+     * @throws SolrServerException on any error while tagging a chunk
+     * @throws IOException on any error while tagging a chunk
+     */
+    public TagResponse tag(TagParams params, String content) throws SolrServerException, IOException {
+        List<int[]> chunks = split(content);
+        int tagsLimit = TagParams.getTagsLimit(params);
+        //overlaps and the tags limit are applied on the merged tags
+        ModifiableSolrParams chunkParams = params == null ? new ModifiableSolrParams() : new ModifiableSolrParams(params);
+        chunkParams.set(TagParams.STT_OVERLAPPS, Overlaps.ALL.name());
+        chunkParams.set(TagParams.STT_TAGS_LIMIT, Integer.MAX_VALUE);
+        List<ForkJoinTask<TagResponse>> tasks = new ArrayList<>(chunks.size());
+        for(int[] chunk : chunks){
+            CharSequence text = CharBuffer.wrap(content, chunk[0], chunk[1]); //no copy
+            tasks.add(pool.submit(() -> {
+                TagRequest request = new TagRequest(chunkParams, new CharSequenceContentStream(text, contentType));
+                if(path != null){
+                    request.setPath(path);
+                }
+                request.setDocIdField(docIdField);
+                return request.process(client);
+            }));
+        }
+        TagResponseBuilder builder = new TagResponseBuilder(docIdField).setContent(params, content);
+        for(int i = 0; i < chunks.size(); i++){
+            TagResponse response = join(tasks.get(i));
+            int start = chunks.get(i)[0];
+            //tags are taken from the chunk if they start within the center of the overlap zones
+            int from = i == 0 ? Integer.MIN_VALUE : middle(chunks.get(i)[0], chunks.get(i - 1)[1]) - start;
+            int to = i == chunks.size() - 1 ? Integer.MAX_VALUE : middle(chunks.get(i + 1)[0], chunks.get(i)[1]) - start;
+            builder.addHeader(response.getHeader());
+            builder.addTags(response, start, (s, e) -> s < 0 || (s >= from && s < to), id -> id);
+            if(response.getResults() != null){
+                for(SolrDocument doc : response.getResults()){
+                    builder.addDocument(doc);
+                }
+            }
+        }
+        return builder.applyOverlaps(TagParams.getOverlaps(params)).limit(tagsLimit).build(client);
+    }
+
+    private static int middle(int start, int end) {
+        return start + (end - start) / 2;
+    }
+
+    private static TagResponse join(ForkJoinTask<TagResponse> task) throws SolrServerException, IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while waiting for a tagged chunk", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof SolrServerException){
+                throw (SolrServerException)cause;
+            } else if(cause instanceof IOException){
+                throw (IOException)cause;
+            } else if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else {
+                throw new SolrServerException(cause);
+            }
+        }
+    }
+
+    /**
+     * Splits the content in chunks
+     * @param content the content
+     * @return the <code>[start, end)</code> offsets of the chunks
+     */
+    List<int[]> split(String content) {
+        List<int[]> chunks = new ArrayList<>();
+        int length = content.length();
+        int start = 0;
+        while(true){
+            if(length - start <= chunkSize){
+                chunks.add(new int[]{start, length});
+                return chunks;
+            }
+            int end = findChunkEnd(content, start, start + chunkSize);
+            chunks.add(new int[]{start, end});
+            //next chunk starts at the first word boundary within the overlap
+            int next = Math.max(start + 1, end - overlap);
+            while(next < end && next > 0 && !Character.isWhitespace(content.charAt(next - 1))){
+                next++;
+            }
+            start = next;
+        }
+    }
+
+    private int findChunkEnd(String content, int start, int max) {
+        int min = Math.max(start + 1, max - (int)(chunkSize * SENTENCE_SEARCH_RANGE));
+        int whitespace = -1;
+        for(int i = max; i > min; i--){
+            char c = content.charAt(i - 1);
+            if(Character.isWhitespace(c)){
+                if(isSentenceEnd(content.charAt(i - 2 < 0 ? 0 : i - 2))){
+                    return i;
+                } else if(whitespace < 0){
+                    whitespace = i;
+                }
+            }
+        }
+        if(whitespace > 0){
+            return whitespace;
+        }
+        for(int i = min; i > start + 1; i--){ //search for any whitespace
+            if(Character.isWhitespace(content.charAt(i - 1))){
+                return i;
+            }
+        }
+        return max; //no whitespace in the chunk
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '\n';
+    }
+}
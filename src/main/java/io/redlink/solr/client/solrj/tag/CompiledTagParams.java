@@ -0,0 +1,169 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Immutable snapshot of {@link TagParams} as created by {@link TagParams#compile()}.
+ * <p>
+ * The parameters are validated once when compiled and typed values (e.g. the
+ * {@link #getOverlaps() overlaps}) are cached. Variants of the parameters
+ * needed by the {@link TagRequest} (e.g. to only request the document ids
+ * when using a {@link TagDocumentCache}) are also cached, so that the
+ * {@link TagRequest#getParams()} do not copy the parameters. The
+ * {@link org.apache.solr.client.solrj.SolrClient} still copies and encodes
+ * the parameters when sending a request.
+ * <p>
+ * Instances are thread-safe and can be shared by any number of requests.
+ */
+public final class CompiledTagParams extends SolrParams {
+
+    private static final long serialVersionUID = 2695519061358010547L;
+
+    private final Map<String, String[]> params;
+    private final Overlaps overlaps;
+    private final boolean matchText;
+    private final boolean offsetAdjust;
+    private final int tagsLimit;
+    private final String queryString;
+    /*
+     * Variants of this params with a single param replaced
+     */
+    private transient volatile ConcurrentMap<String, CompiledTagParams> variants;
+
+    CompiledTagParams(SolrParams source) {
+        Map<String, String[]> params = new LinkedHashMap<>();
+        for(Iterator<String> names = source.getParameterNamesIterator(); names.hasNext();){
+            String name = names.next();
+            String[] values = source.getParams(name);
+            if(values != null){
+                params.put(name, values.clone());
+            }
+        }
+        this.params = Collections.unmodifiableMap(params);
+        String overlaps = get(TagParams.STT_OVERLAPPS);
+        try {
+            this.overlaps = overlaps == null ? null : Overlaps.valueOf(overlaps);
+        } catch (IllegalArgumentException e) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unsupported value '"
+                    + overlaps + "' for parameter '" + TagParams.STT_OVERLAPPS + "'", e);
+        }
+        //getBool and getInt throw BAD_REQUEST SolrExceptions for illegal values
+        this.matchText = getBool(TagParams.STT_MATCH_TEXT, false);
+        this.tagsLimit = getInt(TagParams.STT_TAGS_LIMIT, TagParams.DEFAULT_TAGS_LIMIT);
+        getInt(TagParams.STT_ROWS, 0);
+        boolean htmlOffsetAdjust = getBool(TagParams.STT_HTML_OFFSET_ADJUST, false);
+        this.offsetAdjust = htmlOffsetAdjust || getBool(TagParams.STT_XML_OFFSET_ADJUST, false);
+        String nonTaggableTags = get(TagParams.STT_NON_TAGGABLETAGS);
+        if(nonTaggableTags != null && !nonTaggableTags.isEmpty() && !"false".equals(nonTaggableTags)
+                && !htmlOffsetAdjust){
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Parameter '"
+                    + TagParams.STT_NON_TAGGABLETAGS + "' requires '" + TagParams.STT_HTML_OFFSET_ADJUST
+                    + "=true'");
+        }
+        this.queryString = super.toQueryString();
+    }
+
+    @Override
+    public String get(String param) {
+        String[] values = params.get(param);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public String[] getParams(String param) {
+        String[] values = params.get(param);
+        return values == null ? null : values.clone();
+    }
+
+    @Override
+    public Iterator<String> getParameterNamesIterator() {
+        return params.keySet().iterator();
+    }
+
+    /**
+     * The URL encoded parameters (starting with <code>'?'</code>). Calculated
+     * once when compiled (e.g. for logging). Not used to send requests.
+     */
+    @Override
+    public String toQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String toString() {
+        return queryString;
+    }
+
+    /**
+     * The algorithm used to determine which overlapping tags are retained
+     * @return the algorithm or <code>null</code> if not set
+     */
+    public Overlaps getOverlaps() {
+        return overlaps;
+    }
+
+    public boolean isMatchText() {
+        return matchText;
+    }
+
+    public int getTagsLimit() {
+        return tagsLimit;
+    }
+
+    /**
+     * If the server adjusts the offsets of tags to the markup of the content
+     * @return <code>true</code> if <code>xmlOffsetAdjust</code> or
+     * <code>htmlOffsetAdjust</code> is enabled
+     */
+    public boolean isOffsetAdjust() {
+        return offsetAdjust;
+    }
+
+    public String getFields() {
+        return get(CommonParams.FL);
+    }
+
+    /**
+     * A compiled copy of this params with the parsed param set to the parsed
+     * value. Variants are cached, so this is intended for a small number of
+     * different values (e.g. the document id field).
+     * @param param the param
+     * @param value the value
+     * @return the variant or this if the param already has the parsed value
+     */
+    CompiledTagParams with(String param, String value) {
+        String[] values = params.get(param);
+        if(values != null && values.length == 1 && values[0].equals(value)){
+            return this;
+        }
+        ConcurrentMap<String, CompiledTagParams> variants = this.variants;
+        if(variants == null){
+            synchronized (this) {
+                variants = this.variants;
+                if(variants == null){
+                    this.variants = variants = new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return variants.computeIfAbsent(param + '\u0000' + value, k -> {
+            TagParams modified = new TagParams();
+            for(Entry<String, String[]> entry : params.entrySet()){
+                modified.set(entry.getKey(), entry.getValue());
+            }
+            modified.set(param, value);
+            return new CompiledTagParams(modified);
+        });
+    }
+}
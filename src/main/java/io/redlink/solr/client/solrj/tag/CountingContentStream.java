@@ -0,0 +1,112 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.apache.solr.common.util.ContentStream;
+
+/**
+ * {@link ContentStream} wrapper that adds the number of bytes (or chars if
+ * read via {@link #getReader()}) read from the stream to the {@link TagRequestMetrics}
+ */
+class CountingContentStream implements ContentStream {
+
+    private final ContentStream delegate;
+    private final TagRequestMetrics metrics;
+
+    CountingContentStream(ContentStream delegate, TagRequestMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getSourceInfo() {
+        return delegate.getSourceInfo();
+    }
+
+    @Override
+    public String getContentType() {
+        return delegate.getContentType();
+    }
+
+    @Override
+    public Long getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        InputStream in = delegate.getStream();
+        //keep the marker used to add the Content-Encoding header
+        return in instanceof GzipContentStream.Compressed ? new CompressedCountingInputStream(in, metrics)
+                : new CountingInputStream(in, metrics);
+    }
+
+    @Override
+    public Reader getReader() throws IOException {
+        return new FilterReader(delegate.getReader()) {
+
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if(c >= 0){
+                    metrics.addRequestBytes(1);
+                }
+                return c;
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                if(n > 0){
+                    metrics.addRequestBytes(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final TagRequestMetrics metrics;
+
+        CountingInputStream(InputStream in, TagRequestMetrics metrics) {
+            super(in);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0){
+                metrics.addRequestBytes(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0){
+                metrics.addRequestBytes(n);
+            }
+            return n;
+        }
+    }
+
+    private static final class CompressedCountingInputStream extends CountingInputStream
+            implements GzipContentStream.Compressed {
+
+        CompressedCountingInputStream(InputStream in, TagRequestMetrics metrics) {
+            super(in, metrics);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.common.util.ContentStream;
+
+/**
+ * {@link ContentStream} wrapper that gzip compresses the {@link #getStream() stream}
+ * of the wrapped content while it is sent to Solr. The compressed content is
+ * never materialised in memory.
+ * <p>
+ * <b>NOTE:</b> Solr does not decompress request bodies by default. This
+ * requires:
+ * <ol>
+ * <li>the <code>Content-Encoding: gzip</code> header to be sent with the request.
+ * SolrJ does not support custom headers for requests. Because of that the
+ * {@link #CONTENT_ENCODING_INTERCEPTOR} needs to be registered <b>before</b>
+ * the {@link org.apache.solr.client.solrj.impl.HttpSolrClient} is created:
+ * <pre>
+ *  HttpClientUtil.addRequestInterceptor(GzipContentStream.CONTENT_ENCODING_INTERCEPTOR);
+ * </pre>
+ * <li>the servlet container of Solr to inflate request bodies (e.g. a Jetty
+ * <code>GzipHandler</code> with an <code>inflateBufferSize</code> &gt; 0)
+ * </ol>
+ * The {@link #getReader() reader} returns the uncompressed content of the
+ * wrapped stream (e.g. for the <code>EmbeddedSolrServer</code>).
+ */
+public class GzipContentStream implements ContentStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Adds the <code>Content-Encoding: gzip</code> header to requests with
+     * a body read from a {@link GzipContentStream} (the stream of the entity
+     * is {@link Compressed}).
+     * <p>
+     * The entity of the original request is inspected, as the entity of a
+     * request wrapped by the HttpClient is no longer repeatable after its
+     * content was accessed (what makes the request fail).
+     * @see HttpClientUtil#addRequestInterceptor(HttpRequestInterceptor)
+     */
+    @SuppressWarnings("deprecation") //RequestWrapper is used by the HttpClient of SolrJ
+    public static final HttpRequestInterceptor CONTENT_ENCODING_INTERCEPTOR = (request, context) -> {
+        HttpRequest original = request;
+        if(original instanceof HttpRequestWrapper){
+            original = ((HttpRequestWrapper)original).getOriginal();
+        } else if(original instanceof org.apache.http.impl.client.RequestWrapper){
+            original = ((org.apache.http.impl.client.RequestWrapper)original).getOriginal();
+        }
+        if(original instanceof HttpEntityEnclosingRequest && !request.containsHeader("Content-Encoding")){
+            HttpEntity entity = ((HttpEntityEnclosingRequest)original).getEntity();
+            if(entity != null && entity.isStreaming() && entity.getContent() instanceof Compressed){
+                request.addHeader("Content-Encoding", "gzip");
+            }
+        }
+    };
+
+    private final ContentStream delegate;
+    private final int level;
+
+    /**
+     * Compresses the parsed content with the {@link Deflater#BEST_SPEED} level
+     * @param delegate the content to compress
+     */
+    public GzipContentStream(ContentStream delegate) {
+        this(delegate, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Compresses the parsed content with the parsed level
+     * @param delegate the content to compress
+     * @param level the compression level in the range <code>[0..9]</code> or
+     * {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public GzipContentStream(ContentStream delegate, int level) {
+        if(delegate == null){
+            throw new IllegalArgumentException("The parsed ContentStream MUST NOT be NULL!");
+        }
+        if((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+                && level != Deflater.DEFAULT_COMPRESSION){
+            throw new IllegalArgumentException("The parsed compression level " + level
+                    + " is not valid (supported: [0..9] or -1)!");
+        }
+        this.delegate = delegate;
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getSourceInfo() {
+        return delegate.getSourceInfo();
+    }
+
+    @Override
+    public String getContentType() {
+        return delegate.getContentType();
+    }
+
+    /**
+     * The size of the compressed content is not known in advance
+     * @return <code>null</code>
+     */
+    @Override
+    public Long getSize() {
+        return null;
+    }
+
+    @Override
+    public InputStream getStream() throws IOException {
+        return new GzipInputStream(delegate.getStream(), level);
+    }
+
+    @Override
+    public Reader getReader() throws IOException {
+        return delegate.getReader();
+    }
+
+    /**
+     * Marks {@link InputStream}s providing gzip compressed content. Wrappers
+     * of such streams (e.g. counting the bytes sent) need to keep the marker,
+     * as the HttpClient only exposes the stream to the
+     * {@link #CONTENT_ENCODING_INTERCEPTOR}.
+     */
+    interface Compressed {}
+
+    /**
+     * {@link InputStream} that reads the gzip compressed content of the parsed
+     * stream (RFC 1952: header, deflate data, CRC32 and size trailer)
+     */
+    static final class GzipInputStream extends InputStream implements Compressed {
+
+        private static final byte[] HEADER = new byte[]{
+                0x1f, (byte)0x8b, //magic number
+                Deflater.DEFLATED, 0, //method and flags
+                0, 0, 0, 0, //modification time
+                0, (byte)0xff //extra flags and OS (unknown)
+        };
+
+        private final InputStream in;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] single = new byte[1];
+        private int headerPos;
+        private byte[] trailer;
+        private int trailerPos;
+        private boolean closed;
+
+        GzipInputStream(InputStream in, int level) {
+            this.in = in;
+            this.deflater = new Deflater(level, true);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(closed){
+                throw new IOException("Stream closed");
+            }
+            if(len == 0){
+                return 0;
+            }
+            int n = 0;
+            if(headerPos < HEADER.length){
+                int c = Math.min(len, HEADER.length - headerPos);
+                System.arraycopy(HEADER, headerPos, b, off, c);
+                headerPos += c;
+                n += c;
+            }
+            while(n < len && !deflater.finished()){
+                if(deflater.needsInput()){
+                    int r = in.read(buffer);
+                    if(r < 0){
+                        deflater.finish();
+                    } else if(r > 0){
+                        crc.update(buffer, 0, r);
+                        deflater.setInput(buffer, 0, r);
+                    }
+                }
+                n += deflater.deflate(b, off + n, len - n);
+            }
+            if(n < len && deflater.finished()){
+                if(trailer == null){
+                    trailer = trailer(crc.getValue(), deflater.getBytesRead());
+                }
+                int c = Math.min(len - n, trailer.length - trailerPos);
+                System.arraycopy(trailer, trailerPos, b, off + n, c);
+                trailerPos += c;
+                n += c;
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        private static byte[] trailer(long crc, long size) {
+            byte[] trailer = new byte[8];
+            for(int i = 0; i < 4; i++){ //little endian
+                trailer[i] = (byte)(crc >>> (i * 8));
+                trailer[i + 4] = (byte)(size >>> (i * 8)); //modulo 2^32
+            }
+            return trailer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(!closed){
+                closed = true;
+                deflater.end();
+                in.close();
+            }
+        }
+    }
+}
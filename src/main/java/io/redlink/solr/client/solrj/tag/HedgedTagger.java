@@ -0,0 +1,585 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.cloud.ClusterState;
+import org.apache.solr.common.cloud.DocCollection;
+import org.apache.solr.common.cloud.Replica;
+import org.apache.solr.common.cloud.Slice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends {@link TagRequest}s to one of several replicas of the tagger
+ * collection and sends a second (hedged) request to an other replica if the
+ * first one does not respond within a delay. The first successful response is
+ * used and the other request is canceled.
+ * <p>
+ * The latency of every replica is tracked by a {@link LatencyHistogram}.
+ * Requests are sent to the better of two randomly chosen replicas (by the
+ * recent latency, the number of in-flight requests and the recent error rate).
+ * The hedge delay is the
+ * {@link #setHedgePercentile(double) percentile} of the latency of the
+ * chosen replica. The number of hedged requests is capped to the
+ * {@link #setMaxHedgeRate(double) maximum hedge rate}. If the first request
+ * fails the request is sent to an other replica without waiting for the delay.
+ * <p>
+ * NOTE: Canceling interrupts the thread executing the request. As SolrJ does
+ * not support to abort a request in progress, the canceled request may still
+ * be processed by the replica (its response is ignored). Content streams
+ * MUST support to be read several times. Requests in streaming mode are not
+ * supported. The {@link TagRequest#getMetricsListener() metrics listener} is
+ * notified by the first attempt (or the failover attempt if the first one
+ * failed) even if an other attempt responded first.
+ * <p>
+ * Instances are thread-safe.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  try (HedgedTagger tagger = HedgedTagger.forCollection(cloudClient, "tagger")) {
+ *      TagResponse response = tagger.process(request);
+ *  }
+ * </pre>
+ */
+public class HedgedTagger implements Closeable {
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+    public static final double DEFAULT_MAX_HEDGE_RATE = 0.05;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 100;
+    /**
+     * The number of samples of a replica required before the percentile is used
+     */
+    static final int MIN_SAMPLES = 20;
+    /**
+     * Maximum number of hedges that can be sent in a burst
+     */
+    private static final double MAX_HEDGE_CREDITS = 10;
+    private static final double ALPHA = 0.1;
+
+    private static final AtomicInteger SCHEDULER_COUNT = new AtomicInteger();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final List<ReplicaState> replicas;
+    private final boolean ownsClients;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private volatile double maxHedgeRate = DEFAULT_MAX_HEDGE_RATE;
+    private volatile long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_DELAY_MILLIS);
+    private volatile long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private double hedgeCredits = 1;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    /**
+     * Creates a hedged tagger for the parsed replicas. The clients are not
+     * closed by {@link #close()}
+     * @param replicas the clients of the replicas by name (e.g. the core URL)
+     */
+    public HedgedTagger(Map<String, ? extends SolrClient> replicas) {
+        this(replicas, null, false);
+    }
+
+    /**
+     * Creates a hedged tagger
+     * @param replicas the clients of the replicas by name (e.g. the core URL)
+     * @param executor the executor used to send requests or <code>null</code>
+     * to create a pool of daemon threads. Parsed executors are not shut down
+     * by {@link #close()}
+     * @param ownsClients if the clients are closed by {@link #close()}
+     */
+    public HedgedTagger(Map<String, ? extends SolrClient> replicas, ExecutorService executor, boolean ownsClients) {
+        if(replicas == null || replicas.isEmpty()){
+            throw new IllegalArgumentException("The parsed replicas MUST NOT be NULL nor empty!");
+        }
+        List<ReplicaState> states = new ArrayList<>(replicas.size());
+        for(Map.Entry<String, ? extends SolrClient> replica : replicas.entrySet()){
+            if(replica.getValue() == null){
+                throw new IllegalArgumentException("The SolrClient of replica " + replica.getKey()
+                        + " MUST NOT be NULL!");
+            }
+            states.add(new ReplicaState(replica.getKey(), replica.getValue()));
+        }
+        this.replicas = Collections.unmodifiableList(states);
+        this.ownsClients = ownsClients;
+        int num = SCHEDULER_COUNT.incrementAndGet();
+        AtomicInteger threads = new AtomicInteger();
+        this.ownsExecutor = executor == null;
+        this.executor = executor != null ? executor : Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "hedged-tagger-" + num + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "hedged-tagger-" + num + "-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Creates a hedged tagger for the active replicas of a single shard
+     * collection. An {@link HttpSolrClient} sharing the HTTP client of the
+     * parsed client is created for every replica. Those are closed by
+     * {@link #close()}.
+     * @param client the cloud client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @return the hedged tagger
+     * @throws SolrException if the collection has no active replica or more
+     * as a single shard
+     */
+    public static HedgedTagger forCollection(CloudSolrClient client, String collection) {
+        String name = collection == null ? client.getDefaultCollection() : collection;
+        client.connect();
+        ClusterState clusterState = client.getZkStateReader().getClusterState();
+        DocCollection docCollection = clusterState.getCollectionOrNull(name);
+        if(docCollection == null){
+            throw new SolrException(ErrorCode.BAD_REQUEST, "Collection " + name + " not found!");
+        }
+        Collection<Slice> slices = docCollection.getActiveSlices();
+        if(slices.size() != 1){
+            throw new SolrException(ErrorCode.BAD_REQUEST, "Tag requests can not be hedged for collection "
+                    + name + " with " + slices.size() + " active shards!");
+        }
+        Map<String, SolrClient> replicas = new LinkedHashMap<>();
+        for(Replica replica : slices.iterator().next().getReplicas()){
+            if(replica.getState() == Replica.State.ACTIVE && clusterState.liveNodesContain(replica.getNodeName())){
+                replicas.put(replica.getCoreUrl(), new HttpSolrClient.Builder(replica.getCoreUrl())
+                        .withHttpClient(client.getLbClient().getHttpClient()).build());
+            }
+        }
+        if(replicas.isEmpty()){
+            throw new SolrException(ErrorCode.SERVICE_UNAVAILABLE, "No active replica for collection " + name + "!");
+        }
+        return new HedgedTagger(replicas, null, true);
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * The percentile of the latency of a replica used as delay before a
+     * request is hedged
+     * @param hedgePercentile the percentile in the range <code>(0..100]</code>
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if(!(hedgePercentile > 0 && hedgePercentile <= 100)){
+            throw new IllegalArgumentException("The hedge percentile MUST BE in the range (0..100] (parsed: "
+                    + hedgePercentile + ")");
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public double getMaxHedgeRate() {
+        return maxHedgeRate;
+    }
+
+    /**
+     * The maximum ratio of requests that are hedged
+     * @param maxHedgeRate the rate in the range <code>[0..1]</code>
+     * (<code>0</code> disables hedging)
+     */
+    public void setMaxHedgeRate(double maxHedgeRate) {
+        if(!(maxHedgeRate >= 0 && maxHedgeRate <= 1)){
+            throw new IllegalArgumentException("The maximum hedge rate MUST BE in the range [0..1] (parsed: "
+                    + maxHedgeRate + ")");
+        }
+        this.maxHedgeRate = maxHedgeRate;
+    }
+
+    /**
+     * The hedge delay used for replicas with less as {@value #MIN_SAMPLES} samples
+     * @param unit the time unit
+     * @return the delay
+     */
+    public long getInitialDelay(TimeUnit unit) {
+        return unit.convert(initialDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setInitialDelay(long delay, TimeUnit unit) {
+        if(delay < 0){
+            throw new IllegalArgumentException("The initial delay MUST NOT be negative (parsed: " + delay + ")");
+        }
+        this.initialDelayNanos = unit.toNanos(delay);
+    }
+
+    /**
+     * The minimum hedge delay
+     * @param unit the time unit
+     * @return the delay
+     */
+    public long getMinDelay(TimeUnit unit) {
+        return unit.convert(minDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setMinDelay(long delay, TimeUnit unit) {
+        if(delay < 0){
+            throw new IllegalArgumentException("The minimum delay MUST NOT be negative (parsed: " + delay + ")");
+        }
+        this.minDelayNanos = unit.toNanos(delay);
+    }
+
+    /**
+     * The names of the replicas
+     * @return the names
+     */
+    public List<String> getReplicas() {
+        List<String> names = new ArrayList<>(replicas.size());
+        for(ReplicaState replica : replicas){
+            names.add(replica.name);
+        }
+        return names;
+    }
+
+    /**
+     * The latencies of successful requests of a replica
+     * @param replica the name of the replica
+     * @return the histogram (in nanoseconds) or <code>null</code> if no
+     * replica with this name exists
+     */
+    public LatencyHistogram getLatencies(String replica) {
+        for(ReplicaState state : replicas){
+            if(state.name.equals(replica)){
+                return state.latencies;
+            }
+        }
+        return null;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * The number of hedged requests sent
+     * @return the number of hedged requests
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * The number of hedged requests that responded first
+     * @return the number of wins
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * The number of requests not hedged because of the {@link #getMaxHedgeRate()}
+     * @return the number of rate limited hedges
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    /**
+     * Processes the request
+     * @param request the request
+     * @return the response
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public TagResponse process(TagRequest request) throws SolrServerException, IOException {
+        try {
+            return tag(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while waiting for " + request.getPath(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof SolrServerException){
+                throw (SolrServerException)cause;
+            } else if(cause instanceof IOException){
+                throw (IOException)cause;
+            } else if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else {
+                throw new SolrServerException(cause);
+            }
+        }
+    }
+
+    /**
+     * Asynchronously processes the request. Canceling the returned future
+     * cancels all requests sent to replicas.
+     * @param request the request
+     * @return the future response
+     */
+    public CompletableFuture<TagResponse> tag(TagRequest request) {
+        if(request.getStreamingCallback() != null){
+            throw new IllegalArgumentException("TagRequests in streaming mode can not be hedged!");
+        }
+        requests.incrementAndGet();
+        synchronized (this) {
+            hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + maxHedgeRate);
+        }
+        return new HedgedRequest(request).start();
+    }
+
+    private synchronized boolean acquireHedgeCredit() {
+        if(hedgeCredits >= 1){
+            hedgeCredits--;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * The better one of two random replicas not contained in the parsed list
+     */
+    private ReplicaState choose(List<ReplicaState> excluded) {
+        List<ReplicaState> candidates = new ArrayList<>(replicas.size());
+        for(ReplicaState replica : replicas){
+            if(!excluded.contains(replica)){
+                candidates.add(replica);
+            }
+        }
+        if(candidates.isEmpty()){
+            return null;
+        } else if(candidates.size() == 1){
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if(j >= i){
+            j++;
+        }
+        ReplicaState a = candidates.get(i);
+        ReplicaState b = candidates.get(j);
+        return a.score() <= b.score() ? a : b;
+    }
+
+    private long hedgeDelay(ReplicaState replica) {
+        if(replica.latencies.getCount() < MIN_SAMPLES){
+            return initialDelayNanos;
+        }
+        return Math.max(minDelayNanos, replica.latencies.getPercentile(hedgePercentile));
+    }
+
+    /**
+     * Shuts down the executors (if created by this instance) and closes the
+     * clients of the replicas (if owned)
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if(ownsExecutor){
+            executor.shutdown();
+        }
+        if(ownsClients){
+            for(ReplicaState replica : replicas){
+                try {
+                    replica.client.close();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Unable to close client for replica {}", replica.name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of a single request and its attempts
+     */
+    private final class HedgedRequest {
+
+        private final TagRequest request;
+        private final CompletableFuture<TagResponse> result = new CompletableFuture<>();
+        private final List<ReplicaState> used = new ArrayList<>(2);
+        private final List<Future<?>> attempts = new ArrayList<>(2);
+        private final AtomicBoolean hedged = new AtomicBoolean();
+        private ScheduledFuture<?> timer;
+        private int winner = -1;
+        private int pending;
+        private Throwable error;
+
+        HedgedRequest(TagRequest request) {
+            this.request = request;
+            result.whenComplete((r, e) -> cancel());
+        }
+
+        CompletableFuture<TagResponse> start() {
+            ReplicaState primary;
+            synchronized (this) {
+                primary = choose(used);
+                send(primary, request, false);
+            }
+            if(replicas.size() > 1 && maxHedgeRate > 0){
+                ScheduledFuture<?> t = scheduler.schedule(() -> hedge(false), hedgeDelay(primary), TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    timer = t;
+                }
+                if(result.isDone()){
+                    t.cancel(false);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Sends the request to an other replica
+         * @param failover if called because of a failed attempt (not rate limited)
+         * @return <code>true</code> if a request was sent
+         */
+        private boolean hedge(boolean failover) {
+            if(result.isDone() || !hedged.compareAndSet(false, true)){
+                return false;
+            }
+            if(!failover && !acquireHedgeCredit()){
+                rateLimited.incrementAndGet();
+                hedged.set(false); //allow a failover
+                return false;
+            }
+            synchronized (this) {
+                ReplicaState replica = winner < 0 ? choose(used) : null;
+                if(replica == null){
+                    return false;
+                }
+                hedges.incrementAndGet();
+                TagRequest attempt = request.copy();
+                if(!failover){ //the metrics are reported by the first attempt
+                    attempt.setMetricsListener(null);
+                }
+                send(replica, attempt, true);
+                return true;
+            }
+        }
+
+        /**
+         * MUST be called while holding the lock of this instance
+         */
+        private void send(ReplicaState replica, TagRequest attempt, boolean hedge) {
+            int index = attempts.size();
+            used.add(replica);
+            pending++;
+            try {
+                attempts.add(executor.submit(() -> run(index, replica, attempt, hedge)));
+            } catch (RuntimeException e) { //e.g. RejectedExecutionException
+                attempts.add(CompletableFuture.completedFuture(null));
+                pending--;
+                if(pending == 0){
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void run(int index, ReplicaState replica, TagRequest attempt, boolean hedge) {
+            replica.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                TagResponse response = attempt.process(replica.client);
+                replica.latencies.record(System.nanoTime() - start);
+                replica.completed(System.nanoTime() - start, false);
+                boolean won;
+                synchronized (this) { //only a single attempt can become the winner
+                    won = winner < 0 && !result.isDone();
+                    if(won){
+                        winner = index; //not interrupted by cancel()
+                    }
+                }
+                if(won && result.complete(response) && hedge){
+                    hedgeWins.incrementAndGet();
+                }
+            } catch (Exception | Error e) {
+                if(result.isDone()){
+                    return; //canceled because an other attempt completed
+                }
+                log.debug("tag request to replica {} failed", replica.name, e);
+                replica.completed(System.nanoTime() - start, true);
+                boolean last;
+                synchronized (this) {
+                    error = error == null ? e : error;
+                    last = --pending == 0;
+                }
+                if(!hedge(true) && last){
+                    result.completeExceptionally(error);
+                }
+                return;
+            } finally {
+                replica.inFlight.decrementAndGet();
+            }
+            synchronized (this) {
+                pending--;
+            }
+        }
+
+        private synchronized void cancel() {
+            if(timer != null){
+                timer.cancel(false);
+            }
+            for(int i = 0; i < attempts.size(); i++){
+                if(i != winner){
+                    attempts.get(i).cancel(true);
+                }
+            }
+        }
+    }
+
+    private static final class ReplicaState {
+
+        private final String name;
+        private final SolrClient client;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        /*
+         * Exponentially decaying latency (including failed requests) and
+         * ratio of failed requests
+         */
+        private double latency;
+        private double errorRate;
+
+        ReplicaState(String name, SolrClient client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        synchronized void completed(long latencyNanos, boolean failed) {
+            latency = latency == 0 ? latencyNanos : latency * (1 - ALPHA) + latencyNanos * ALPHA;
+            errorRate = errorRate * (1 - ALPHA) + (failed ? ALPHA : 0);
+        }
+
+        /**
+         * The expected latency of a request (lower is better)
+         */
+        synchronized double score() {
+            return (latency + 1) * (inFlight.get() + 1) / Math.max(0.01, 1 - errorRate);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Re-tags edited versions of a single document by only sending the changed
+ * region to Solr.
+ * <p>
+ * The session keeps the content and the tags of the last version. A new
+ * version is compared with the last one (common prefix and suffix) and only
+ * the changed region plus {@link #getContext() context} chars on both sides
+ * (extended to whitespace and to old tags touching the edit) is tagged. Tags
+ * outside of this window are taken from the last version (with shifted offsets).
+ * <p>
+ * To make this exact, Solr is always asked for {@link Overlaps#ALL all} tags
+ * without a tags limit. The requested {@link TagParams#getOverlaps() overlaps}
+ * and {@link TagParams#getTagsLimit() tags limit} are applied on the client. Tags spanning more as the
+ * context outside of the edit may not be found.
+ * <p>
+ * Not thread-safe. Use one session per edited document.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  IncrementalTagSession session = new IncrementalTagSession(client, params);
+ *  TagResponse response = session.tag(content); //tags the whole content
+ *  //...
+ *  response = session.tag(editedContent); //tags the edited region only
+ * </pre>
+ */
+public class IncrementalTagSession {
+
+    public static final int DEFAULT_CONTEXT = 256;
+
+    private final SolrClient client;
+    private final SolrParams params;
+    private final ModifiableSolrParams allParams;
+    private final Overlaps overlaps;
+    private final int tagsLimit;
+    private int context = DEFAULT_CONTEXT;
+    private String path;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+
+    private String content;
+    /*
+     * All tags (Overlaps.ALL) of the content
+     */
+    private TagResponse state;
+    private TagResponse response;
+    private int taggedChars;
+
+    public IncrementalTagSession(SolrClient client, SolrParams params) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        this.client = client;
+        this.params = params;
+        this.overlaps = TagParams.getOverlaps(params);
+        this.tagsLimit = TagParams.getTagsLimit(params);
+        this.allParams = params == null ? new ModifiableSolrParams() : new ModifiableSolrParams(params);
+        this.allParams.set(TagParams.STT_OVERLAPPS, Overlaps.ALL.name());
+        this.allParams.set(TagParams.STT_TAGS_LIMIT, Integer.MAX_VALUE);
+    }
+
+    public int getContext() {
+        return context;
+    }
+
+    /**
+     * The number of chars before and after the changed region that are also
+     * sent to Solr
+     * @param context the number of chars (&gt;= 0)
+     */
+    public void setContext(int context) {
+        if(context < 0){
+            throw new IllegalArgumentException("The context MUST NOT be negative (parsed: " + context + ")");
+        }
+        this.context = context;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * The content of the last version
+     * @return the content or <code>null</code> if nothing was tagged yet
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * The response of the last version
+     * @return the response or <code>null</code> if nothing was tagged yet
+     */
+    public TagResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * The number of chars sent to Solr for the last version
+     * @return the number of chars
+     */
+    public int getTaggedChars() {
+        return taggedChars;
+    }
+
+    /**
+     * Removes the state of the session. The next version will be tagged
+     * completely.
+     */
+    public void reset() {
+        content = null;
+        state = null;
+        response = null;
+        taggedChars = 0;
+    }
+
+    /**
+     * Tags the parsed version of the document
+     * @param content the content
+     * @return the tags of the whole content
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public TagResponse tag(String content) throws SolrServerException, IOException {
+        if(content == null){
+            throw new IllegalArgumentException("The parsed content MUST NOT be NULL!");
+        }
+        if(state != null && content.equals(this.content)){
+            taggedChars = 0;
+            return response;
+        }
+        TagResponse tags = state == null ? null : retag(content);
+        if(tags == null){
+            tags = tagWindow(content, 0, content.length());
+        }
+        //the response with the requested overlaps and tags limit
+        TagResponseBuilder builder = new TagResponseBuilder(docIdField).setContent(params, content)
+                .addHeader(tags.getHeader());
+        addTags(builder, tags, 0, content.length(), 0);
+        this.response = builder.applyOverlaps(overlaps).limit(tagsLimit).build(client);
+        this.state = tags;
+        this.content = content;
+        return response;
+    }
+
+    /**
+     * Tags the changed region of the content and merges the result with the
+     * tags of the unchanged regions
+     * @return the tags or <code>null</code> if the whole content needs to be
+     * tagged
+     */
+    private TagResponse retag(String content) throws SolrServerException, IOException {
+        String old = this.content;
+        int max = Math.min(old.length(), content.length());
+        int prefix = 0;
+        while(prefix < max && old.charAt(prefix) == content.charAt(prefix)){
+            prefix++;
+        }
+        int suffix = 0;
+        while(suffix < max - prefix && old.charAt(old.length() - 1 - suffix) == content.charAt(content.length() - 1 - suffix)){
+            suffix++;
+        }
+        int oldEditEnd = old.length() - suffix;
+        int newEditEnd = content.length() - suffix;
+        int delta = content.length() - old.length();
+        int from = Math.max(0, prefix - context);
+        int to = Math.min(content.length(), newEditEnd + context);
+        //extend the window to old tags touching the edit
+        int[] starts = state.getStartOffsets();
+        int[] ends = state.getEndOffsets();
+        for(int i = 0; i < starts.length; i++){
+            if(ends[i] >= prefix && starts[i] <= oldEditEnd){
+                from = Math.min(from, starts[i]);
+                to = Math.max(to, Math.min(content.length(), ends[i] + delta));
+            }
+        }
+        from = wordStart(content, from);
+        to = wordEnd(content, to);
+        if((long)(to - from) * 2 > content.length()){
+            return null; //tag the whole content
+        }
+        TagResponse window = tagWindow(content, from, to);
+        TagResponseBuilder builder = new TagResponseBuilder(docIdField).addHeader(window.getHeader());
+        //tags before and after the window
+        for(int i = 0; i < starts.length; i++){
+            if(starts[i] < from){
+                addTag(builder, state.getTags().get(i), 0);
+            } else if(starts[i] > oldEditEnd && ends[i] + delta > to){
+                addTag(builder, state.getTags().get(i), delta);
+            }
+        }
+        addTags(builder, window, 0, to - from, from);
+        return builder.applyOverlaps(Overlaps.ALL).build(client); //sorts the tags
+    }
+
+    private TagResponse tagWindow(String content, int from, int to) throws SolrServerException, IOException {
+        TagRequest request = new TagRequest(allParams, CharBuffer.wrap(content, from, to), contentType);
+        if(path != null){
+            request.setPath(path);
+        }
+        request.setDocIdField(docIdField);
+        taggedChars = to - from;
+        return request.process(client);
+    }
+
+    private static void addTags(TagResponseBuilder builder, TagResponse response, int from, int to, int shift) {
+        for(Tag tag : response.getTags()){
+            if(tag.getStart() >= from && tag.getEnd() <= to){
+                addTag(builder, tag, shift);
+            }
+        }
+    }
+
+    private static void addTag(TagResponseBuilder builder, Tag tag, int shift) {
+        builder.addTag(tag.getStart() + shift, tag.getEnd() + shift, tag.getIds());
+        for(SolrDocument doc : tag.getDocs()){
+            builder.addDocument(doc);
+        }
+    }
+
+    /**
+     * The start of the word at the parsed offset
+     */
+    static int wordStart(CharSequence content, int offset) {
+        while(offset > 0 && !Character.isWhitespace(content.charAt(offset - 1))){
+            offset--;
+        }
+        return offset;
+    }
+
+    /**
+     * The end of the word at the parsed offset
+     */
+    static int wordEnd(CharSequence content, int offset) {
+        while(offset < content.length() && !Character.isWhitespace(content.charAt(offset))){
+            offset++;
+        }
+        return offset;
+    }
+}
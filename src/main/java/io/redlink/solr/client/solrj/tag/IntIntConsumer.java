@@ -0,0 +1,20 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Represents an operation that accepts two <code>int</code> values (e.g. the
+ * start and end offset of a tag) and returns no result. This is the primitive
+ * specialization of {@link java.util.function.BiConsumer} for <code>int</code>.
+ *
+ * @see TagResponse#forEachTag(IntIntConsumer)
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+
+    /**
+     * Performs this operation on the given arguments
+     * @param value1 the first argument
+     * @param value2 the second argument
+     */
+    void accept(int value1, int value2);
+
+}
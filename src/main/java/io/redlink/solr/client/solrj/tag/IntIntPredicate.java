@@ -0,0 +1,21 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Represents a predicate of two <code>int</code> values (e.g. the start and
+ * end offset of a tag). This is the primitive specialization of
+ * {@link java.util.function.BiPredicate} for <code>int</code>.
+ *
+ * @see TagPipeline#filter(IntIntPredicate)
+ */
+@FunctionalInterface
+public interface IntIntPredicate {
+
+    /**
+     * Evaluates this predicate on the given arguments
+     * @param value1 the first argument
+     * @param value2 the second argument
+     * @return <code>true</code> if the arguments match the predicate
+     */
+    boolean test(int value1, int value2);
+
+}
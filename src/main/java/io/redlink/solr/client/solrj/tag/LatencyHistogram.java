@@ -0,0 +1,122 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed size histogram for non negative <code>long</code> values
+ * (e.g. latencies in nanoseconds).
+ * <p>
+ * Values are recorded in log-linear buckets: every power of two is split in
+ * 16 sub-buckets so that percentiles are reported with a relative error of
+ * less than 6.25%. Recording and reading do not allocate. Reads are not
+ * atomic with respect to concurrent writes.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as <code>0</code>
+     * @param value the value
+     */
+    public void record(long value) {
+        if(value < 0){
+            value = 0;
+        }
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long m = max.get();
+        while(value > m && !max.compareAndSet(m, value)){
+            m = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * The arithmetic mean of the recorded values
+     * @return the mean or <code>0</code> if no value was recorded
+     */
+    public double getMean() {
+        long c = count.get();
+        return c == 0 ? 0d : (double)sum.get() / c;
+    }
+
+    /**
+     * The value at the parsed percentile
+     * @param percentile the percentile in the range <code>[0..100]</code>
+     * @return the (upper bound of the bucket of the) value at the percentile
+     * or <code>0</code> if no value was recorded
+     */
+    public long getPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100){
+            throw new IllegalArgumentException("The percentile MUST BE in the range [0..100] (parsed: "
+                    + percentile + ")");
+        }
+        long total = count.get();
+        if(total == 0){
+            return 0;
+        }
+        long target = Math.max(1, (long)Math.ceil(percentile / 100d * total));
+        long cumulative = 0;
+        for(int i = 0; i < NUM_BUCKETS; i++){
+            cumulative += buckets.get(i);
+            if(cumulative >= target){
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Resets the histogram. Values recorded concurrently may get lost.
+     */
+    public void reset() {
+        for(int i = 0; i < NUM_BUCKETS; i++){
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if(value < SUB_BUCKETS){
+            return (int)value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        return ((msb - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS)
+                + (int)((value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lower = (long)(SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        long upper = lower + (1L << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper; //overflow for the highest buckets
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram [count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                + ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+    }
+}
@@ -0,0 +1,244 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.ContentStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tags content in-process by using a {@link TagDictionary} instead of sending
+ * it to the SolrTextTagger. Intended for small dictionaries with many requests
+ * (e.g. some thousand product codes).
+ * <p>
+ * Supports the same {@link TagParams} and {@link TagResponse} as the
+ * {@link TagRequest}: the {@link TagParams#getOverlaps() overlaps} are applied
+ * by the {@link OverlapResolver}, the <code>tagsLimit</code> (default: 1000) is applied to the
+ * resolved tags and {@link TagResponse.Tag#getMatchText()} is sliced from the
+ * content. Referenced documents are returned with all fields of the dictionary.
+ * Offset adjustments (<code>xmlOffsetAdjust</code> and
+ * <code>htmlOffsetAdjust</code>) are not supported. See {@link TagDictionary}
+ * for the supported analysis.
+ * <p>
+ * If created for a collection the dictionary is exported on first use and
+ * {@link #refresh()} exports it again if the version of the collection has
+ * changed. The dictionary is replaced atomically. Concurrent requests use
+ * either the old or the new dictionary.
+ * <p>
+ * Instances are thread-safe.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  LocalTagger tagger = new LocalTagger(client, "products", "name");
+ *  TagResponse response = tagger.tag(params, content);
+ *  //periodically
+ *  tagger.refresh();
+ * </pre>
+ */
+public class LocalTagger {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final SolrClient client;
+    private final String collection;
+    private final String nameField;
+    private String docIdField = "id";
+    private SolrParams exportParams;
+
+    private volatile TagDictionary dictionary;
+
+    /**
+     * Creates a tagger for a static dictionary
+     * @param dictionary the dictionary
+     */
+    public LocalTagger(TagDictionary dictionary) {
+        if(dictionary == null){
+            throw new IllegalArgumentException("The parsed TagDictionary MUST NOT be NULL!");
+        }
+        this.client = null;
+        this.collection = null;
+        this.nameField = null;
+        this.docIdField = dictionary.getDocIdField();
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Creates a tagger for the documents of a collection
+     * @param client the client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @param nameField the (stored) field with the names of the documents
+     */
+    public LocalTagger(SolrClient client, String collection, String nameField) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        if(nameField == null){
+            throw new IllegalArgumentException("The parsed name field MUST NOT be NULL!");
+        }
+        this.client = client;
+        this.collection = collection;
+        this.nameField = nameField;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field (the uniqueKey of the collection)
+     */
+    public void setDocIdField(String docIdField) {
+        if(docIdField == null){
+            throw new IllegalArgumentException("The parsed document id field MUST NOT be NULL!");
+        }
+        this.docIdField = docIdField;
+    }
+
+    public SolrParams getExportParams() {
+        return exportParams;
+    }
+
+    /**
+     * Additional params used to export the dictionary (e.g. filter queries
+     * selecting the documents of the dictionary)
+     * @param exportParams the params or <code>null</code> for none
+     */
+    public void setExportParams(SolrParams exportParams) {
+        this.exportParams = exportParams;
+    }
+
+    /**
+     * The current dictionary. Exports the dictionary if not yet loaded
+     * @return the dictionary
+     * @throws SolrServerException on any error while exporting the dictionary
+     * @throws IOException on any error while exporting the dictionary
+     */
+    public TagDictionary getDictionary() throws SolrServerException, IOException {
+        TagDictionary current = dictionary;
+        if(current == null){
+            synchronized (this) {
+                current = dictionary;
+                if(current == null){
+                    current = export();
+                    dictionary = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Atomically replaces the dictionary
+     * @param dictionary the new dictionary
+     */
+    public void setDictionary(TagDictionary dictionary) {
+        if(dictionary == null){
+            throw new IllegalArgumentException("The parsed TagDictionary MUST NOT be NULL!");
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Exports the dictionary again if the version of the collection has
+     * changed since the last export
+     * @return <code>true</code> if the dictionary was replaced
+     * @throws SolrServerException on any error while exporting the dictionary
+     * @throws IOException on any error while exporting the dictionary
+     * @throws IllegalStateException if this tagger was created for a static
+     * dictionary
+     */
+    public synchronized boolean refresh() throws SolrServerException, IOException {
+        if(client == null){
+            throw new IllegalStateException("This LocalTagger uses a static TagDictionary!");
+        }
+        TagDictionary current = dictionary;
+        if(current != null && current.getVersion() != null &&
+                current.getVersion().equals(TagDictionary.version(client, collection, exportParams))){
+            return false;
+        }
+        dictionary = export();
+        return true;
+    }
+
+    private TagDictionary export() throws SolrServerException, IOException {
+        long start = System.nanoTime();
+        TagDictionary exported = TagDictionary.export(client, collection, exportParams, nameField, docIdField);
+        log.debug("exported {} in {}ms", exported, (System.nanoTime() - start) / 1000000);
+        return exported;
+    }
+
+    /**
+     * Tags the content of the parsed request
+     * @param request the request
+     * @return the response
+     * @throws SolrServerException on any error while exporting the dictionary
+     * @throws IOException on any error while reading the content or exporting
+     * the dictionary
+     */
+    public TagResponse process(TagRequest request) throws SolrServerException, IOException {
+        CharSequence content = request.getContent();
+        if(content == null){
+            StringBuilder text = new StringBuilder();
+            if(request.getContentStreams() != null){
+                char[] buffer = new char[4096];
+                for(ContentStream stream : request.getContentStreams()){
+                    try (Reader reader = stream.getReader()) {
+                        for(int n = reader.read(buffer); n >= 0; n = reader.read(buffer)){
+                            text.append(buffer, 0, n);
+                        }
+                    }
+                }
+            }
+            content = text;
+        }
+        return tag(request.getParams(), content);
+    }
+
+    /**
+     * Tags the parsed content
+     * @param params the tag parameter
+     * @param content the content
+     * @return the response
+     * @throws SolrServerException on any error while exporting the dictionary
+     * @throws IOException on any error while exporting the dictionary
+     */
+    public TagResponse tag(SolrParams params, CharSequence content) throws SolrServerException, IOException {
+        if(content == null){
+            throw new IllegalArgumentException("The parsed content MUST NOT be NULL!");
+        }
+        if(TagParams.isOffsetAdjust(params)){
+            throw new SolrException(ErrorCode.BAD_REQUEST, "Offset adjustments are not supported by the LocalTagger!");
+        }
+        TagDictionary dict = getDictionary();
+        int[][] names = new int[][]{new int[16], new int[16], new int[16]};
+        int[] size = new int[1];
+        dict.find(content, (s, e, node) -> {
+            if(size[0] == names[0].length){
+                for(int i = 0; i < names.length; i++){
+                    names[i] = Arrays.copyOf(names[i], size[0] * 2);
+                }
+            }
+            names[0][size[0]] = s;
+            names[1][size[0]] = e;
+            names[2][size[0]++] = node;
+        });
+        int[] retained = new OverlapResolver(TagParams.getOverlaps(params)).resolve(
+                Arrays.copyOf(names[0], size[0]), Arrays.copyOf(names[1], size[0]));
+        int limit = TagParams.getTagsLimit(params);
+        TagResponseBuilder builder = new TagResponseBuilder(dict.getDocIdField()).setContent(params, content);
+        for(int i = 0; i < retained.length && i < limit; i++){
+            int idx = retained[i];
+            builder.addTag(names[0][idx], names[1][idx], dict.getIds(names[2][idx]));
+            dict.addDocuments(names[2][idx], builder);
+        }
+        return builder.build(client);
+    }
+}
@@ -0,0 +1,260 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.SolrParams;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Sends the same content to several tag request handlers (of the same or
+ * different collections) in parallel and merges the results into a single
+ * {@link TagResponse}.
+ * <p>
+ * As document ids of different sources may collide, ids are prefixed with the
+ * name of the source (<code>{source}{separator}{id}</code>). The same prefix is
+ * used for the {@link TagResponse#getDocIdField() document id field} of the
+ * documents. Merged documents are copies and the original id is kept in the
+ * {@link #SOURCE_ID_FIELD} and the name of the source in the
+ * {@link #SOURCE_FIELD}.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  MultiCollectionTagRequest request = new MultiCollectionTagRequest(params, content);
+ *  request.addSource("people", "people", "/tag");
+ *  request.addSource("places", "places", "/tag");
+ *  request.setOverlaps(Overlaps.LONGEST_DOMINANT_RIGHT); //optional
+ *  TagResponse response = request.process(client);
+ * </pre>
+ */
+public class MultiCollectionTagRequest {
+
+    /**
+     * Field holding the name of the source of a merged document
+     */
+    public static final String SOURCE_FIELD = "_tag_source_";
+    /**
+     * Field holding the original id of a merged document
+     */
+    public static final String SOURCE_ID_FIELD = "_tag_source_id_";
+
+    public static final String DEFAULT_SEPARATOR = ":";
+
+    private final SolrParams params;
+    private final String content;
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+    private String separator = DEFAULT_SEPARATOR;
+    private String docIdField = "id";
+    private String contentType = "text/plain";
+    private Overlaps overlaps;
+    private Executor executor = ForkJoinPool.commonPool();
+
+    public MultiCollectionTagRequest(SolrParams params, String content) {
+        this.params = params;
+        this.content = content;
+    }
+
+    /**
+     * Adds a source using the {@link #getDocIdField() default document id field}
+     * @param name the name of the source used to prefix ids
+     * @param collection the collection or <code>null</code> for the default
+     * collection of the client
+     * @param path the path of the tag request handler or <code>null</code>
+     * for the default path
+     * @return this
+     */
+    public MultiCollectionTagRequest addSource(String name, String collection, String path) {
+        return addSource(name, collection, path, null);
+    }
+
+    /**
+     * Adds a source
+     * @param name the name of the source used to prefix ids
+     * @param collection the collection or <code>null</code> for the default
+     * collection of the client
+     * @param path the path of the tag request handler or <code>null</code>
+     * for the default path
+     * @param docIdField the document id field of the source or <code>null</code>
+     * to use the {@link #getDocIdField() default}
+     * @return this
+     */
+    public MultiCollectionTagRequest addSource(String name, String collection, String path, String docIdField) {
+        if(name == null || name.isEmpty()){
+            throw new IllegalArgumentException("The parsed source name MUST NOT be NULL nor empty!");
+        }
+        if(sources.containsKey(name)){
+            throw new IllegalArgumentException("A source with the name '" + name + "' is already present!");
+        }
+        sources.put(name, new Source(name, collection, path, docIdField));
+        return this;
+    }
+
+    public List<String> getSources() {
+        return Collections.unmodifiableList(new ArrayList<>(sources.keySet()));
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Setter for the separator between the name of the source and the id
+     * @param separator the separator
+     */
+    public void setSeparator(String separator) {
+        this.separator = separator == null ? "" : separator;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field used for sources without an
+     * explicit document id field and for the merged response
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Overlaps getOverlaps() {
+        return overlaps;
+    }
+
+    /**
+     * Setter for the algorithm applied to the merged tags of all sources
+     * @param overlaps the algorithm or <code>null</code> to keep all tags
+     * of all sources
+     */
+    public void setOverlaps(Overlaps overlaps) {
+        this.overlaps = overlaps;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Setter for the executor used to send requests to the sources. By default
+     * the {@link ForkJoinPool#commonPool()} is used.
+     * @param executor the executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+    }
+
+    /**
+     * Sends the content to all sources and merges the responses
+     * @param client the client
+     * @return the merged response
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public TagResponse process(SolrClient client) throws SolrServerException, IOException {
+        if(sources.isEmpty()){
+            throw new IllegalStateException("No source was added to the request!");
+        }
+        List<CompletableFuture<TagResponse>> futures = new ArrayList<>(sources.size());
+        for(Source source : sources.values()){
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                TagRequest request = new TagRequest(params, new CharSequenceContentStream(content, contentType));
+                if(source.path != null){
+                    request.setPath(source.path);
+                }
+                request.setDocIdField(source.docIdField == null ? docIdField : source.docIdField);
+                try {
+                    return request.process(client, source.collection);
+                } catch (SolrServerException | IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        TagResponseBuilder builder = new TagResponseBuilder(docIdField).setContent(params, content);
+        int i = 0;
+        for(Source source : sources.values()){
+            merge(source, join(futures.get(i++)), builder);
+        }
+        //ALL sorts the tags of all sources without removing any
+        return builder.applyOverlaps(overlaps == null ? Overlaps.ALL : overlaps).build(client);
+    }
+
+    private void merge(Source source, TagResponse response, TagResponseBuilder builder) {
+        builder.addHeader(response.getHeader());
+        builder.addTags(response, 0, null, source::prefix);
+        if(response.getResults() != null){
+            String sourceIdField = response.getDocIdField();
+            for(SolrDocument doc : response.getResults()){
+                SolrDocument copy = new SolrDocument();
+                copy.putAll(doc);
+                Object id = doc.get(sourceIdField);
+                copy.remove(sourceIdField);
+                copy.setField(docIdField, source.prefix(id));
+                copy.setField(SOURCE_ID_FIELD, id);
+                copy.setField(SOURCE_FIELD, source.name);
+                builder.addDocument(copy);
+            }
+        }
+    }
+
+    private static TagResponse join(CompletableFuture<TagResponse> future) throws SolrServerException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrServerException("Interrupted while waiting for a tag response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null ?
+                    e.getCause().getCause() : e.getCause();
+            if(cause instanceof SolrServerException){
+                throw (SolrServerException)cause;
+            } else if(cause instanceof IOException){
+                throw (IOException)cause;
+            } else if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else {
+                throw new SolrServerException(cause);
+            }
+        }
+    }
+
+    private final class Source {
+
+        final String name;
+        final String collection;
+        final String path;
+        final String docIdField;
+
+        Source(String name, String collection, String path, String docIdField) {
+            this.name = name;
+            this.collection = collection;
+            this.path = path;
+            this.docIdField = docIdField;
+        }
+
+        String prefix(Object id) {
+            return name + separator + id;
+        }
+    }
+}
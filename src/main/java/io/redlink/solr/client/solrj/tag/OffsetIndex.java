@@ -0,0 +1,193 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Converts UTF-16 char offsets (as used by {@link TagResponse.Tag#getStart()}
+ * and {@link TagResponse.Tag#getEnd()}) to UTF-8 byte offsets and code point
+ * offsets of the same content.
+ * <p>
+ * The index is built in a single pass over the content and samples the byte
+ * and code point offset of every {@value #SAMPLE_INTERVAL}th char. A
+ * conversion scans at most {@value #SAMPLE_INTERVAL} chars starting from the
+ * previous sample. The index needs about a sixteenth of the memory of the
+ * content.
+ * <p>
+ * Unpaired surrogates are counted as a single byte as they are replaced by
+ * <code>'?'</code> when encoded (see {@link CharSequenceContentStream}).
+ * Offsets pointing between the two chars of a surrogate pair are mapped to the
+ * end of the pair.
+ * <p>
+ * Instances are immutable and thread-safe as long as the content is not
+ * modified.
+ */
+public final class OffsetIndex {
+
+    private static final int SAMPLE_BITS = 6;
+    static final int SAMPLE_INTERVAL = 1 << SAMPLE_BITS;
+
+    private final CharSequence content;
+    private final int[] byteSamples;
+    private final int[] codePointSamples;
+    private final int byteLength;
+    private final int codePointLength;
+
+    private OffsetIndex(CharSequence content) {
+        this.content = content;
+        int length = content.length();
+        int numSamples = (length >>> SAMPLE_BITS) + 1;
+        byteSamples = new int[numSamples];
+        codePointSamples = new int[numSamples];
+        long bytes = 0;
+        int codePoints = 0;
+        for(int i = 0; i < length; i++){
+            if((i & (SAMPLE_INTERVAL - 1)) == 0){
+                byteSamples[i >>> SAMPLE_BITS] = (int)bytes;
+                codePointSamples[i >>> SAMPLE_BITS] = codePoints;
+            }
+            int n = utf8Length(content, i);
+            bytes += n;
+            if(n > 0){
+                codePoints++;
+            }
+            if(bytes > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("The UTF-8 encoded content MUST NOT exceed "
+                        + Integer.MAX_VALUE + " bytes!");
+            }
+        }
+        if((length & (SAMPLE_INTERVAL - 1)) == 0){ //sample for offset == length
+            byteSamples[length >>> SAMPLE_BITS] = (int)bytes;
+            codePointSamples[length >>> SAMPLE_BITS] = codePoints;
+        }
+        byteLength = (int)bytes;
+        codePointLength = codePoints;
+    }
+
+    /**
+     * Builds the index for the parsed content
+     * @param content the content
+     * @return the index
+     */
+    public static OffsetIndex create(CharSequence content) {
+        if(content == null){
+            throw new IllegalArgumentException("The parsed content MUST NOT be NULL!");
+        }
+        return new OffsetIndex(content);
+    }
+
+    /**
+     * The number of UTF-8 bytes of the char at the parsed index. The high
+     * surrogate of a pair counts 4 bytes and the low surrogate 0 bytes.
+     */
+    private static int utf8Length(CharSequence content, int i) {
+        char c = content.charAt(i);
+        if(c < 0x80){
+            return 1;
+        } else if(c < 0x800){
+            return 2;
+        } else if(Character.isHighSurrogate(c)){
+            return i + 1 < content.length() && Character.isLowSurrogate(content.charAt(i + 1)) ? 4 : 1;
+        } else if(Character.isLowSurrogate(c)){
+            return i > 0 && Character.isHighSurrogate(content.charAt(i - 1)) ? 0 : 1;
+        } else {
+            return 3;
+        }
+    }
+
+    /**
+     * The length of the content in chars
+     * @return the number of chars
+     */
+    public int length() {
+        return content.length();
+    }
+
+    /**
+     * The length of the UTF-8 encoded content
+     * @return the number of bytes
+     */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    /**
+     * The number of code points of the content
+     * @return the number of code points
+     */
+    public int getCodePointLength() {
+        return codePointLength;
+    }
+
+    /**
+     * Converts a char offset to the offset of the UTF-8 encoded content
+     * @param charOffset the char offset in the range <code>[0..length]</code>
+     * @return the byte offset
+     */
+    public int toByteOffset(int charOffset) {
+        checkOffset(charOffset);
+        int i = align(charOffset);
+        int bytes = byteSamples[charOffset >>> SAMPLE_BITS];
+        for(int c = charOffset & ~(SAMPLE_INTERVAL - 1); c < i; c++){
+            bytes += utf8Length(content, c);
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts a char offset to a code point offset
+     * @param charOffset the char offset in the range <code>[0..length]</code>
+     * @return the code point offset
+     */
+    public int toCodePointOffset(int charOffset) {
+        checkOffset(charOffset);
+        int i = align(charOffset);
+        int codePoints = codePointSamples[charOffset >>> SAMPLE_BITS];
+        for(int c = charOffset & ~(SAMPLE_INTERVAL - 1); c < i; c++){
+            if(utf8Length(content, c) > 0){
+                codePoints++;
+            }
+        }
+        return codePoints;
+    }
+
+    /**
+     * Converts char offsets (e.g. {@link TagResponse#getStartOffsets()}) to
+     * UTF-8 byte offsets
+     * @param charOffsets the char offsets
+     * @return a new array with the byte offsets
+     */
+    public int[] toByteOffsets(int[] charOffsets) {
+        int[] offsets = new int[charOffsets.length];
+        for(int i = 0; i < offsets.length; i++){
+            offsets[i] = toByteOffset(charOffsets[i]);
+        }
+        return offsets;
+    }
+
+    /**
+     * Converts char offsets (e.g. {@link TagResponse#getStartOffsets()}) to
+     * code point offsets
+     * @param charOffsets the char offsets
+     * @return a new array with the code point offsets
+     */
+    public int[] toCodePointOffsets(int[] charOffsets) {
+        int[] offsets = new int[charOffsets.length];
+        for(int i = 0; i < offsets.length; i++){
+            offsets[i] = toCodePointOffset(charOffsets[i]);
+        }
+        return offsets;
+    }
+
+    private void checkOffset(int charOffset) {
+        if(charOffset < 0 || charOffset > content.length()){
+            throw new IndexOutOfBoundsException("Offset: " + charOffset + ", Length: " + content.length());
+        }
+    }
+
+    /**
+     * Moves offsets between the chars of a surrogate pair to the end of the pair
+     */
+    private int align(int charOffset) {
+        return charOffset > 0 && charOffset < content.length()
+                && Character.isHighSurrogate(content.charAt(charOffset - 1))
+                && Character.isLowSurrogate(content.charAt(charOffset)) ? charOffset + 1 : charOffset;
+    }
+}
@@ -0,0 +1,260 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Client side implementation of the {@link Overlaps} algorithms of the
+ * <a href="https://github.com/OpenSextant/SolrTextTagger">SolrTextTagger</a>.
+ * Intended to be used when merging tags of several requests (e.g. chunks,
+ * paragraphs or collections).
+ * <p>
+ * Tags are sorted by their start and end offsets and all algorithms run in
+ * <code>O(n log n)</code> on primitive <code>int</code> arrays. The semantics
+ * are the same as the one of the tagger:
+ * <ul>
+ * <li>{@link Overlaps#ALL}: all tags are retained
+ * <li>{@link Overlaps#NO_SUB}: tags completely within an other tag are
+ * removed. Of tags with the same span the first one is retained.
+ * <li>{@link Overlaps#LONGEST_DOMINANT_RIGHT}: the longest tag (the right-most
+ * one in case of a tie) is retained and all tags overlapping it are removed.
+ * This is repeated until no overlapping tags are left.
+ * </ul>
+ * Instances are immutable and thread-safe.
+ */
+public class OverlapResolver {
+
+    private final Overlaps overlaps;
+
+    /**
+     * Creates a resolver for the parsed algorithm
+     * @param overlaps the algorithm or <code>null</code> to use the default
+     * ({@link Overlaps#NO_SUB}) of the tagger
+     */
+    public OverlapResolver(Overlaps overlaps) {
+        this.overlaps = overlaps == null ? Overlaps.NO_SUB : overlaps;
+    }
+
+    public Overlaps getOverlaps() {
+        return overlaps;
+    }
+
+    /**
+     * Resolves overlapping tags of the parsed response
+     * @param response the response
+     * @return the retained tags sorted by start and end offset
+     */
+    public List<Tag> resolve(TagResponse response) {
+        List<Tag> tags = response.getTags();
+        int[] retained = resolve(response.getStartOffsets(), response.getEndOffsets());
+        List<Tag> result = new ArrayList<>(retained.length);
+        for(int idx : retained){
+            result.add(tags.get(idx));
+        }
+        return result;
+    }
+
+    /**
+     * Resolves overlapping tags of the parsed list
+     * @param tags the tags
+     * @param start function returning the start offset of a tag
+     * @param end function returning the end offset of a tag
+     * @return the retained tags sorted by start and end offset
+     */
+    public <T> List<T> resolve(List<T> tags, ToIntFunction<? super T> start, ToIntFunction<? super T> end) {
+        int[] starts = new int[tags.size()];
+        int[] ends = new int[tags.size()];
+        for(int i = 0; i < starts.length; i++){
+            T tag = tags.get(i);
+            starts[i] = start.applyAsInt(tag);
+            ends[i] = end.applyAsInt(tag);
+        }
+        int[] retained = resolve(starts, ends);
+        List<T> result = new ArrayList<>(retained.length);
+        for(int idx : retained){
+            result.add(tags.get(idx));
+        }
+        return result;
+    }
+
+    /**
+     * Resolves overlapping tags
+     * @param starts the start offsets of the tags
+     * @param ends the end offsets of the tags
+     * @return the indexes of the retained tags sorted by start and end offset
+     */
+    public int[] resolve(int[] starts, int[] ends) {
+        if(starts.length != ends.length){
+            throw new IllegalArgumentException("The parsed start (length: " + starts.length
+                    + ") and end (length: " + ends.length + ") offsets MUST HAVE the same length!");
+        }
+        int[] order = sort(starts, ends);
+        switch (overlaps) {
+        case NO_SUB:
+            return removeSubTags(order, starts, ends);
+        case LONGEST_DOMINANT_RIGHT:
+            return removeNonDominantTags(order, starts, ends);
+        default:
+            return order;
+        }
+    }
+
+    /**
+     * Retains tags not contained in a previous tag. Previous tags with the
+     * same start but a shorter span are removed.
+     */
+    private static int[] removeSubTags(int[] order, int[] starts, int[] ends) {
+        int[] result = new int[order.length];
+        int size = 0;
+        int maxEnd = Integer.MIN_VALUE;
+        for(int idx : order){
+            int start = starts[idx];
+            int end = ends[idx];
+            while(size > 0 && starts[result[size - 1]] == start && ends[result[size - 1]] < end){
+                size--;
+            }
+            if(end > maxEnd){
+                result[size++] = idx;
+                maxEnd = end;
+            }
+        }
+        return trim(result, size);
+    }
+
+    /**
+     * Greedily retains tags by decreasing length (right-most first in case of
+     * a tie) if they do not overlap with an already retained tag.
+     * <p>
+     * As retained tags do not overlap only the retained tag with the highest
+     * start offset before the end of a candidate needs to be checked. This is
+     * looked up by a prefix-maximum Fenwick tree over the sort positions.
+     */
+    private static int[] removeNonDominantTags(int[] order, int[] starts, int[] ends) {
+        int n = order.length;
+        int[] sortedStarts = new int[n];
+        int[] lengths = new int[n];
+        for(int pos = 0; pos < n; pos++){
+            sortedStarts[pos] = starts[order[pos]];
+            lengths[pos] = ends[order[pos]] - starts[order[pos]];
+        }
+        //positions by decreasing length and decreasing position
+        int[] candidates = new int[n];
+        for(int pos = 0; pos < n; pos++){
+            candidates[pos] = n - 1 - pos;
+        }
+        mergeSort(candidates, (a, b) -> Integer.compare(lengths[b], lengths[a]));
+        int[] fenwick = new int[n + 1]; //prefix maximum of retained (pos + 1)
+        boolean[] retained = new boolean[n];
+        int size = 0;
+        for(int pos : candidates){
+            int start = sortedStarts[pos];
+            int end = start + lengths[pos];
+            //last position with a start < end
+            int r = lowerBound(sortedStarts, end) - 1;
+            int prev = r < 0 ? 0 : prefixMax(fenwick, r + 1);
+            if(prev > 0){
+                int p = prev - 1;
+                if(start < sortedStarts[p] + lengths[p]){
+                    continue; //overlaps with a retained tag
+                }
+            }
+            retained[pos] = true;
+            size++;
+            for(int i = pos + 1; i <= n; i += i & -i){
+                fenwick[i] = Math.max(fenwick[i], pos + 1);
+            }
+        }
+        int[] result = new int[size];
+        for(int pos = 0, i = 0; pos < n; pos++){
+            if(retained[pos]){
+                result[i++] = order[pos];
+            }
+        }
+        return result;
+    }
+
+    private static int prefixMax(int[] fenwick, int i) {
+        int max = 0;
+        for(; i > 0; i -= i & -i){
+            max = Math.max(max, fenwick[i]);
+        }
+        return max;
+    }
+
+    /**
+     * @return the first index with a value &gt;= key
+     */
+    private static int lowerBound(int[] sorted, int key) {
+        int low = 0;
+        int high = sorted.length;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(sorted[mid] < key){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the indexes of the tags sorted by start and end offset
+     */
+    private static int[] sort(int[] starts, int[] ends) {
+        int[] order = new int[starts.length];
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        mergeSort(order, (a, b) -> starts[a] != starts[b] ?
+                Integer.compare(starts[a], starts[b]) : Integer.compare(ends[a], ends[b]));
+        return order;
+    }
+
+    private interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Stable merge sort of primitive <code>int</code> values
+     */
+    private static void mergeSort(int[] values, IntComparator comparator) {
+        int[] src = values;
+        int[] dst = new int[values.length];
+        for(int width = 1; width < values.length; width *= 2){
+            for(int low = 0; low < values.length; low += 2 * width){
+                int mid = Math.min(low + width, values.length);
+                int high = Math.min(low + 2 * width, values.length);
+                int i = low, j = mid, k = low;
+                while(i < mid && j < high){
+                    dst[k++] = comparator.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+                }
+                while(i < mid){
+                    dst[k++] = src[i++];
+                }
+                while(j < high){
+                    dst[k++] = src[j++];
+                }
+            }
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if(src != values){
+            System.arraycopy(src, 0, values, 0, values.length);
+        }
+    }
+
+    private static int[] trim(int[] values, int size) {
+        if(values.length == size){
+            return values;
+        }
+        int[] trimmed = new int[size];
+        System.arraycopy(values, 0, trimmed, 0, size);
+        return trimmed;
+    }
+}
@@ -0,0 +1,204 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.DataInputInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+/**
+ * A javabin {@link BinaryResponseParser} that forwards tags and documents
+ * of a <a href="https://github.com/OpenSextant/SolrTextTagger">SolrTextTagger</a>
+ * response to a {@link TagStreamingCallback} while the response is decoded.
+ * <p>
+ * The returned {@link NamedList} contains all other elements of the response
+ * (e.g. the <code>responseHeader</code> and <code>tagsCount</code>). The
+ * <code>tags</code> list is empty and the <code>response</code> document list
+ * only holds the numFound, start and maxScore information.
+ * <p>
+ * Typically this parser is not used directly but set by
+ * {@link TagRequest#setStreamingCallback(TagStreamingCallback)}.
+ */
+public class StreamingTagResponseParser extends BinaryResponseParser {
+
+    private final TagStreamingCallback callback;
+
+    public StreamingTagResponseParser(TagStreamingCallback callback) {
+        if(callback == null){
+            throw new IllegalArgumentException("The parsed TagStreamingCallback MUST NOT be NULL!");
+        }
+        this.callback = callback;
+    }
+
+    public TagStreamingCallback getCallback() {
+        return callback;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public NamedList<Object> processResponse(InputStream body, String encoding) {
+        try {
+            return (NamedList<Object>) new StreamingTagCodec().unmarshal(body);
+        } catch (IOException e) {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "parsing error", e);
+        }
+    }
+
+    /**
+     * {@link JavaBinCodec} that streams the elements of the <code>tags</code>
+     * list and the documents of the <code>response</code> of the top level
+     * {@link NamedList} to the {@link TagStreamingCallback}. Other documents
+     * (e.g. child documents or documents of other lists) are decoded normally.
+     */
+    private class StreamingTagCodec extends JavaBinCodec {
+
+        private boolean topLevel = true;
+        /*
+         * true while the value of the top level "response" is read and
+         * while the documents of this list are read
+         */
+        private boolean responseValue;
+        private boolean streamDocs;
+        /*
+         * the number of documents currently read (> 1 for child documents)
+         */
+        private int docDepth;
+
+        @Override
+        public SimpleOrderedMap<Object> readOrderedMap(DataInputInputStream dis) throws IOException {
+            if(topLevel){
+                topLevel = false;
+                return readTopLevel(dis, new SimpleOrderedMap<>());
+            } else {
+                return super.readOrderedMap(dis);
+            }
+        }
+
+        @Override
+        public NamedList<Object> readNamedList(DataInputInputStream dis) throws IOException {
+            if(topLevel){
+                topLevel = false;
+                return readTopLevel(dis, new NamedList<>());
+            } else {
+                return super.readNamedList(dis);
+            }
+        }
+
+        private <T extends NamedList<Object>> T readTopLevel(DataInputInputStream dis, T nl) throws IOException {
+            int sz = readSize(dis);
+            for(int i = 0; i < sz; i++){
+                String name = (String)readVal(dis);
+                if("tags".equals(name)){
+                    streamTags(dis);
+                    nl.add(name, Collections.emptyList());
+                } else if("response".equals(name)){
+                    responseValue = true;
+                    try {
+                        nl.add(name, readVal(dis));
+                    } finally {
+                        responseValue = false;
+                    }
+                } else {
+                    nl.add(name, readVal(dis));
+                }
+            }
+            return nl;
+        }
+
+        private void streamTags(DataInputInputStream dis) throws IOException {
+            tagByte = dis.readByte();
+            if((tagByte >>> 5) == (ARR >>> 5)){
+                int sz = readSize(dis);
+                for(int i = 0; i < sz; i++){
+                    streamTag(readVal(dis));
+                }
+            } else if(tagByte == ITERATOR){
+                for(Object tag = readVal(dis); tag != END_OBJ; tag = readVal(dis)){
+                    streamTag(tag);
+                }
+            } else if(tagByte != NULL){
+                throw new IOException("tags must be an array (tag byte: " + tagByte + ")");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void streamTag(Object val) {
+            NamedList<Object> tag = (NamedList<Object>)val;
+            int start = -1;
+            int end = -1;
+            List<Object> ids = Collections.emptyList();
+            for(int i = 0; i < tag.size(); i++){
+                String n = tag.getName(i);
+                switch (n) {
+                case "startOffset":
+                    start = (Integer)tag.getVal(i);
+                    break;
+                case "endOffset":
+                    end = (Integer)tag.getVal(i);
+                    break;
+                case "ids":
+                    ids = (List<Object>)tag.getVal(i);
+                    break;
+                default:
+                    break;
+                }
+            }
+            callback.onTag(start, end, ids);
+        }
+
+        @Override
+        public SolrDocument readSolrDocument(DataInputInputStream dis) throws IOException {
+            boolean forward = streamDocs && docDepth == 0;
+            SolrDocument doc;
+            docDepth++;
+            try {
+                doc = super.readSolrDocument(dis);
+            } finally {
+                docDepth--;
+            }
+            if(forward){
+                callback.onDocument(doc);
+                return null;
+            } else {
+                return doc;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public SolrDocumentList readSolrDocumentList(DataInputInputStream dis) throws IOException {
+            boolean stream = responseValue && docDepth == 0 && !streamDocs;
+            responseValue = false; //only the list directly used as value
+            if(!stream){
+                return super.readSolrDocumentList(dis);
+            }
+            SolrDocumentList solrDocs = new SolrDocumentList();
+            List<Object> list = (List<Object>) readVal(dis);
+            solrDocs.setNumFound((Long) list.get(0));
+            solrDocs.setStart((Long) list.get(1));
+            solrDocs.setMaxScore((Float) list.get(2));
+            tagByte = dis.readByte();
+            if((tagByte >>> 5) != (ARR >>> 5)){
+                throw new IOException("doclist must have an array");
+            }
+            int sz = readSize(dis);
+            streamDocs = true;
+            try {
+                for(int i = 0; i < sz; i++){
+                    readVal(dis); //documents are forwarded by readSolrDocument
+                }
+            } finally {
+                streamDocs = false;
+            }
+            return solrDocs;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Aggregates the tags emitted by a {@link TagPipeline}. Similar to a
+ * {@link java.util.stream.Collector} but accepting the reused
+ * {@link TagPipeline.Match} flyweight.
+ * <p>
+ * If the pipeline splits the tags in parallel segments every segment is
+ * aggregated in its own container. Containers are merged in the order of the
+ * tags.
+ *
+ * @param <A> the type of the mutable container
+ * @param <R> the type of the result
+ * @see TagPipeline#aggregate(TagResponse, TagAggregator)
+ */
+public interface TagAggregator<A, R> {
+
+    /**
+     * Creates a new container
+     * @return the container
+     */
+    A create();
+
+    /**
+     * Adds a tag to the container
+     * @param container the container
+     * @param match the tag. MUST NOT be retained as the instance is reused
+     * for the following tags
+     */
+    void accept(A container, TagPipeline.Match match);
+
+    /**
+     * Merges two containers
+     * @param first the container of the preceding tags
+     * @param second the container of the following tags
+     * @return the merged container (may be one of the parsed containers)
+     */
+    A merge(A first, A second);
+
+    /**
+     * Converts the container to the result
+     * @param container the container
+     * @return the result
+     */
+    R finish(A container);
+
+    /**
+     * Counts the emitted tags referencing a document
+     * @return the aggregator for the number of tags by document id (in the
+     * order of the first mention)
+     */
+    static TagAggregator<Map<Object, Integer>, Map<Object, Integer>> mentionCounts() {
+        return new TagAggregator<Map<Object, Integer>, Map<Object, Integer>>() {
+
+            @Override
+            public Map<Object, Integer> create() {
+                return new LinkedHashMap<>();
+            }
+
+            @Override
+            public void accept(Map<Object, Integer> container, TagPipeline.Match match) {
+                for(int i = 0; i < match.getDocCount(); i++){
+                    container.merge(match.getId(i), 1, Integer::sum);
+                }
+            }
+
+            @Override
+            public Map<Object, Integer> merge(Map<Object, Integer> first, Map<Object, Integer> second) {
+                for(Entry<Object, Integer> entry : second.entrySet()){
+                    first.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+                return first;
+            }
+
+            @Override
+            public Map<Object, Integer> finish(Map<Object, Integer> container) {
+                return container;
+            }
+        };
+    }
+}
@@ -0,0 +1,363 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Writes the content with annotations (e.g. XML/HTML elements) inserted at
+ * the offsets of tags.
+ * <p>
+ * The content is read from a {@link Reader} and written to a {@link Writer}
+ * in a single forward pass. Neither the content nor the output is kept in
+ * memory. Tags MUST BE sorted by their start offset (as returned by the tagger).
+ * Nested tags are written as nested annotations. Tags overlapping other tags
+ * are split into several annotations (the {@link Template} is called for
+ * every fragment) so that the output is always well-formed.
+ * <p>
+ * For inserting markup into XML or HTML content the offsets need to be
+ * adjusted by the tagger (see {@link TagParams#setXmlOffsetAdjust(boolean)}
+ * and {@link TagParams#setHtmlOffsetAdjust(boolean)}). The content is
+ * written as is (not escaped).
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagAnnotator&lt;Tag&gt; annotator = TagAnnotator.create(TagAnnotator.element("span", "data-ids"));
+ *  try (Reader content = ...; Writer out = ...) {
+ *      annotator.annotate(response.getTags(), content, out);
+ *  }
+ * </pre>
+ * Tags received in streaming mode can be parsed to a {@link Session} as
+ * they are decoded.
+ *
+ * @param <T> the type of the tags
+ */
+public class TagAnnotator<T> {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * Writes the start and the end of an annotation
+     * @param <T> the type of the tags
+     */
+    public interface Template<T> {
+
+        /**
+         * Writes the start of the annotation (e.g. an open element)
+         * @param out the writer
+         * @param tag the tag
+         * @throws IOException on any error while writing
+         */
+        void open(Writer out, T tag) throws IOException;
+
+        /**
+         * Writes the end of the annotation (e.g. a close element)
+         * @param out the writer
+         * @param tag the tag
+         * @throws IOException on any error while writing
+         */
+        void close(Writer out, T tag) throws IOException;
+    }
+
+    private final Template<? super T> template;
+    private final ToIntFunction<? super T> start;
+    private final ToIntFunction<? super T> end;
+    private final Comparator<T> longestFirst;
+
+    /**
+     * Creates an annotator for tags of any type
+     * @param template the template
+     * @param start function returning the start offset of a tag
+     * @param end function returning the end offset of a tag
+     */
+    public TagAnnotator(Template<? super T> template, ToIntFunction<? super T> start, ToIntFunction<? super T> end) {
+        if(template == null){
+            throw new IllegalArgumentException("The parsed Template MUST NOT be NULL!");
+        }
+        if(start == null || end == null){
+            throw new IllegalArgumentException("The parsed start and end functions MUST NOT be NULL!");
+        }
+        this.template = template;
+        this.start = start;
+        this.end = end;
+        this.longestFirst = (t1, t2) -> Integer.compare(end.applyAsInt(t2), end.applyAsInt(t1));
+    }
+
+    /**
+     * Creates an annotator for the {@link Tag}s of a {@link TagResponse}
+     * @param template the template
+     * @return the annotator
+     */
+    public static TagAnnotator<Tag> create(Template<? super Tag> template) {
+        return new TagAnnotator<>(template, Tag::getStart, Tag::getEnd);
+    }
+
+    /**
+     * Template writing a XML element with the ids of the tagged documents as
+     * space separated attribute value (e.g.
+     * <code>&lt;span data-ids="id1 id2"&gt;mention&lt;/span&gt;</code>)
+     * @param name the name of the element
+     * @param idsAttribute the name of the attribute or <code>null</code> to
+     * not write the ids
+     * @return the template
+     */
+    public static Template<Tag> element(String name, String idsAttribute) {
+        if(name == null || name.isEmpty()){
+            throw new IllegalArgumentException("The parsed element name MUST NOT be NULL nor empty!");
+        }
+        return new Template<Tag>() {
+
+            @Override
+            public void open(Writer out, Tag tag) throws IOException {
+                out.write('<');
+                out.write(name);
+                if(idsAttribute != null){
+                    out.write(' ');
+                    out.write(idsAttribute);
+                    out.write("=\"");
+                    boolean first = true;
+                    for(Object id : tag.getIds()){
+                        if(!first){
+                            out.write(' ');
+                        }
+                        first = false;
+                        escape(out, String.valueOf(id));
+                    }
+                    out.write('"');
+                }
+                out.write('>');
+            }
+
+            @Override
+            public void close(Writer out, Tag tag) throws IOException {
+                out.write("</");
+                out.write(name);
+                out.write('>');
+            }
+        };
+    }
+
+    /**
+     * Writes the XML escaped value
+     */
+    static void escape(Writer out, String value) throws IOException {
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch (c) {
+            case '&':
+                out.write("&amp;");
+                break;
+            case '<':
+                out.write("&lt;");
+                break;
+            case '>':
+                out.write("&gt;");
+                break;
+            case '"':
+                out.write("&quot;");
+                break;
+            case '\'':
+                out.write("&apos;");
+                break;
+            default:
+                out.write(c);
+            }
+        }
+    }
+
+    /**
+     * Writes the annotated content
+     * @param tags the tags sorted by start offset
+     * @param content the content
+     * @param out the writer (not closed by this method)
+     * @throws IOException on any error while reading or writing
+     * @throws IllegalArgumentException if tags are not sorted by start offset
+     */
+    public void annotate(Iterable<? extends T> tags, Reader content, Writer out) throws IOException {
+        annotate(tags.iterator(), content, out);
+    }
+
+    /**
+     * Writes the annotated content
+     * @param tags the tags sorted by start offset
+     * @param content the content
+     * @param out the writer (not closed by this method)
+     * @throws IOException on any error while reading or writing
+     * @throws IllegalArgumentException if tags are not sorted by start offset
+     */
+    public void annotate(Iterator<? extends T> tags, Reader content, Writer out) throws IOException {
+        Session session = open(content, out);
+        while(tags.hasNext()){
+            session.add(tags.next());
+        }
+        session.finish();
+    }
+
+    /**
+     * Opens a session for adding tags one by one (e.g. from a
+     * {@link TagStreamingCallback})
+     * @param content the content
+     * @param out the writer (not closed by the session)
+     * @return the session
+     */
+    public Session open(Reader content, Writer out) {
+        if(content == null || out == null){
+            throw new IllegalArgumentException("The parsed Reader and Writer MUST NOT be NULL!");
+        }
+        return new Session(content, out);
+    }
+
+    /**
+     * Annotates a single content. Tags are added by {@link #add(Object)}
+     * and the content is written up to the start of the added tag. The
+     * remaining content is written by {@link #finish()}.
+     * <p>
+     * Not thread-safe.
+     */
+    public final class Session {
+
+        private final Reader content;
+        private final Writer out;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int pos;
+        private boolean eof;
+        /*
+         * Tags with the same start are buffered so that longer tags are opened first
+         */
+        private final List<T> pending = new ArrayList<>();
+        private int pendingStart = -1;
+        /*
+         * The stack of open tags
+         */
+        private final List<T> open = new ArrayList<>();
+        private boolean finished;
+
+        private Session(Reader content, Writer out) {
+            this.content = content;
+            this.out = out;
+        }
+
+        /**
+         * Adds a tag
+         * @param tag the tag. MUST NOT start before the previously added tag
+         * @throws IOException on any error while reading or writing
+         * @throws IllegalArgumentException if the tag starts before the
+         * previous tag or has an invalid span
+         */
+        public void add(T tag) throws IOException {
+            if(finished){
+                throw new IllegalStateException("This session is already finished!");
+            }
+            int s = start.applyAsInt(tag);
+            int e = end.applyAsInt(tag);
+            if(s < 0 || e < s){
+                throw new IllegalArgumentException("Invalid span [" + s + ".." + e + "] of tag " + tag + "!");
+            }
+            if(s < pendingStart){
+                throw new IllegalArgumentException("Tags MUST BE sorted by start offset (tag " + tag
+                        + " starts before offset " + pendingStart + ")!");
+            }
+            if(s != pendingStart){
+                flushPending();
+                pendingStart = s;
+            }
+            pending.add(tag);
+        }
+
+        /**
+         * Writes the remaining content and closes all open annotations. Does
+         * not close the {@link Writer}.
+         * @throws IOException on any error while reading or writing
+         */
+        public void finish() throws IOException {
+            if(!finished){
+                finished = true;
+                flushPending();
+                moveTo(Integer.MAX_VALUE);
+                for(int i = open.size() - 1; i >= 0; i--){ //tags ending after the content
+                    template.close(out, open.get(i));
+                }
+                open.clear();
+                out.flush();
+            }
+        }
+
+        private void flushPending() throws IOException {
+            if(pending.isEmpty()){
+                return;
+            }
+            pending.sort(longestFirst); //stable: same spans keep their order
+            moveTo(pendingStart);
+            for(T tag : pending){
+                template.open(out, tag);
+                open.add(tag);
+            }
+            pending.clear();
+        }
+
+        /**
+         * Writes the content up to the parsed offset and closes all
+         * annotations ending before or at this offset.
+         */
+        private void moveTo(int target) throws IOException {
+            while(!open.isEmpty()){
+                int nextClose = Integer.MAX_VALUE;
+                for(T tag : open){
+                    nextClose = Math.min(nextClose, end.applyAsInt(tag));
+                }
+                if(nextClose > target){
+                    break;
+                }
+                copy(nextClose);
+                closeEndingAt(nextClose);
+            }
+            copy(target);
+        }
+
+        /**
+         * Closes all open tags ending at or before the parsed offset. Tags
+         * opened after such a tag but ending later are closed and re-opened
+         * to keep the output well-formed.
+         */
+        private void closeEndingAt(int offset) throws IOException {
+            int lowest = 0;
+            while(end.applyAsInt(open.get(lowest)) > offset){
+                lowest++;
+            }
+            for(int i = open.size() - 1; i >= lowest; i--){
+                template.close(out, open.get(i));
+            }
+            int retained = lowest;
+            for(int i = lowest; i < open.size(); i++){
+                T tag = open.get(i);
+                if(end.applyAsInt(tag) > offset){
+                    template.open(out, tag);
+                    open.set(retained++, tag);
+                }
+            }
+            open.subList(retained, open.size()).clear();
+        }
+
+        /**
+         * Copies the content up to the parsed offset (or the end of the content)
+         */
+        private void copy(int target) throws IOException {
+            while(pos < target && !eof){
+                int n = content.read(buffer, 0, Math.min(buffer.length, target - pos));
+                if(n < 0){
+                    eof = true;
+                } else {
+                    out.write(buffer, 0, n);
+                    pos += n;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * An immutable, in-memory dictionary of the names of documents as used by
+ * the {@link LocalTagger}.
+ * <p>
+ * Names are split into tokens (runs of letters and digits, lower cased) and
+ * the token sequences are stored in a trie encoded in primitive
+ * <code>int</code> arrays. Every node of the trie holds the ordinals of the
+ * documents with a name ending at this node.
+ * <p>
+ * NOTE: This tokenization only approximates the analysis of the tagger field
+ * configured in the Solr schema. A {@link LocalTagger} returns the same tags
+ * as the SolrTextTagger only if the field uses a comparable analyzer (e.g. a
+ * <code>StandardTokenizer</code> with a <code>LowerCaseFilter</code>) without
+ * stemming, synonyms or stop words.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class TagDictionary {
+
+    private static final int EXPORT_ROWS = 1000;
+    private static final String VERSION_FIELD = "_version_";
+
+    private final String version;
+    private final String docIdField;
+    private final Map<String, Integer> tokens;
+    /*
+     * The edges of node n are edgeTokens/edgeTargets[edgeOffsets[n]..edgeOffsets[n+1]-1]
+     * sorted by token. The root is node 0
+     */
+    private final int[] edgeOffsets;
+    private final int[] edgeTokens;
+    private final int[] edgeTargets;
+    /*
+     * The documents of node n are nodeDocs[docOffsets[n]..docOffsets[n+1]-1]
+     */
+    private final int[] docOffsets;
+    private final int[] nodeDocs;
+    private final Object[] ids;
+    private final SolrDocument[] docs;
+
+    private TagDictionary(String version, String docIdField, Map<String, Integer> tokens,
+            List<Map<Integer, Integer>> children, List<List<Integer>> nodeDocList,
+            List<SolrDocument> docList) {
+        this.version = version;
+        this.docIdField = docIdField;
+        this.tokens = tokens;
+        int numNodes = children.size();
+        edgeOffsets = new int[numNodes + 1];
+        docOffsets = new int[numNodes + 1];
+        for(int n = 0; n < numNodes; n++){
+            edgeOffsets[n + 1] = edgeOffsets[n] + children.get(n).size();
+            docOffsets[n + 1] = docOffsets[n] + nodeDocList.get(n).size();
+        }
+        edgeTokens = new int[edgeOffsets[numNodes]];
+        edgeTargets = new int[edgeOffsets[numNodes]];
+        nodeDocs = new int[docOffsets[numNodes]];
+        for(int n = 0; n < numNodes; n++){
+            int[] keys = new int[children.get(n).size()];
+            int i = 0;
+            for(Integer key : children.get(n).keySet()){
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            for(i = 0; i < keys.length; i++){
+                edgeTokens[edgeOffsets[n] + i] = keys[i];
+                edgeTargets[edgeOffsets[n] + i] = children.get(n).get(keys[i]);
+            }
+            i = docOffsets[n];
+            for(Integer ord : nodeDocList.get(n)){
+                nodeDocs[i++] = ord;
+            }
+        }
+        docs = docList.toArray(new SolrDocument[docList.size()]);
+        ids = new Object[docs.length];
+        for(int ord = 0; ord < docs.length; ord++){
+            ids[ord] = docs[ord].getFieldValue(docIdField);
+        }
+    }
+
+    /**
+     * Builds a dictionary for the parsed documents (e.g. exported once from
+     * the tagger collection)
+     * @param docs the documents. Documents without an id or with an id
+     * already present are ignored
+     * @param nameField the (stored) field with the names of the documents
+     * @param docIdField the field with the id of the documents
+     * @param version the version of the dictionary or <code>null</code> if unknown
+     * @return the dictionary
+     */
+    public static TagDictionary build(Iterable<SolrDocument> docs, String nameField, String docIdField,
+            String version) {
+        if(docs == null){
+            throw new IllegalArgumentException("The parsed documents MUST NOT be NULL!");
+        }
+        if(nameField == null || docIdField == null){
+            throw new IllegalArgumentException("The parsed name and document id fields MUST NOT be NULL!");
+        }
+        Map<String, Integer> tokens = new HashMap<>();
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<List<Integer>> nodeDocs = new ArrayList<>();
+        children.add(new HashMap<>()); //the root
+        nodeDocs.add(Collections.emptyList());
+        Map<Object, SolrDocument> uniqueDocs = new LinkedHashMap<>();
+        List<String> nameTokens = new ArrayList<>();
+        for(SolrDocument doc : docs){
+            Object id = doc.getFieldValue(docIdField);
+            if(id == null || uniqueDocs.putIfAbsent(id, doc) != null){
+                continue;
+            }
+            int ord = uniqueDocs.size() - 1;
+            Collection<Object> names = doc.getFieldValues(nameField);
+            if(names == null){
+                continue;
+            }
+            for(Object name : names){
+                nameTokens.clear();
+                tokenize(String.valueOf(name), (start, end) -> {}, nameTokens);
+                if(nameTokens.isEmpty()){
+                    continue;
+                }
+                int node = 0;
+                for(String token : nameTokens){
+                    Integer tokenId = tokens.computeIfAbsent(token, t -> tokens.size());
+                    Integer child = children.get(node).get(tokenId);
+                    if(child == null){
+                        child = children.size();
+                        children.get(node).put(tokenId, child);
+                        children.add(new HashMap<>(4));
+                        nodeDocs.add(Collections.emptyList());
+                    }
+                    node = child;
+                }
+                List<Integer> ords = nodeDocs.get(node);
+                if(ords.isEmpty()){
+                    ords = new ArrayList<>(1);
+                    nodeDocs.set(node, ords);
+                }
+                if(!ords.contains(ord)){
+                    ords.add(ord);
+                }
+            }
+        }
+        return new TagDictionary(version, docIdField, tokens, children, nodeDocs,
+                new ArrayList<>(uniqueDocs.values()));
+    }
+
+    /**
+     * Exports all documents of a collection by using a cursor and builds the
+     * dictionary
+     * @param client the client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @param params additional params of the export query (e.g. filter queries
+     * or <code>fl</code>) or <code>null</code> for none
+     * @param nameField the (stored) field with the names of the documents
+     * @param docIdField the field with the id (the uniqueKey) of the documents
+     * @return the dictionary
+     * @throws SolrServerException on any error while exporting
+     * @throws IOException on any error while exporting
+     */
+    public static TagDictionary export(SolrClient client, String collection, SolrParams params,
+            String nameField, String docIdField) throws SolrServerException, IOException {
+        String version = version(client, collection, params);
+        SolrQuery query = new SolrQuery("*:*");
+        if(params != null){
+            query.add(params);
+        }
+        query.setRows(EXPORT_ROWS);
+        query.setSort(docIdField, SolrQuery.ORDER.asc);
+        List<SolrDocument> docs = new ArrayList<>();
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        while(true){
+            query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse response = client.query(collection, query);
+            docs.addAll(response.getResults());
+            String next = response.getNextCursorMark();
+            if(next == null || next.equals(cursorMark)){
+                break;
+            }
+            cursorMark = next;
+        }
+        return build(docs, nameField, docIdField, version);
+    }
+
+    /**
+     * The current version of the documents of a collection. The version
+     * consists of the number of documents and the highest
+     * <code>_version_</code> and therefore changes with every update.
+     * @param client the client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @param params additional params (e.g. filter queries) or <code>null</code>
+     * @return the version
+     * @throws SolrServerException on any error while querying the version
+     * @throws IOException on any error while querying the version
+     */
+    public static String version(SolrClient client, String collection, SolrParams params)
+            throws SolrServerException, IOException {
+        SolrQuery query = new SolrQuery("*:*");
+        if(params != null){
+            query.add(params);
+        }
+        query.setFields(VERSION_FIELD);
+        query.setRows(1);
+        query.setSort(VERSION_FIELD, SolrQuery.ORDER.desc);
+        SolrDocumentList results = client.query(collection, query).getResults();
+        Object maxVersion = results.isEmpty() ? null : results.get(0).getFieldValue(VERSION_FIELD);
+        return results.getNumFound() + ":" + maxVersion;
+    }
+
+    /**
+     * The version of this dictionary
+     * @return the version or <code>null</code> if unknown
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * The number of documents
+     * @return the number of documents
+     */
+    public int size() {
+        return docs.length;
+    }
+
+    /**
+     * The number of nodes of the trie
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return edgeOffsets.length - 1;
+    }
+
+    /**
+     * Finds all (overlapping) names in the parsed content
+     * @param content the content
+     * @param consumer called with the start and end offset and the node of
+     * every name found. Names are found by increasing start offset
+     */
+    void find(CharSequence content, NameConsumer consumer) {
+        int[][] offsets = new int[][]{new int[64], new int[64]};
+        int[] size = new int[1];
+        List<String> contentTokens = new ArrayList<>();
+        tokenize(content, (start, end) -> {
+            if(size[0] == offsets[0].length){
+                offsets[0] = Arrays.copyOf(offsets[0], size[0] * 2);
+                offsets[1] = Arrays.copyOf(offsets[1], size[0] * 2);
+            }
+            offsets[0][size[0]] = start;
+            offsets[1][size[0]++] = end;
+        }, contentTokens);
+        int[] tokenIds = new int[size[0]];
+        for(int t = 0; t < tokenIds.length; t++){
+            Integer tokenId = tokens.get(contentTokens.get(t));
+            tokenIds[t] = tokenId == null ? -1 : tokenId;
+        }
+        for(int t = 0; t < tokenIds.length; t++){
+            int node = 0;
+            for(int u = t; u < tokenIds.length && tokenIds[u] >= 0; u++){
+                node = child(node, tokenIds[u]);
+                if(node < 0){
+                    break;
+                }
+                if(docOffsets[node] < docOffsets[node + 1]){
+                    consumer.accept(offsets[0][t], offsets[1][u], node);
+                }
+            }
+        }
+    }
+
+    /**
+     * The ids of the documents with a name ending at the parsed node
+     */
+    List<Object> getIds(int node) {
+        List<Object> nodeIds = new ArrayList<>(docOffsets[node + 1] - docOffsets[node]);
+        for(int i = docOffsets[node]; i < docOffsets[node + 1]; i++){
+            nodeIds.add(ids[nodeDocs[i]]);
+        }
+        return nodeIds;
+    }
+
+    /**
+     * Adds the documents with a name ending at the parsed node to the builder
+     */
+    void addDocuments(int node, TagResponseBuilder builder) {
+        for(int i = docOffsets[node]; i < docOffsets[node + 1]; i++){
+            builder.addDocument(docs[nodeDocs[i]]);
+        }
+    }
+
+    /**
+     * Calls the parsed consumer for every first token of a name
+     */
+    void forEachFirstToken(Consumer<String> consumer) {
+        for(Map.Entry<String, Integer> token : tokens.entrySet()){
+            if(child(0, token.getValue()) >= 0){
+                consumer.accept(token.getKey());
+            }
+        }
+    }
+
+    private int child(int node, int token) {
+        int idx = Arrays.binarySearch(edgeTokens, edgeOffsets[node], edgeOffsets[node + 1], token);
+        return idx < 0 ? -1 : edgeTargets[idx];
+    }
+
+    /**
+     * Splits the parsed text in runs of letters and digits and adds the
+     * lower cased tokens to the parsed list
+     */
+    private static void tokenize(CharSequence text, IntIntConsumer offsets, List<String> tokens) {
+        StringBuilder token = new StringBuilder();
+        int start = -1;
+        int i = 0;
+        while(i < text.length()){
+            int cp = Character.codePointAt(text, i);
+            if(Character.isLetterOrDigit(cp)){
+                if(start < 0){
+                    start = i;
+                    token.setLength(0);
+                }
+                token.appendCodePoint(Character.toLowerCase(cp));
+            } else if(start >= 0){
+                offsets.accept(start, i);
+                tokens.add(token.toString());
+                start = -1;
+            }
+            i += Character.charCount(cp);
+        }
+        if(start >= 0){
+            offsets.accept(start, i);
+            tokens.add(token.toString());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TagDictionary [version=" + version + ", docs=" + docs.length + ", tokens=" + tokens.size()
+                + ", nodes=" + getNodeCount() + "]";
+    }
+
+    /**
+     * Consumer for names found in a content
+     */
+    interface NameConsumer {
+        void accept(int start, int end, int node);
+    }
+}
@@ -0,0 +1,139 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * A bounded, thread-safe LRU cache for {@link SolrDocument}s referenced by tags.
+ * <p>
+ * If a cache is set to a {@link TagRequest} the tagger is only asked for the
+ * ids of tagged documents. Documents are taken from this cache and only
+ * missing documents are retrieved by a single real time get request.
+ * <p>
+ * A cache instance can be shared by multiple {@link TagRequest}s as long as
+ * those do request the same fields for documents from the same collection.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagDocumentCache cache = new TagDocumentCache(10000);
+ *  //for every request
+ *  TagRequest request = new TagRequest(params,
+ *      new StringStream(content, "text/plain"));
+ *  request.setDocumentCache(cache);
+ *  TagResponse response = request.process(client);
+ * </pre>
+ *
+ * @see TagRequest#setDocumentCache(TagDocumentCache)
+ */
+public class TagDocumentCache {
+
+    private final int maxSize;
+    private final Map<Object, SolrDocument> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache holding up to the parsed number of documents
+     * @param maxSize the maximum number of cached documents
+     */
+    public TagDocumentCache(int maxSize) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum size MUST BE > 0 (parsed: " + maxSize + ")");
+        }
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Object, SolrDocument>(16, 0.75f, true){
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, SolrDocument> eldest) {
+                if(size() > TagDocumentCache.this.maxSize){
+                    evictions.incrementAndGet();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * Getter for the cached document with the parsed id
+     * @param id the id
+     * @return the document or <code>null</code> if not cached
+     */
+    public SolrDocument get(Object id) {
+        SolrDocument doc;
+        synchronized (cache) {
+            doc = cache.get(id);
+        }
+        (doc == null ? misses : hits).incrementAndGet();
+        return doc;
+    }
+
+    /**
+     * Adds a document to the cache
+     * @param id the id of the document
+     * @param doc the document
+     */
+    public void put(Object id, SolrDocument doc) {
+        if(id == null || doc == null){
+            return;
+        }
+        synchronized (cache) {
+            cache.put(id, doc);
+        }
+    }
+
+    /**
+     * Removes all documents from the cache
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * The ratio of lookups that were served from the cache
+     * @return the hit rate in the range <code>[0..1]</code>
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0d : (double)h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TagDocumentCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
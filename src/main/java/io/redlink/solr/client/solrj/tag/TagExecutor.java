@@ -0,0 +1,318 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.ContentStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous execution of {@link TagRequest}s against a single {@link SolrClient}
+ * with a bounded number of in-flight requests.
+ * <p>
+ * The in-flight requests are bounded per {@link SolrClient}: all executors
+ * created for the same client share the limit of the first one (executors
+ * with a different {@link #getMaxInFlight() maximum} log a warning).
+ * Requests exceeding the maximum number of in-flight requests are queued. On
+ * a Java 21+ runtime requests can be executed on virtual threads. Otherwise
+ * a fixed pool with one platform thread per in-flight request is used.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  try (TagExecutor executor = new TagExecutor(client, 16)) {
+ *      List&lt;CompletableFuture&lt;TagResponse&gt;&gt; responses =
+ *          executor.tagAll(params, contentStreams);
+ *      for(CompletableFuture&lt;TagResponse&gt; response : responses){
+ *          response.join().getTags();
+ *      }
+ *  }
+ * </pre>
+ */
+public class TagExecutor implements Closeable {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    /*
+     * The in-flight requests of all executors by client
+     */
+    private static final Map<SolrClient, InFlightLimit> LIMITS = new WeakHashMap<>();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final SolrClient client;
+    private final InFlightLimit limit;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private String path;
+    private String docIdField = "id";
+
+    /**
+     * Creates an executor with {@link #DEFAULT_MAX_IN_FLIGHT} requests using
+     * platform threads
+     * @param client the client
+     */
+    public TagExecutor(SolrClient client) {
+        this(client, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates an executor using platform threads
+     * @param client the client
+     * @param maxInFlight the maximum number of concurrent requests
+     */
+    public TagExecutor(SolrClient client, int maxInFlight) {
+        this(client, maxInFlight, false);
+    }
+
+    /**
+     * Creates an executor
+     * @param client the client
+     * @param maxInFlight the maximum number of concurrent requests
+     * @param virtualThreads if requests should be executed on virtual threads.
+     * Ignored (with a warning) if the runtime does not support virtual threads.
+     * @see #isVirtualThreadSupported()
+     */
+    public TagExecutor(SolrClient client, int maxInFlight, boolean virtualThreads) {
+        this(client, maxInFlight, virtualThreads ? createVirtualThreadExecutor() : null, true);
+        if(virtualThreads && !isVirtualThreadSupported()){
+            log.warn("Virtual Threads are not supported by this Java runtime ({}). "
+                    + "Falling back to platform threads", System.getProperty("java.version"));
+        }
+    }
+
+    /**
+     * Creates an executor that uses the parsed {@link ExecutorService}. The
+     * parsed executor is not shut down by {@link #close()}.
+     * @param client the client
+     * @param maxInFlight the maximum number of concurrent requests
+     * @param executor the executor service
+     */
+    public TagExecutor(SolrClient client, int maxInFlight, ExecutorService executor) {
+        this(client, maxInFlight, checkExecutor(executor), false);
+    }
+
+    private static ExecutorService checkExecutor(ExecutorService executor) {
+        if(executor == null){
+            throw new IllegalArgumentException("The parsed ExecutorService MUST NOT be NULL!");
+        }
+        return executor;
+    }
+
+    private TagExecutor(SolrClient client, int maxInFlight, ExecutorService executor, boolean ownsExecutor) {
+        if(client == null){
+            throw new IllegalArgumentException("The parsed SolrClient MUST NOT be NULL!");
+        }
+        if(maxInFlight <= 0){
+            throw new IllegalArgumentException("The maximum number of in-flight requests MUST BE > 0 "
+                    + "(parsed: " + maxInFlight + ")");
+        }
+        this.client = client;
+        synchronized (LIMITS) {
+            this.limit = LIMITS.computeIfAbsent(client, c -> new InFlightLimit(maxInFlight));
+        }
+        if(limit.max != maxInFlight){
+            log.warn("Using the maximum of {} in-flight requests of an other TagExecutor for client {} "
+                    + "(parsed: {})", limit.max, client, maxInFlight);
+        }
+        this.executor = executor == null ? Executors.newFixedThreadPool(maxInFlight, new TagThreadFactory()) : executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * If the Java runtime supports virtual threads
+     * @return <code>true</code> if virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public SolrClient getClient() {
+        return client;
+    }
+
+    /**
+     * The maximum number of in-flight requests of all executors of the client
+     * @return the maximum number of in-flight requests
+     */
+    public int getMaxInFlight() {
+        return limit.max;
+    }
+
+    /**
+     * The number of requests currently executed by all executors of the client
+     * @return the number of in-flight requests
+     */
+    public int getInFlight() {
+        return limit.max - limit.permits.availablePermits();
+    }
+
+    /**
+     * The estimated number of requests of all executors of the client
+     * waiting for execution
+     * @return the number of queued requests
+     */
+    public int getQueued() {
+        return limit.permits.getQueueLength();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Setter for the path of the tag request handler used for requests
+     * created by this executor.
+     * @param path the path or <code>null</code> to use the default of the {@link TagRequest}
+     */
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getDocIdField() {
+        return docIdField;
+    }
+
+    /**
+     * @param docIdField the document id field used for requests created by
+     * this executor
+     * @see TagRequest#setDocIdField(String)
+     */
+    public void setDocIdField(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    /**
+     * Asynchronously tags the parsed content
+     * @param params the parameters
+     * @param content the content
+     * @return the future response
+     */
+    public CompletableFuture<TagResponse> tag(SolrParams params, ContentStream content) {
+        TagRequest request = new TagRequest(params, content);
+        if(path != null){
+            request.setPath(path);
+        }
+        request.setDocIdField(docIdField);
+        return tag(request);
+    }
+
+    /**
+     * Asynchronously tags all parsed contents with the same parameters
+     * @param params the parameters
+     * @param contents the contents
+     * @return the future responses in the iteration order of the parsed contents
+     */
+    public List<CompletableFuture<TagResponse>> tagAll(SolrParams params, Collection<? extends ContentStream> contents) {
+        List<CompletableFuture<TagResponse>> responses = new ArrayList<>(contents.size());
+        for(ContentStream content : contents){
+            responses.add(tag(params, content));
+        }
+        return responses;
+    }
+
+    /**
+     * Asynchronously executes all parsed requests
+     * @param requests the requests
+     * @return the future responses in the iteration order of the parsed requests
+     */
+    public List<CompletableFuture<TagResponse>> tagAll(Collection<? extends TagRequest> requests) {
+        List<CompletableFuture<TagResponse>> responses = new ArrayList<>(requests.size());
+        for(TagRequest request : requests){
+            responses.add(tag(request));
+        }
+        return responses;
+    }
+
+    /**
+     * Asynchronously executes the parsed request
+     * @param request the request
+     * @return the future response
+     */
+    public CompletableFuture<TagResponse> tag(TagRequest request) {
+        CompletableFuture<TagResponse> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            if(future.isDone()){ //canceled while queued
+                return;
+            }
+            try {
+                limit.permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                if(!future.isDone()){
+                    future.complete(request.process(client));
+                }
+            } catch (Exception | Error e) {
+                future.completeExceptionally(e);
+            } finally {
+                limit.permits.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Shuts down the executor service if it was created by this instance.
+     * Already submitted requests are still executed.
+     */
+    @Override
+    public void close() {
+        if(ownsExecutor){
+            executor.shutdown();
+        }
+    }
+
+    private static final class InFlightLimit {
+
+        private final int max;
+        private final Semaphore permits;
+
+        InFlightLimit(int max) {
+            this.max = max;
+            this.permits = new Semaphore(max, true);
+        }
+    }
+
+    private static final class TagThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+        private final int pool = POOL_COUNT.incrementAndGet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "tag-executor-" + pool + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Listener notified with the {@link TagRequestMetrics} of every successfully
+ * processed {@link TagRequest}.
+ * <p>
+ * <b>NOTE:</b> Failed requests are not reported. {@link
+ * org.apache.solr.client.solrj.SolrRequest#process(org.apache.solr.client.solrj.SolrClient)}
+ * can not be intercepted, so exceptions thrown by the client (e.g. network
+ * errors or error responses of Solr) need to be counted by the caller.
+ * <p>
+ * The listener is called by the thread processing the request after the
+ * response was parsed. Implementations need to be thread-safe if they are
+ * used for several requests and should return quickly.
+ *
+ * @see TagRequest#setMetricsListener(TagMetricsListener)
+ * @see TagMetricsRecorder
+ */
+@FunctionalInterface
+public interface TagMetricsListener {
+
+    /**
+     * Called after a request was successfully processed
+     * @param metrics the metrics of the request
+     */
+    void onRequest(TagRequestMetrics metrics);
+
+}
@@ -0,0 +1,173 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link TagMetricsListener} that aggregates {@link TagRequestMetrics}
+ * per path of the tag request handler. Phase timings are recorded in
+ * {@link LatencyHistogram}s, sizes and counts in counters.
+ * <p>
+ * Recording and polling is lock-free and does not allocate (except for the
+ * first request of a path).
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagMetricsRecorder recorder = new TagMetricsRecorder(); //shared
+ *  request.setMetricsListener(recorder);
+ *  //...
+ *  long p99 = recorder.getMetrics("/tag").getHistogram(Phase.TOTAL).getPercentile(99);
+ * </pre>
+ */
+public class TagMetricsRecorder implements TagMetricsListener {
+
+    /**
+     * The phases of a request with a histogram (all in nanoseconds)
+     */
+    public enum Phase {
+        /**
+         * The total time of the request
+         */
+        TOTAL,
+        /**
+         * The time on the server as reported by the QTime
+         */
+        SERVER,
+        /**
+         * The time spent for sending the request and receiving the response
+         * (including the time on the server)
+         */
+        NETWORK,
+        /**
+         * The time spent for decoding the response
+         */
+        DECODE,
+        /**
+         * The time spent for processing the decoded response
+         */
+        RESPONSE
+    }
+
+    private final ConcurrentMap<String, PathMetrics> paths = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRequest(TagRequestMetrics metrics) {
+        String path = metrics.getPath() == null ? "" : metrics.getPath();
+        PathMetrics pm = paths.get(path);
+        if(pm == null){
+            pm = paths.computeIfAbsent(path, PathMetrics::new);
+        }
+        pm.record(metrics);
+    }
+
+    /**
+     * The paths with recorded metrics
+     * @return the paths
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(paths.keySet());
+    }
+
+    /**
+     * The metrics of the parsed path
+     * @param path the path
+     * @return the metrics or <code>null</code> if no request was recorded
+     * for this path
+     */
+    public PathMetrics getMetrics(String path) {
+        return paths.get(path);
+    }
+
+    /**
+     * Removes all recorded metrics
+     */
+    public void reset() {
+        paths.clear();
+    }
+
+    /**
+     * Metrics of a single path
+     */
+    public static final class PathMetrics {
+
+        private static final long NANOS_PER_MILLI = 1000000L;
+
+        private final String path;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder tags = new LongAdder();
+        private final LongAdder docs = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder cacheMisses = new LongAdder();
+
+        private PathMetrics(String path) {
+            this.path = path;
+            for(int i = 0; i < histograms.length; i++){
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        private void record(TagRequestMetrics metrics) {
+            histograms[Phase.TOTAL.ordinal()].record(metrics.getTotalNanos());
+            if(metrics.getQTime() >= 0){
+                histograms[Phase.SERVER.ordinal()].record(metrics.getQTime() * NANOS_PER_MILLI);
+            }
+            histograms[Phase.NETWORK.ordinal()].record(metrics.getNetworkNanos());
+            histograms[Phase.DECODE.ordinal()].record(metrics.getDecodeNanos());
+            histograms[Phase.RESPONSE.ordinal()].record(metrics.getResponseNanos());
+            requests.increment();
+            requestBytes.add(metrics.getRequestBytes());
+            tags.add(metrics.getTagCount());
+            docs.add(metrics.getDocCount());
+            cacheHits.add(metrics.getCacheHits());
+            cacheMisses.add(metrics.getCacheMisses());
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * The histogram of the parsed phase
+         * @param phase the phase
+         * @return the histogram with values in nanoseconds
+         */
+        public LatencyHistogram getHistogram(Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        public long getRequestBytes() {
+            return requestBytes.sum();
+        }
+
+        public long getTagCount() {
+            return tags.sum();
+        }
+
+        public long getDocCount() {
+            return docs.sum();
+        }
+
+        public long getCacheHits() {
+            return cacheHits.sum();
+        }
+
+        public long getCacheMisses() {
+            return cacheMisses.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "PathMetrics [path=" + path + ", requests=" + getRequestCount() + ", total="
+                    + getHistogram(Phase.TOTAL) + "]";
+        }
+    }
+}
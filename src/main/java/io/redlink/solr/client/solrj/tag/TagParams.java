@@ -1,6 +1,8 @@
 package io.redlink.solr.client.solrj.tag;
 
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
@@ -8,21 +10,25 @@ import org.apache.solr.common.params.SolrParams;
 /**
  * {@link SolrParams} as supported by the <a href="https://github.com/OpenSextant/SolrTextTagger">SolrTextTagger</a> 
  * request handler
+ * <p>
+ * Instances are NOT thread-safe. Use {@link #compile()} to create an immutable
+ * snapshot that can be shared by concurrent requests.
  * 
  * @author Rupert Westenthaler
  *
  */
 public class TagParams extends ModifiableSolrParams {
 
-    private static final String STT_OVERLAPPS = "overlaps";
-    private static final String STT_MATCH_TEXT = "matchText";
-    private static final String STT_TAGS_LIMIT = "tagsLimit";
-    private static final String STT_ROWS = "rows";
+    static final String STT_OVERLAPPS = "overlaps";
+    static final String STT_MATCH_TEXT = "matchText";
+    static final String STT_TAGS_LIMIT = "tagsLimit";
+    static final String STT_ROWS = "rows";
     private static final String STT_SKIP_ALT_TOKENS = "skipAltTokens";
     private static final String STT_IGNORE_STOPWORDS = "ignoreStopwords";
-    private static final String STT_XML_OFFSET_ADJUST = "xmlOffsetAdjust";
-    private static final String STT_HTML_OFFSET_ADJUST = "htmlOffsetAdjust";
-    private static final String STT_NON_TAGGABLETAGS = "nonTaggableTags";
+    static final String STT_XML_OFFSET_ADJUST = "xmlOffsetAdjust";
+    static final String STT_HTML_OFFSET_ADJUST = "htmlOffsetAdjust";
+    static final String STT_NON_TAGGABLETAGS = "nonTaggableTags";
+    static final int DEFAULT_TAGS_LIMIT = 1000;
 
     private static final long serialVersionUID = -1796995231499462496L;
 
@@ -74,6 +80,11 @@ public class TagParams extends ModifiableSolrParams {
      * Setter for state whether to return the matched text 
      * in the tag response. This will trigger the tagger 
      * to fully buffer the input before tagging.
+     * <p>
+     * NOTE: If the {@link TagRequest} retains the content (e.g. if created
+     * for a {@link CharSequence}) the matched text is sliced from the content
+     * by {@link TagResponse.Tag#getMatchText()} and this parameter is not sent
+     * to the server (unless offsets are adjusted by the server).
      * @param state the state
      * @return this
      */
@@ -109,7 +120,7 @@ public class TagParams extends ModifiableSolrParams {
      * @return the limit
      */
     public int getTagsLimit() {
-        return this.getInt(STT_TAGS_LIMIT, 1000);
+        return this.getInt(STT_TAGS_LIMIT, DEFAULT_TAGS_LIMIT);
     }
 
     /**
@@ -342,4 +353,58 @@ public class TagParams extends ModifiableSolrParams {
           }
           return sb.toString().trim();
         }
-}
\ No newline at end of file
+
+      /**
+       * Creates an immutable and thread-safe snapshot of the current state of
+       * this params. The parameters are validated once and the URL encoded
+       * query string is cached. Later changes to this params do not affect
+       * the snapshot.
+       * @return the compiled params
+       * @throws SolrException with {@link ErrorCode#BAD_REQUEST} if the
+       * params are not consistent (e.g. <code>nonTaggableTags</code> without
+       * <code>htmlOffsetAdjust</code>) or contain illegal values
+       */
+      public CompiledTagParams compile() {
+          return new CompiledTagParams(this);
+      }
+
+      /**
+       * If the server adjusts the offsets of tags to the markup of the
+       * content (<code>xmlOffsetAdjust</code> or <code>htmlOffsetAdjust</code>)
+       * @param params the params
+       * @return <code>true</code> if offsets are adjusted
+       */
+      static boolean isOffsetAdjust(SolrParams params) {
+          if(params instanceof CompiledTagParams){
+              return ((CompiledTagParams)params).isOffsetAdjust();
+          }
+          return params != null && (params.getBool(STT_XML_OFFSET_ADJUST, false)
+                  || params.getBool(STT_HTML_OFFSET_ADJUST, false));
+      }
+
+      /**
+       * The overlaps requested by the parsed params
+       * @param params the params
+       * @return the overlaps or <code>null</code> if not present (the default
+       * of the server)
+       */
+      static Overlaps getOverlaps(SolrParams params) {
+          if(params instanceof CompiledTagParams){
+              return ((CompiledTagParams)params).getOverlaps();
+          }
+          String overlaps = params == null ? null : params.get(STT_OVERLAPPS);
+          return overlaps == null ? null : Overlaps.valueOf(overlaps);
+      }
+
+      /**
+       * The tags limit requested by the parsed params
+       * @param params the params
+       * @return the tags limit or {@link #DEFAULT_TAGS_LIMIT} if not present
+       */
+      static int getTagsLimit(SolrParams params) {
+          if(params instanceof CompiledTagParams){
+              return ((CompiledTagParams)params).getTagsLimit();
+          }
+          return params == null ? DEFAULT_TAGS_LIMIT : params.getInt(STT_TAGS_LIMIT, DEFAULT_TAGS_LIMIT);
+      }
+}
@@ -0,0 +1,784 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.solr.common.SolrDocument;
+
+import io.redlink.solr.client.solrj.tag.TagResponse.Tag;
+
+/**
+ * Post-processing of the tags of a {@link TagResponse} in a single pass.
+ * <p>
+ * Stages are applied to every tag in the order they are added: offset
+ * {@link #filter(IntIntPredicate) filters}, document
+ * {@link #filterDocs(Predicate) filters} and per tag document
+ * {@link #limitDocs(int, ToDoubleFunction) limits}. Tags without any remaining
+ * document after a document filter are dropped. The {@link #limit(int) limit}
+ * is applied to the emitted tags. Emitted tags are either collected in a
+ * {@link Result} or passed to a {@link TagAggregator}.
+ * <p>
+ * All stages work on the columnar representation of the {@link TagResponse}:
+ * no {@link Tag} or document list is created per tag. Document predicates,
+ * scores and {@link #mapDocs(Function) mapped values} are evaluated once per
+ * document (and not once per tag referencing it).
+ * <p>
+ * With a {@link #setParallelism(int) parallelism} &gt; 1 large tag lists are
+ * split in segments processed in parallel. Results are the same as for the
+ * sequential processing.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagPipeline pipeline = new TagPipeline()
+ *      .filter((start, end) -&gt; end - start &gt;= 3)
+ *      .filterDocs("type", type -&gt; "place".equals(type))
+ *      .limitDocs(3, "popularity")
+ *      .limit(100);
+ *  Map&lt;Object,Integer&gt; counts = pipeline.aggregate(response, TagAggregator.mentionCounts());
+ * </pre>
+ * Instances can be shared by threads as long as they are not modified.
+ */
+public class TagPipeline {
+
+    public static final int DEFAULT_MIN_SEGMENT_SIZE = 4096;
+
+    private static final int OFFSETS = 0;
+    private static final int DOC_FILTER = 1;
+    private static final int DOC_LIMIT = 2;
+
+    private final List<Stage> stages = new ArrayList<>();
+    private int limit = Integer.MAX_VALUE;
+    private Function<SolrDocument, ?> mapper;
+    private int parallelism = 1;
+    private int minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+    private Executor executor;
+
+    /**
+     * Drops tags with offsets not matching the parsed predicate
+     * @param predicate the predicate called with the start and end offset
+     * @return this
+     */
+    public TagPipeline filter(IntIntPredicate predicate) {
+        if(predicate == null){
+            throw new IllegalArgumentException("The parsed predicate MUST NOT be NULL!");
+        }
+        stages.add(new Stage(OFFSETS, predicate, null, null, 0));
+        return this;
+    }
+
+    /**
+     * Drops tags shorter than the parsed number of chars
+     * @param minLength the minimum length
+     * @return this
+     */
+    public TagPipeline filterLength(int minLength) {
+        return filter((start, end) -> end - start >= minLength);
+    }
+
+    /**
+     * Removes documents not matching the parsed predicate from tags. Tags
+     * without documents are dropped.
+     * @param predicate the predicate (evaluated once per document)
+     * @return this
+     */
+    public TagPipeline filterDocs(Predicate<SolrDocument> predicate) {
+        if(predicate == null){
+            throw new IllegalArgumentException("The parsed predicate MUST NOT be NULL!");
+        }
+        stages.add(new Stage(DOC_FILTER, null, predicate, null, 0));
+        return this;
+    }
+
+    /**
+     * Removes documents where the first value of the parsed field does not
+     * match the parsed predicate. Tags without documents are dropped.
+     * @param field the field
+     * @param predicate the predicate called with the first value of the field
+     * (<code>null</code> if not present)
+     * @return this
+     */
+    public TagPipeline filterDocs(String field, Predicate<Object> predicate) {
+        if(field == null || predicate == null){
+            throw new IllegalArgumentException("The parsed field and predicate MUST NOT be NULL!");
+        }
+        return filterDocs(doc -> predicate.test(doc.getFirstValue(field)));
+    }
+
+    /**
+     * Retains the documents with the highest scores per tag. Documents with
+     * the same score keep their order.
+     * @param limit the maximum number of documents per tag
+     * @param score the score of a document (evaluated once per document)
+     * @return this
+     */
+    public TagPipeline limitDocs(int limit, ToDoubleFunction<SolrDocument> score) {
+        if(limit < 0){
+            throw new IllegalArgumentException("The limit MUST NOT be negative (parsed: " + limit + ")");
+        }
+        if(score == null){
+            throw new IllegalArgumentException("The parsed score function MUST NOT be NULL!");
+        }
+        stages.add(new Stage(DOC_LIMIT, null, null, score, limit));
+        return this;
+    }
+
+    /**
+     * Retains the documents with the highest value of the parsed numeric
+     * field per tag. Documents without a numeric value have the lowest rank.
+     * @param limit the maximum number of documents per tag
+     * @param field the numeric field (e.g. a popularity)
+     * @return this
+     */
+    public TagPipeline limitDocs(int limit, String field) {
+        if(field == null){
+            throw new IllegalArgumentException("The parsed field MUST NOT be NULL!");
+        }
+        return limitDocs(limit, doc -> {
+            Object value = doc.getFirstValue(field);
+            return value instanceof Number ? ((Number)value).doubleValue() : Double.NEGATIVE_INFINITY;
+        });
+    }
+
+    /**
+     * Maps the documents to values available by {@link Match#getValue(int)}
+     * and {@link Result#getValues(int)}
+     * @param mapper the mapper (called once per document) or <code>null</code>
+     * to remove the mapping
+     * @return this
+     */
+    public TagPipeline mapDocs(Function<SolrDocument, ?> mapper) {
+        this.mapper = mapper;
+        return this;
+    }
+
+    /**
+     * Maps the documents to the value(s) of the parsed field
+     * @param field the field
+     * @return this
+     * @see #mapDocs(Function)
+     */
+    public TagPipeline mapDocs(String field) {
+        if(field == null){
+            throw new IllegalArgumentException("The parsed field MUST NOT be NULL!");
+        }
+        return mapDocs(doc -> doc.getFieldValue(field));
+    }
+
+    /**
+     * The maximum number of emitted tags. Applies to the tags passing all
+     * stages regardless of the order this is called.
+     * @param limit the limit
+     * @return this
+     */
+    public TagPipeline limit(int limit) {
+        if(limit < 0){
+            throw new IllegalArgumentException("The limit MUST NOT be negative (parsed: " + limit + ")");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * The maximum number of segments processed in parallel. As segments
+     * can not stop at the tags emitted by preceding segments parallel
+     * processing pays off for pipelines without a (low) {@link #limit(int)}.
+     * @param parallelism the number of segments (<code>1</code> for sequential
+     * processing)
+     * @return this
+     */
+    public TagPipeline setParallelism(int parallelism) {
+        if(parallelism < 1){
+            throw new IllegalArgumentException("The parallelism MUST BE >= 1 (parsed: " + parallelism + ")");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * The minimum number of tags of a segment. Smaller tag lists are processed
+     * sequentially.
+     * @param minSegmentSize the minimum number of tags per segment
+     * @return this
+     */
+    public TagPipeline setMinSegmentSize(int minSegmentSize) {
+        if(minSegmentSize < 1){
+            throw new IllegalArgumentException("The minimum segment size MUST BE >= 1 (parsed: "
+                    + minSegmentSize + ")");
+        }
+        this.minSegmentSize = minSegmentSize;
+        return this;
+    }
+
+    public int getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    /**
+     * The executor used for parallel segments
+     * @param executor the executor or <code>null</code> to use the common
+     * {@link ForkJoinPool}
+     * @return this
+     */
+    public TagPipeline setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Applies the pipeline to the parsed response
+     * @param response the response
+     * @return the emitted tags
+     */
+    public Result apply(TagResponse response) {
+        Context ctx = context(response);
+        int segments = segments(ctx);
+        if(segments <= 1){
+            return new Result(ctx, new Worker(ctx).select(0, ctx.starts.length, ctx.limit), ctx.limit);
+        }
+        Selection[] selections = select(ctx, segments);
+        Selection merged = new Selection();
+        int remaining = ctx.limit;
+        for(Selection selection : selections){
+            remaining -= merged.append(selection, remaining);
+        }
+        return new Result(ctx, merged, merged.size);
+    }
+
+    /**
+     * Applies the pipeline to the parsed response and aggregates the emitted
+     * tags. In sequential mode tags are passed to the aggregator while they
+     * are processed.
+     * @param response the response
+     * @param aggregator the aggregator
+     * @return the result of the aggregator
+     */
+    public <A, R> R aggregate(TagResponse response, TagAggregator<A, R> aggregator) {
+        if(aggregator == null){
+            throw new IllegalArgumentException("The parsed aggregator MUST NOT be NULL!");
+        }
+        Context ctx = context(response);
+        int segments = segments(ctx);
+        if(segments <= 1){
+            A container = aggregator.create();
+            new Worker(ctx).aggregate(0, ctx.starts.length, ctx.limit, aggregator, container);
+            return aggregator.finish(container);
+        }
+        Selection[] selections = select(ctx, segments);
+        List<CompletableFuture<A>> futures = new ArrayList<>(selections.length);
+        int remaining = ctx.limit;
+        for(Selection selection : selections){
+            int quota = Math.min(remaining, selection.size);
+            remaining -= quota;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                A container = aggregator.create();
+                Match match = new Match(ctx);
+                for(int i = 0; i < quota; i++){
+                    match.set(selection.tags[i], selection.docOrds, selection.docOffsets[i],
+                            selection.docOffsets[i + 1] - selection.docOffsets[i]);
+                    aggregator.accept(container, match);
+                }
+                return container;
+            }, executor(ctx)));
+        }
+        A container = join(futures.get(0));
+        for(int i = 1; i < futures.size(); i++){
+            container = aggregator.merge(container, join(futures.get(i)));
+        }
+        return aggregator.finish(container);
+    }
+
+    private Context context(TagResponse response) {
+        if(response == null){
+            throw new IllegalArgumentException("The parsed TagResponse MUST NOT be NULL!");
+        }
+        return new Context(response, stages.toArray(new Stage[stages.size()]), mapper, limit, executor);
+    }
+
+    private int segments(Context ctx) {
+        return (int)Math.min(parallelism, (long)ctx.starts.length / minSegmentSize);
+    }
+
+    private static Selection[] select(Context ctx, int segments) {
+        int numTags = ctx.starts.length;
+        int size = (numTags + segments - 1) / segments;
+        List<CompletableFuture<Selection>> futures = new ArrayList<>(segments);
+        for(int from = 0; from < numTags; from += size){
+            int start = from;
+            int end = Math.min(numTags, from + size);
+            //every segment can stop at the limit as preceding segments only reduce the quota
+            futures.add(CompletableFuture.supplyAsync(() -> new Worker(ctx).select(start, end, ctx.limit),
+                    executor(ctx)));
+        }
+        Selection[] selections = new Selection[futures.size()];
+        for(int i = 0; i < selections.length; i++){
+            selections[i] = join(futures.get(i));
+        }
+        return selections;
+    }
+
+    private static Executor executor(Context ctx) {
+        return ctx.executor == null ? ForkJoinPool.commonPool() : ctx.executor;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException)cause;
+            } else if(cause instanceof Error){
+                throw (Error)cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Stage {
+
+        private final int type;
+        private final IntIntPredicate offsets;
+        private final Predicate<SolrDocument> docs;
+        private final ToDoubleFunction<SolrDocument> score;
+        private final int limit;
+
+        Stage(int type, IntIntPredicate offsets, Predicate<SolrDocument> docs,
+                ToDoubleFunction<SolrDocument> score, int limit) {
+            this.type = type;
+            this.offsets = offsets;
+            this.docs = docs;
+            this.score = score;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * The state of a single application of the pipeline: the columns of the
+     * response and the per document values of the stages (by ordinal)
+     */
+    private static final class Context {
+
+        private final TagResponse response;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] idOffsets;
+        private final int[] idOrdinals;
+        private final Object[] ids;
+        private final SolrDocument[] docs;
+        private final Stage[] stages;
+        private final boolean[][] keep;
+        private final double[][] scores;
+        private final Object[] values;
+        private final int limit;
+        private final Executor executor;
+
+        Context(TagResponse response, Stage[] stages, Function<SolrDocument, ?> mapper, int limit,
+                Executor executor) {
+            this.response = response;
+            this.starts = response.getStartOffsets();
+            this.ends = response.getEndOffsets();
+            this.idOffsets = response.getIdOffsets();
+            this.idOrdinals = response.getIdOrdinals();
+            this.ids = response.getIdTable();
+            this.docs = response.getDocumentTable();
+            this.stages = stages;
+            this.limit = limit;
+            this.executor = executor;
+            keep = new boolean[stages.length][];
+            scores = new double[stages.length][];
+            for(int s = 0; s < stages.length; s++){
+                if(stages[s].type == DOC_FILTER){
+                    boolean[] column = new boolean[docs.length];
+                    for(int ord = 0; ord < docs.length; ord++){
+                        column[ord] = docs[ord] != null && stages[s].docs.test(docs[ord]);
+                    }
+                    keep[s] = column;
+                } else if(stages[s].type == DOC_LIMIT){
+                    double[] column = new double[docs.length];
+                    for(int ord = 0; ord < docs.length; ord++){
+                        column[ord] = docs[ord] == null ? Double.NEGATIVE_INFINITY
+                                : stages[s].score.applyAsDouble(docs[ord]);
+                    }
+                    scores[s] = column;
+                }
+            }
+            if(mapper != null){
+                values = new Object[docs.length];
+                for(int ord = 0; ord < docs.length; ord++){
+                    values[ord] = docs[ord] == null ? null : mapper.apply(docs[ord]);
+                }
+            } else {
+                values = null;
+            }
+        }
+    }
+
+    /**
+     * Applies the stages to tags. The document ordinals of the current tag
+     * are kept in a reused buffer.
+     */
+    private static final class Worker {
+
+        private final Context ctx;
+        private final Match match;
+        private int[] buffer = new int[8];
+        private int count;
+
+        Worker(Context ctx) {
+            this.ctx = ctx;
+            this.match = new Match(ctx);
+        }
+
+        /**
+         * Applies the stages to a tag
+         * @return <code>true</code> if the tag is retained. In this case the
+         * retained ordinals are in <code>buffer[0..count)</code>
+         */
+        private boolean process(int tag) {
+            count = -1;
+            Stage[] stages = ctx.stages;
+            for(int s = 0; s < stages.length; s++){
+                switch (stages[s].type) {
+                    case OFFSETS:
+                        if(!stages[s].offsets.test(ctx.starts[tag], ctx.ends[tag])){
+                            return false;
+                        }
+                        break;
+                    case DOC_FILTER:
+                        gather(tag);
+                        boolean[] keep = ctx.keep[s];
+                        int retained = 0;
+                        for(int i = 0; i < count; i++){
+                            if(keep[buffer[i]]){
+                                buffer[retained++] = buffer[i];
+                            }
+                        }
+                        count = retained;
+                        if(count == 0){
+                            return false;
+                        }
+                        break;
+                    case DOC_LIMIT:
+                        gather(tag);
+                        top(ctx.scores[s], stages[s].limit);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown stage type " + stages[s].type);
+                }
+            }
+            gather(tag);
+            return true;
+        }
+
+        private void gather(int tag) {
+            if(count < 0){
+                int from = ctx.idOffsets[tag];
+                count = ctx.idOffsets[tag + 1] - from;
+                if(buffer.length < count){
+                    buffer = new int[Math.max(count, buffer.length * 2)];
+                }
+                System.arraycopy(ctx.idOrdinals, from, buffer, 0, count);
+            }
+        }
+
+        /**
+         * Moves the ordinals with the highest scores to the front (stable)
+         */
+        private void top(double[] scores, int limit) {
+            int n = Math.min(limit, count);
+            for(int i = 0; i < n; i++){
+                int best = i;
+                for(int j = i + 1; j < count; j++){
+                    if(scores[buffer[j]] > scores[buffer[best]]){
+                        best = j;
+                    }
+                }
+                if(best != i){
+                    int ord = buffer[best];
+                    System.arraycopy(buffer, i, buffer, i + 1, best - i);
+                    buffer[i] = ord;
+                }
+            }
+            count = n;
+        }
+
+        <A> void aggregate(int from, int to, int limit, TagAggregator<A, ?> aggregator, A container) {
+            int emitted = 0;
+            for(int tag = from; tag < to && emitted < limit; tag++){
+                if(process(tag)){
+                    match.set(tag, buffer, 0, count);
+                    aggregator.accept(container, match);
+                    emitted++;
+                }
+            }
+        }
+
+        Selection select(int from, int to, int limit) {
+            Selection selection = new Selection();
+            for(int tag = from; tag < to && selection.size < limit; tag++){
+                if(process(tag)){
+                    selection.add(tag, buffer, 0, count);
+                }
+            }
+            return selection;
+        }
+    }
+
+    /**
+     * Growable columnar list of emitted tags: the documents of the tag at
+     * index i are docOrds[docOffsets[i]] to docOrds[docOffsets[i+1]-1]
+     */
+    private static final class Selection {
+
+        private int size;
+        private int[] tags = new int[16];
+        private int[] docOffsets = new int[17];
+        private int[] docOrds = new int[16];
+
+        void add(int tag, int[] ords, int from, int count) {
+            if(size == tags.length){
+                tags = Arrays.copyOf(tags, size * 2);
+                docOffsets = Arrays.copyOf(docOffsets, size * 2 + 1);
+            }
+            int offset = docOffsets[size];
+            if(offset + count > docOrds.length){
+                docOrds = Arrays.copyOf(docOrds, Math.max(offset + count, docOrds.length * 2));
+            }
+            System.arraycopy(ords, from, docOrds, offset, count);
+            tags[size] = tag;
+            docOffsets[++size] = offset + count;
+        }
+
+        /**
+         * Appends up to <code>max</code> tags of the parsed selection
+         * @return the number of appended tags
+         */
+        int append(Selection other, int max) {
+            int n = Math.min(max, other.size);
+            for(int i = 0; i < n; i++){
+                add(other.tags[i], other.docOrds, other.docOffsets[i], other.docOffsets[i + 1] - other.docOffsets[i]);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * A tag emitted by the pipeline with its retained documents. Instances
+     * are reused for the following tags and MUST NOT be retained.
+     */
+    public static final class Match {
+
+        private final Context ctx;
+        private int tag;
+        private int[] ords;
+        private int from;
+        private int count;
+
+        Match(Context ctx) {
+            this.ctx = ctx;
+        }
+
+        void set(int tag, int[] ords, int from, int count) {
+            this.tag = tag;
+            this.ords = ords;
+            this.from = from;
+            this.count = count;
+        }
+
+        /**
+         * The index of the tag in {@link TagResponse#getTags()}
+         * @return the index
+         */
+        public int getTagIndex() {
+            return tag;
+        }
+
+        public int getStart() {
+            return ctx.starts[tag];
+        }
+
+        public int getEnd() {
+            return ctx.ends[tag];
+        }
+
+        /**
+         * The tag of the {@link TagResponse}
+         * @return the tag (with all documents)
+         */
+        public Tag getTag() {
+            return ctx.response.getTag(tag);
+        }
+
+        /**
+         * The number of retained documents
+         * @return the number of documents
+         */
+        public int getDocCount() {
+            return count;
+        }
+
+        /**
+         * The retained document at the parsed index
+         * @param i the index
+         * @return the document or <code>null</code> if the tagger did not
+         * return the document
+         */
+        public SolrDocument getDoc(int i) {
+            return ctx.docs[ords[checkIndex(i)]];
+        }
+
+        public Object getId(int i) {
+            return ctx.ids[ords[checkIndex(i)]];
+        }
+
+        /**
+         * The {@link TagPipeline#mapDocs(Function) mapped} value of the
+         * retained document at the parsed index
+         * @param i the index
+         * @return the value or <code>null</code> if no mapping is configured
+         */
+        public Object getValue(int i) {
+            int ord = ords[checkIndex(i)];
+            return ctx.values == null ? null : ctx.values[ord];
+        }
+
+        private int checkIndex(int i) {
+            if(i < 0 || i >= count){
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+            }
+            return from + i;
+        }
+
+        @Override
+        public String toString() {
+            return "Match [tag: " + tag + ", span:" + getStart() + ".." + getEnd() + ", docs: " + count + "]";
+        }
+    }
+
+    /**
+     * The tags emitted by the pipeline
+     */
+    public static final class Result {
+
+        private final Context ctx;
+        private final int size;
+        private final int[] tags;
+        private final int[] docOffsets;
+        private final int[] docOrds;
+
+        Result(Context ctx, Selection selection, int size) {
+            this.ctx = ctx;
+            this.size = Math.min(size, selection.size);
+            this.tags = selection.tags;
+            this.docOffsets = selection.docOffsets;
+            this.docOrds = selection.docOrds;
+        }
+
+        /**
+         * The number of emitted tags
+         * @return the number of tags
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * The index of the emitted tag in {@link TagResponse#getTags()}
+         * @param i the index of the emitted tag
+         * @return the index in the response
+         */
+        public int getTagIndex(int i) {
+            return tags[checkIndex(i)];
+        }
+
+        public Tag getTag(int i) {
+            return ctx.response.getTag(getTagIndex(i));
+        }
+
+        public int getStart(int i) {
+            return ctx.starts[getTagIndex(i)];
+        }
+
+        public int getEnd(int i) {
+            return ctx.ends[getTagIndex(i)];
+        }
+
+        /**
+         * The emitted tags
+         * @return a view over the emitted tags
+         */
+        public List<Tag> getTags() {
+            return new AbstractList<Tag>() {
+                @Override
+                public Tag get(int i) {
+                    return getTag(i);
+                }
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        /**
+         * The retained documents of the emitted tag
+         * @param i the index of the emitted tag
+         * @return a view over the documents
+         */
+        public List<SolrDocument> getDocs(int i) {
+            return column(i, ctx.docs);
+        }
+
+        public List<Object> getIds(int i) {
+            return column(i, ctx.ids);
+        }
+
+        /**
+         * The {@link TagPipeline#mapDocs(Function) mapped} values of the
+         * retained documents of the emitted tag
+         * @param i the index of the emitted tag
+         * @return a view over the values
+         */
+        public List<Object> getValues(int i) {
+            return column(i, ctx.values == null ? new Object[ctx.docs.length] : ctx.values);
+        }
+
+        private <T> List<T> column(int i, T[] column) {
+            int from = docOffsets[checkIndex(i)];
+            int count = docOffsets[i + 1] - from;
+            return new AbstractList<T>() {
+                @Override
+                public T get(int j) {
+                    if(j < 0 || j >= count){
+                        throw new IndexOutOfBoundsException("Index: " + j + ", Size: " + count);
+                    }
+                    return column[docOrds[from + j]];
+                }
+                @Override
+                public int size() {
+                    return count;
+                }
+            };
+        }
+
+        private int checkIndex(int i) {
+            if(i < 0 || i >= size){
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.TermsResponse;
+import org.apache.solr.client.solrj.response.TermsResponse.Term;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * A Bloom filter over the tokens that can start a tag. Used to skip
+ * {@link TagRequest}s for contents that can not produce any tag (e.g. short
+ * log lines).
+ * <p>
+ * Contents are split into tokens (runs of letters and digits, lower cased).
+ * If none of the tokens is contained in the filter {@link #process(TagRequest, SolrClient)}
+ * returns an empty {@link TagResponse} without sending the request. As Bloom
+ * filters have no false negatives no tags are lost as long as the filter
+ * contains all tokens that can start a tag. This requires the tagger field to
+ * use a comparable analysis (no stemming or synonyms, see {@link TagDictionary}).
+ * <p>
+ * Requests without a {@link TagRequest#getContent() content} available as
+ * {@link CharSequence} are always sent.
+ * <p>
+ * Instances are immutable (except the statistics) and thread-safe.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagPrefilter filter = TagPrefilter.fromNames(client, "entities", "name", "id", 0.01);
+ *  TagResponse response = filter.process(new TagRequest(params, logLine, "text/plain"), client);
+ * </pre>
+ */
+public class TagPrefilter {
+
+    private static final int TERMS_PAGE_SIZE = 10000;
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private final int numTokens;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong skips = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong unscreened = new AtomicLong();
+
+    private TagPrefilter(Set<Long> hashes, double fpp) {
+        if(!(fpp > 0 && fpp < 1)){
+            throw new IllegalArgumentException("The false positive probability MUST BE in the range (0..1) (parsed: "
+                    + fpp + ")");
+        }
+        int n = Math.max(1, hashes.size());
+        long m = Math.max(64, (long)Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        this.bits = new long[(int)((m + 63) / 64)];
+        this.numBits = bits.length * 64L;
+        this.numHashes = Math.max(1, (int)Math.round((double)numBits / n * Math.log(2)));
+        this.numTokens = hashes.size();
+        for(long hash : hashes){
+            long h1 = hash;
+            long h2 = (hash >>> 32) | 1L;
+            for(int i = 0; i < numHashes; i++){
+                long bit = Math.floorMod(h1 + i * h2, numBits);
+                bits[(int)(bit >>> 6)] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Creates a filter for the parsed names. Names are tokenized and the
+     * first token of every name is added to the filter.
+     * @param names the names of the tagged documents
+     * @param fpp the false positive probability (e.g. <code>0.01</code>)
+     * @return the filter
+     */
+    public static TagPrefilter create(Iterable<? extends CharSequence> names, double fpp) {
+        if(names == null){
+            throw new IllegalArgumentException("The parsed names MUST NOT be NULL!");
+        }
+        Set<Long> hashes = new HashSet<>();
+        for(CharSequence name : names){
+            forEachToken(name, hash -> { hashes.add(hash); return true; }); //only the first
+        }
+        return new TagPrefilter(hashes, fpp);
+    }
+
+    /**
+     * Creates a filter for the first tokens of the names of a dictionary
+     * @param dictionary the dictionary
+     * @param fpp the false positive probability (e.g. <code>0.01</code>)
+     * @return the filter
+     */
+    public static TagPrefilter create(TagDictionary dictionary, double fpp) {
+        if(dictionary == null){
+            throw new IllegalArgumentException("The parsed TagDictionary MUST NOT be NULL!");
+        }
+        Set<Long> hashes = new HashSet<>();
+        dictionary.forEachFirstToken(token -> forEachToken(token, hash -> { hashes.add(hash); return false; }));
+        return new TagPrefilter(hashes, fpp);
+    }
+
+    /**
+     * Creates a filter for the first tokens of the (stored) names of all
+     * documents of a collection. The documents are exported by using a cursor
+     * (see {@link TagDictionary#export(SolrClient, String, SolrParams, String, String)}).
+     * @param client the client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @param nameField the (stored) field with the names of the documents
+     * @param docIdField the field with the id (the uniqueKey) of the documents
+     * @param fpp the false positive probability (e.g. <code>0.01</code>)
+     * @return the filter
+     * @throws SolrServerException on any error while exporting the names
+     * @throws IOException on any error while exporting the names
+     */
+    public static TagPrefilter fromNames(SolrClient client, String collection, String nameField,
+            String docIdField, double fpp) throws SolrServerException, IOException {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.FL, docIdField + "," + nameField);
+        return create(TagDictionary.export(client, collection, params, nameField, docIdField), fpp);
+    }
+
+    /**
+     * Creates a filter for all indexed terms of the tagger field by using
+     * the <code>/terms</code> request handler (TermsComponent).
+     * <p>
+     * <b>NOTE:</b> The TermsComponent does not provide the positions of
+     * terms, so the filter contains all tokens of a name (not only the first
+     * one). It therefore has a higher false positive and a lower skip rate as a
+     * filter created {@link #fromNames(SolrClient, String, String, String, double)
+     * from the names}. Use this if the names are not stored.
+     * @param client the client
+     * @param collection the collection or <code>null</code> to use the default
+     * collection of the client
+     * @param field the tagger field
+     * @param fpp the false positive probability (e.g. <code>0.01</code>)
+     * @return the filter
+     * @throws SolrServerException on any error while requesting the terms
+     * @throws IOException on any error while requesting the terms
+     */
+    public static TagPrefilter fromTerms(SolrClient client, String collection, String field, double fpp)
+            throws SolrServerException, IOException {
+        Set<Long> hashes = new HashSet<>();
+        SolrQuery query = new SolrQuery();
+        query.setRequestHandler("/terms");
+        query.setTerms(true);
+        query.addTermsField(field);
+        query.setTermsLimit(TERMS_PAGE_SIZE);
+        query.setTermsSortString("index");
+        query.setTermsLowerInclusive(false);
+        while(true){
+            TermsResponse response = client.query(collection, query).getTermsResponse();
+            List<Term> terms = response == null ? null : response.getTerms(field);
+            if(terms == null || terms.isEmpty()){
+                break;
+            }
+            for(Term term : terms){
+                forEachToken(term.getTerm(), hash -> { hashes.add(hash); return false; });
+            }
+            if(terms.size() < TERMS_PAGE_SIZE){
+                break;
+            }
+            query.setTermsLower(terms.get(terms.size() - 1).getTerm());
+        }
+        return new TagPrefilter(hashes, fpp);
+    }
+
+    /**
+     * Calls the parsed predicate with the hash of every token of the parsed
+     * text until it returns <code>true</code>
+     * @return <code>true</code> if the predicate returned <code>true</code>
+     */
+    private static boolean forEachToken(CharSequence text, LongPredicate predicate) {
+        long h = 0;
+        boolean inToken = false;
+        int i = 0;
+        while(i < text.length()){
+            int cp = Character.codePointAt(text, i);
+            if(Character.isLetterOrDigit(cp)){
+                if(!inToken){
+                    h = 0xcbf29ce484222325L; //64-bit FNV-1a
+                    inToken = true;
+                }
+                h = (h ^ Character.toLowerCase(cp)) * 0x100000001b3L;
+            } else if(inToken){
+                if(predicate.test(mix(h))){
+                    return true;
+                }
+                inToken = false;
+            }
+            i += Character.charCount(cp);
+        }
+        return inToken && predicate.test(mix(h));
+    }
+
+    /**
+     * Finalizer of MurmurHash3 to spread the FNV hash over all bits
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private boolean contains(long hash) {
+        long h2 = (hash >>> 32) | 1L;
+        for(int i = 0; i < numHashes; i++){
+            long bit = Math.floorMod(hash + i * h2, numBits);
+            if((bits[(int)(bit >>> 6)] & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * If any token of the parsed content might start a tag
+     * @param content the content
+     * @return <code>false</code> if the content can not produce any tag
+     */
+    public boolean mightMatch(CharSequence content) {
+        return forEachToken(content, this::contains);
+    }
+
+    /**
+     * Processes the parsed request if its content might produce tags.
+     * Otherwise an empty response is returned.
+     * @param request the request
+     * @param client the client
+     * @return the response
+     * @throws SolrServerException on any error while tagging
+     * @throws IOException on any error while tagging
+     */
+    public TagResponse process(TagRequest request, SolrClient client) throws SolrServerException, IOException {
+        CharSequence content = request.getContent();
+        if(content == null){
+            unscreened.incrementAndGet();
+            return request.process(client);
+        }
+        if(!mightMatch(content)){
+            skips.incrementAndGet();
+            return new TagResponseBuilder(request.getDocIdField())
+                    .setContent(request.getParams(), content).build(client);
+        }
+        hits.incrementAndGet();
+        TagResponse response = request.process(client);
+        if(response.getTagCount() == 0){
+            falsePositives.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * The number of distinct tokens added to the filter
+     * @return the number of tokens
+     */
+    public int getTokenCount() {
+        return numTokens;
+    }
+
+    /**
+     * The size of the filter
+     * @return the number of bits
+     */
+    public long getBitCount() {
+        return numBits;
+    }
+
+    public int getHashCount() {
+        return numHashes;
+    }
+
+    /**
+     * The number of requests sent because the content might produce tags
+     * @return the number of requests
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of requests skipped because the content can not produce tags
+     * @return the number of requests
+     */
+    public long getSkipCount() {
+        return skips.get();
+    }
+
+    /**
+     * The number of requests sent that returned no tags
+     * @return the number of requests
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.get();
+    }
+
+    /**
+     * The number of requests sent without screening (content not available)
+     * @return the number of requests
+     */
+    public long getUnscreenedCount() {
+        return unscreened.get();
+    }
+
+    /**
+     * The ratio of screened requests that were sent
+     * @return the hit rate in the range <code>[0..1]</code>
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + skips.get();
+        return total == 0 ? 0d : (double)h / total;
+    }
+
+    /**
+     * The ratio of screened requests that were skipped
+     * @return the skip rate in the range <code>[0..1]</code>
+     */
+    public double getSkipRate() {
+        long s = skips.get();
+        long total = hits.get() + s;
+        return total == 0 ? 0d : (double)s / total;
+    }
+
+    /**
+     * The ratio of sent requests that returned no tags. This includes
+     * contents with tokens of names that did not match a whole name.
+     * @return the false positive rate in the range <code>[0..1]</code>
+     */
+    public double getFalsePositiveRate() {
+        long h = hits.get();
+        return h == 0 ? 0d : (double)falsePositives.get() / h;
+    }
+
+    @Override
+    public String toString() {
+        return "TagPrefilter [tokens=" + numTokens + ", bits=" + numBits + ", hashes=" + numHashes
+                + ", hits=" + hits + ", skips=" + skips + ", falsePositives=" + falsePositives
+                + ", unscreened=" + unscreened + "]";
+    }
+}
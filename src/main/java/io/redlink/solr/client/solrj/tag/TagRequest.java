@@ -1,12 +1,21 @@
 package io.redlink.solr.client.solrj.tag;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
 
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.ResponseParser;
 import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.impl.LBHttpSolrClient;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.ContentStream;
 
@@ -18,10 +27,11 @@ import org.apache.solr.common.util.ContentStream;
  *  String content; //The content to tag
  *  SolrClient client; //The client for the Solr Servier configured with SolrTextTagger request handler
  *  
- *  //NOTE: TaggerParams can be reused for multiple requests
- *  TagParams params = new TagParams();
- *  params.setOverlaps(Overlaps.LONGEST_DOMINANT_RIGHT);
- *  params.setFields("id", "title", "cat");
+ *  //NOTE: compiled params can be shared by concurrent requests
+ *  CompiledTagParams params = new TagParams()
+ *      .setOverlaps(Overlaps.LONGEST_DOMINANT_RIGHT)
+ *      .setFields("id", "title", "cat")
+ *      .compile();
  *  
  *  TagRequest request = new TagRequest(params, 
  *      new StringStream(content, "text/plain"));
@@ -53,11 +63,44 @@ public class TagRequest extends SolrRequest<TagResponse> {
     private SolrParams params;
     private Set<ContentStream> contentStreams;
     private String docIdField = "id"; //ID is used by the default Solr schema
+    private TagDocumentCache documentCache;
+    private String collection;
+    private TagMetricsListener metricsListener;
+    /*
+     * The content if available as CharSequence. Used by Tag#getMatchText()
+     */
+    private transient CharSequence content;
+    /*
+     * State of the request processed by the current thread. Set by
+     * createResponse(..) that is called by SolrRequest#process(..) before the
+     * client sends the request on the same thread. Not kept in fields of the
+     * request so that a request can be processed concurrently. Removed by
+     * TagResponse#setResponse(..) after the client returned. If the client
+     * fails the state is kept until the next request of the thread, so it
+     * only references the request weakly.
+     */
+    private static final ThreadLocal<Call> CALL = new ThreadLocal<>();
 
     public TagRequest(SolrParams params, ContentStream content) {
         super(METHOD.POST, DEFAULT_PATH);
         this.params = params;
         this.contentStreams = Collections.singleton(content);
+        if(content instanceof CharSequenceContentStream){
+            this.content = ((CharSequenceContentStream)content).getContent();
+        }
+    }
+
+    /**
+     * Creates a request for the parsed content. The content is retained by
+     * the request so that {@link TagResponse.Tag#getMatchText()} can provide
+     * the matched text without the server sending it.
+     * @param params the params
+     * @param content the content
+     * @param contentType the content type (e.g. <code>text/plain</code>)
+     * @see CharSequenceContentStream
+     */
+    public TagRequest(SolrParams params, CharSequence content, String contentType) {
+        this(params, new CharSequenceContentStream(content, contentType));
     }
 
     public TagRequest(String path) {
@@ -71,22 +114,237 @@ public class TagRequest extends SolrRequest<TagResponse> {
     public void setDocIdField(String docIdField) {
         this.docIdField = docIdField;
     }
+
+    /**
+     * Enables the streaming mode for this request. In this mode tags and
+     * documents are parsed to the parsed callback while the response is
+     * decoded and are NOT contained in the {@link TagResponse}.
+     * @param callback the callback or <code>null</code> to disable the
+     * streaming mode
+     * @see StreamingTagResponseParser
+     */
+    public void setStreamingCallback(TagStreamingCallback callback) {
+        setResponseParser(callback == null ? null : new StreamingTagResponseParser(callback));
+    }
+
+    /**
+     * Getter for the callback used in streaming mode
+     * @return the callback or <code>null</code> if not in streaming mode
+     */
+    public TagStreamingCallback getStreamingCallback() {
+        ResponseParser parser = super.getResponseParser();
+        return parser instanceof StreamingTagResponseParser ?
+                ((StreamingTagResponseParser)parser).getCallback() : null;
+    }
+
+    /**
+     * Setter for the listener notified with the {@link TagRequestMetrics}
+     * after this request was processed. Only successfully processed requests
+     * are reported: if the client throws an exception (e.g. on network errors
+     * or an error response of Solr) the listener is not notified.
+     * @param metricsListener the listener or <code>null</code> to disable metrics
+     * @see TagMetricsRecorder
+     */
+    public void setMetricsListener(TagMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public TagMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
     
+    /**
+     * Setter for the document cache. If present the tagger is only asked for
+     * the {@link #getDocIdField() document ids}. Tagged documents are taken
+     * from the cache and missing documents are retrieved by a single real time
+     * get request for the {@link #getCollection() collection}.
+     * @param documentCache the cache or <code>null</code> to request documents
+     * from the tagger
+     * @see TagDocumentCache
+     */
+    public void setDocumentCache(TagDocumentCache documentCache) {
+        this.documentCache = documentCache;
+    }
+
+    public TagDocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * The collection used for the real time get request of documents missing
+     * in the {@link #getDocumentCache() document cache}.
+     * @return the collection or <code>null</code> to use the default collection
+     * of the client
+     */
+    public String getCollection() {
+        return collection;
+    }
+
+    public void setCollection(String collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * The content of the request as used by {@link TagResponse.Tag#getMatchText()}
+     * @return the content or <code>null</code> if the content is not available
+     * as {@link CharSequence}
+     */
+    public CharSequence getContent() {
+        return content;
+    }
+
+    /**
+     * A copy of this request that can be processed concurrently with this
+     * request (e.g. by an other replica). The content streams are shared and
+     * MUST support to be read several times.
+     * @return the copy
+     */
+    TagRequest copy() {
+        TagRequest copy = new TagRequest(getPath());
+        copy.setMethod(getMethod());
+        copy.setResponseParser(super.getResponseParser());
+        copy.setStreamingResponseCallback(getStreamingResponseCallback());
+        copy.setQueryParams(getQueryParams());
+        copy.setBasicAuthCredentials(getBasicAuthUser(), getBasicAuthPassword());
+        copy.params = params;
+        copy.contentStreams = contentStreams;
+        copy.content = content;
+        copy.docIdField = docIdField;
+        copy.documentCache = documentCache;
+        copy.collection = collection;
+        copy.metricsListener = metricsListener;
+        return copy;
+    }
+
     @Override
     public SolrParams getParams() {
-        return params;
+        if(params == null){
+            return null;
+        }
+        if(params instanceof CompiledTagParams){
+            return getParams((CompiledTagParams)params);
+        }
+        ModifiableSolrParams modified = null;
+        if(documentCache != null){
+            modified = new ModifiableSolrParams(params);
+            modified.set(CommonParams.FL, docIdField);
+        }
+        //the match text is sliced from the content (no need for the server to buffer the content)
+        if(content != null && params.getBool(TagParams.STT_MATCH_TEXT, false) && !TagParams.isOffsetAdjust(params)){
+            if(modified == null){
+                modified = new ModifiableSolrParams(params);
+            }
+            modified.set(TagParams.STT_MATCH_TEXT, false);
+        }
+        return modified == null ? params : modified;
+    }
+
+    /**
+     * Same as {@link #getParams()} but using the cached variants of the
+     * compiled params instead of copying them for every request
+     */
+    private SolrParams getParams(CompiledTagParams compiled) {
+        if(documentCache != null){
+            compiled = compiled.with(CommonParams.FL, docIdField);
+        }
+        if(content != null && compiled.isMatchText() && !compiled.isOffsetAdjust()){
+            compiled = compiled.with(TagParams.STT_MATCH_TEXT, Boolean.FALSE.toString());
+        }
+        return compiled;
     }
 
     @Override
     public Collection<ContentStream> getContentStreams() throws IOException {
+        Call call = getCall();
+        if(call != null && contentStreams != null){
+            Collection<ContentStream> counting = new ArrayList<>(contentStreams.size());
+            for(ContentStream content : contentStreams){
+                counting.add(new CountingContentStream(content, call.metrics));
+            }
+            return counting;
+        }
         return contentStreams;
     }
 
+    @Override
+    public ResponseParser getResponseParser() {
+        ResponseParser parser = super.getResponseParser();
+        Call call = getCall();
+        if(call != null && (parser != null || call.clientParser != null)){
+            return new TimingResponseParser(parser != null ? parser : call.clientParser, call.metrics);
+        }
+        return parser;
+    }
+
+    /**
+     * The state of this request if processed by the current thread
+     * @return the state or <code>null</code> if no metrics are collected
+     */
+    private Call getCall() {
+        Call call = CALL.get();
+        return call != null && call.request.get() == this ? call : null;
+    }
+
+    /**
+     * Removes the state of the request processed by the current thread. Called
+     * by the {@link TagResponse} after the client returned the response.
+     */
+    static void endCall() {
+        CALL.remove();
+    }
+
     @Override
     protected TagResponse createResponse(SolrClient client) {
         TagResponse response = new TagResponse(client);
         response.setDocIdField(docIdField);
+        if(!TagParams.isOffsetAdjust(params)){
+            response.setContent(content);
+        }
+        if(documentCache != null){
+            response.setDocumentCache(documentCache, params == null ? null : params.get(CommonParams.FL), collection);
+        }
+        if(metricsListener != null){
+            TagRequestMetrics metrics = new TagRequestMetrics(getPath(), System.nanoTime());
+            CALL.set(new Call(this, metrics, super.getResponseParser() == null ? getParser(client) : null));
+            response.setMetrics(metrics, metricsListener);
+        } else {
+            CALL.remove();
+        }
         return response;
     }
 
-}
\ No newline at end of file
+    /**
+     * The parser used by the parsed client for requests without a parser
+     * @param client the client
+     * @return the parser or <code>null</code> if not known
+     */
+    private static ResponseParser getParser(SolrClient client) {
+        if(client instanceof HttpSolrClient){
+            return ((HttpSolrClient)client).getParser();
+        } else if(client instanceof LBHttpSolrClient){
+            return ((LBHttpSolrClient)client).getParser();
+        } else if(client instanceof CloudSolrClient){
+            return ((CloudSolrClient)client).getParser();
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * The metrics of a single call of {@link SolrRequest#process(SolrClient)}
+     * and the parser of the client (if the request has no parser)
+     */
+    private static final class Call {
+
+        private final Reference<TagRequest> request;
+        private final TagRequestMetrics metrics;
+        private final ResponseParser clientParser;
+
+        Call(TagRequest request, TagRequestMetrics metrics, ResponseParser clientParser) {
+            this.request = new WeakReference<>(request);
+            this.metrics = metrics;
+            this.clientParser = clientParser;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.redlink.solr.client.solrj.tag;
+
+/**
+ * Metrics of a single processed {@link TagRequest}. All times are in
+ * nanoseconds except the {@link #getQTime() QTime} reported by the server.
+ * <p>
+ * Phases:
+ * <ul>
+ * <li><b>total</b>: the time spent in {@link TagRequest#process(org.apache.solr.client.solrj.SolrClient)}
+ * <li><b>decode</b>: the time spent to decode the response (e.g. javabin).
+ * <code>0</code> if the parser is not known (e.g. for embedded servers)
+ * <li><b>response</b>: the time spent in {@link TagResponse#setResponse(org.apache.solr.common.util.NamedList)}
+ * (including the resolution of documents via a {@link TagDocumentCache})
+ * <li><b>network</b>: the remaining time (sending the request, processing
+ * on the server and receiving the response)
+ * </ul>
+ *
+ * @see TagMetricsListener
+ */
+public class TagRequestMetrics {
+
+    private final String path;
+    private final long startNanos;
+    private long totalNanos;
+    private long decodeNanos;
+    private long responseNanos;
+    private int qTime = -1;
+    private long requestBytes;
+    private int tagCount;
+    private int docCount;
+    private int cacheHits;
+    private int cacheMisses;
+
+    TagRequestMetrics(String path, long startNanos) {
+        this.path = path;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * The path of the tag request handler
+     * @return the path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    void addDecodeNanos(long decodeNanos) {
+        this.decodeNanos += decodeNanos;
+    }
+
+    public long getResponseNanos() {
+        return responseNanos;
+    }
+
+    void setResponseNanos(long responseNanos) {
+        this.responseNanos = responseNanos;
+    }
+
+    /**
+     * The time not spent for decoding and processing the response
+     * @return the network time including the processing time on the server
+     */
+    public long getNetworkNanos() {
+        return Math.max(0, totalNanos - decodeNanos - responseNanos);
+    }
+
+    /**
+     * The QTime as reported in the <code>responseHeader</code>
+     * @return the QTime in milliseconds or <code>-1</code> if not present
+     */
+    public int getQTime() {
+        return qTime;
+    }
+
+    void setQTime(int qTime) {
+        this.qTime = qTime;
+    }
+
+    /**
+     * The number of bytes read from the content stream(s) of the request
+     * @return the number of bytes
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    void addRequestBytes(long bytes) {
+        this.requestBytes += bytes;
+    }
+
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    void setTagCount(int tagCount) {
+        this.tagCount = tagCount;
+    }
+
+    public int getDocCount() {
+        return docCount;
+    }
+
+    void setDocCount(int docCount) {
+        this.docCount = docCount;
+    }
+
+    /**
+     * The number of documents taken from the {@link TagDocumentCache}
+     * @return the number of cache hits
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * The number of documents missing in the {@link TagDocumentCache}
+     * @return the number of cache misses
+     */
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    void addCacheStats(int hits, int misses) {
+        this.cacheHits += hits;
+        this.cacheMisses += misses;
+    }
+
+    @Override
+    public String toString() {
+        return "TagRequestMetrics [path=" + path + ", total=" + totalNanos + "ns, network=" + getNetworkNanos()
+                + "ns, decode=" + decodeNanos + "ns, response=" + responseNanos + "ns, QTime=" + qTime
+                + "ms, requestBytes=" + requestBytes + ", tags=" + tagCount + ", docs=" + docCount
+                + ", cacheHits=" + cacheHits + ", cacheMisses=" + cacheMisses + "]";
+    }
+}
@@ -1,17 +1,29 @@
 package io.redlink.solr.client.solrj.tag;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
 import org.apache.solr.client.solrj.response.SolrResponseBase;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,8 +77,50 @@ public class TagResponse extends SolrResponseBase {
     protected Map<Object, SolrDocument> docMap;
     protected List<Tag> tags = Collections.emptyList();
 
+    /*
+     * Columnar representation of the tags. The ids of the tag at index i are
+     * the ordinals idOrdinals[idOffsets[i]] to idOrdinals[idOffsets[i+1]-1].
+     * Ordinals point to the ids and docs tables.
+     */
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int[] idOffsets = new int[]{0};
+    private int[] idOrdinals = new int[0];
+    private Object[] ids = new Object[0];
+    private SolrDocument[] docs = new SolrDocument[0];
+    /*
+     * The matchText sent by the server (null if not present) and the content
+     * of the request used to slice the matched text
+     */
+    private String[] matchTexts;
+    private transient CharSequence content;
+    private transient OffsetIndex offsetIndex;
+    /*
+     * The ordinals of the ids and the beans bound to documents (by type and ordinal)
+     */
+    private Map<Object,Integer> ordinals = Collections.emptyMap();
+    private transient Map<Class<?>, Object[]> beans;
+    /*
+     * The number of tags referencing an ordinal and the reverse index (built
+     * on first use): the tags of ordinal o are docTags[docTagOffsets[o]] to
+     * docTags[docTagOffsets[o+1]-1]
+     */
+    private int[] mentions = new int[0];
+    private transient int[] docTagOffsets;
+    private transient int[] docTags;
+    /*
+     * The memorised documents of the tags
+     */
+    private transient List<SolrDocument>[] tagDocs;
+
     private String docIdField;
 
+    private TagDocumentCache documentCache;
+    private String documentFields;
+    private String collection;
+
+    private transient TagRequestMetrics metrics;
+    private transient TagMetricsListener metricsListener;
 
     /**
      * Utility constructor to set the solrServer and namedList
@@ -83,6 +137,10 @@ public class TagResponse extends SolrResponseBase {
     @SuppressWarnings("unchecked")
     @Override
     public void setResponse( NamedList<Object> res ) {
+        long start = System.nanoTime();
+        if(metrics != null){ //the client returned: the call of the TagRequest is done
+            TagRequest.endCall();
+        }
         super.setResponse( res );
         for( int i=0; i<res.size(); i++ ) {
             String n = res.getName( i );
@@ -113,16 +171,240 @@ public class TagResponse extends SolrResponseBase {
                 }
             });
         }
-        if(_tags != null){
-            this.tags = new ArrayList<Tag>(_tags.size());
-            for(NamedList<Object> tag : _tags){
-                this.tags.add(new Tag(tag));
+        readTags();
+        //replace the raw tags by a view over the columnar representation
+        int tagsIdx = res.indexOf("tags", 0);
+        if(tagsIdx >= 0){
+            res.setVal(tagsIdx, starts.length == 0 ? new ArrayList<>() : new RawTagList());
+        }
+        if(documentCache != null){
+            resolveDocuments();
+        }
+        if(metrics != null){
+            metrics.setResponseNanos(System.nanoTime() - start);
+            metrics.setTagCount(getTagCount());
+            metrics.setDocCount(_results == null ? 0 : _results.size());
+            Object qTime = _header == null ? null : _header.get("QTime");
+            if(qTime instanceof Number){
+                metrics.setQTime(((Number)qTime).intValue());
+            }
+        }
+    }
+
+    /**
+     * Called by {@link org.apache.solr.client.solrj.SolrRequest#process(SolrClient)}
+     * after the response was set. Used to notify the {@link TagMetricsListener}
+     */
+    @Override
+    public void setElapsedTime(long elapsedTime) {
+        super.setElapsedTime(elapsedTime);
+        TagRequestMetrics metrics = this.metrics;
+        if(metrics != null){
+            this.metrics = null;
+            metrics.setTotalNanos(System.nanoTime() - metrics.getStartNanos());
+            try {
+                metricsListener.onRequest(metrics);
+            } catch (RuntimeException e) {
+                log.warn("Exception while notifying TagMetricsListener " + metricsListener, e);
+            }
+        }
+    }
+
+    /**
+     * Resolves the documents referenced by tags by using the {@link #documentCache}.
+     * Documents missing in the cache are retrieved by a single real time get
+     * request and added to the cache.
+     */
+    private void resolveDocuments() {
+        Map<String,Integer> missing = new HashMap<>();
+        for(int ord = 0; ord < ids.length; ord++){
+            SolrDocument doc = documentCache.get(ids[ord]);
+            if(doc != null){
+                docs[ord] = doc;
+            } else if(ids[ord] != null){
+                missing.put(ids[ord].toString(), ord);
+            }
+        }
+        if(metrics != null){
+            metrics.addCacheStats(ids.length - missing.size(), missing.size());
+        }
+        if(!missing.isEmpty()){
+            if(solrClient == null){
+                log.warn("Unable to retrieve {} documents missing in the document cache "
+                        + "as no SolrClient is available", missing.size());
+            } else {
+                ModifiableSolrParams params = new ModifiableSolrParams();
+                if(documentFields != null){ //the id is required to map documents to tags
+                    params.set(CommonParams.FL, documentFields + "," + docIdField);
+                }
+                SolrDocumentList fetched;
+                try {
+                    fetched = solrClient.getById(collection, missing.keySet(), params);
+                } catch (SolrServerException | IOException e) {
+                    throw new SolrException(ErrorCode.SERVER_ERROR, "Unable to retrieve " + missing.size()
+                            + " tagged documents missing in the document cache", e);
+                }
+                for(SolrDocument doc : fetched){
+                    Object id = doc.get(docIdField);
+                    Integer ord = id == null ? null : missing.get(id.toString());
+                    if(ord != null){
+                        docs[ord] = doc;
+                        documentCache.put(ids[ord], doc);
+                    }
+                }
+            }
+        }
+        beans = null;
+        tagDocs = null;
+        //replace the documents sent by the tagger (with the id field only)
+        SolrDocumentList results = new SolrDocumentList();
+        docMap = new HashMap<>();
+        for(int ord = 0; ord < docs.length; ord++){
+            if(docs[ord] != null){
+                results.add(docs[ord]);
+                docMap.put(ids[ord], docs[ord]);
             }
-        } else {
-            this.tags = Collections.emptyList();
         }
+        results.setNumFound(results.size());
+        results.setStart(0);
+        _results = results;
+    }
+
+    /**
+     * Reads the {@link #_tags} into the columnar {@link #starts}, {@link #ends},
+     * {@link #idOffsets} and {@link #idOrdinals} arrays. Document ids are
+     * assigned to ordinals in the {@link #ids} and {@link #docs} tables.
+     */
+    @SuppressWarnings("unchecked")
+    private void readTags() {
+        Map<Object,Integer> ordinals = new HashMap<>();
+        beans = null;
+        List<Object> idTable = new ArrayList<>();
+        int numTags = _tags == null ? 0 : _tags.size();
+        starts = new int[numTags];
+        ends = new int[numTags];
+        idOffsets = new int[numTags + 1];
+        idOrdinals = new int[numTags];
+        matchTexts = null;
+        int numIds = 0;
+        for(int t = 0; t < numTags; t++){
+            NamedList<Object> tag = _tags.get(t);
+            starts[t] = -1;
+            ends[t] = -1;
+            for( int i=0; i<tag.size(); i++ ) {
+                String n = tag.getName( i );
+                switch (n) {
+                case "startOffset":
+                    starts[t] = (Integer)tag.getVal(i);
+                    break;
+                case "endOffset":
+                    ends[t] = (Integer)tag.getVal(i);
+                    break;
+                case "ids":
+                    for(Object id : (List<Object>)tag.getVal(i)){
+                        Integer ord = ordinals.get(id);
+                        if(ord == null){
+                            ord = idTable.size();
+                            ordinals.put(id, ord);
+                            idTable.add(id);
+                        }
+                        if(numIds == idOrdinals.length){
+                            idOrdinals = Arrays.copyOf(idOrdinals, Math.max(8, numIds * 2));
+                        }
+                        idOrdinals[numIds++] = ord;
+                    }
+                    break;
+                case "matchText":
+                    if(matchTexts == null){
+                        matchTexts = new String[numTags];
+                    }
+                    matchTexts[t] = (String)tag.getVal(i);
+                    break;
+                default:
+                    break;
+                }
+            }
+            idOffsets[t + 1] = numIds;
+        }
+        if(idOrdinals.length != numIds){
+            idOrdinals = Arrays.copyOf(idOrdinals, numIds);
+        }
+        ids = idTable.toArray();
+        mentions = new int[ids.length];
+        for(int i = 0; i < numIds; i++){
+            mentions[idOrdinals[i]]++;
+        }
+        for(int ord = 0; ord < ids.length; ord++){ //allow lookups of numeric ids by String
+            if(ids[ord] != null && !(ids[ord] instanceof String)){
+                ordinals.putIfAbsent(ids[ord].toString(), ord);
+            }
+        }
+        docTagOffsets = null;
+        docTags = null;
+        tagDocs = null;
+        docs = new SolrDocument[ids.length];
+        if(docMap != null){
+            for(int ord = 0; ord < ids.length; ord++){
+                docs[ord] = docMap.get(ids[ord]);
+            }
+        }
+        this.ordinals = ordinals;
+        this.tags = numTags == 0 ? Collections.emptyList() : new TagList();
+        //the tags are now represented by the columnar arrays
+        _tags = null;
     }
     
+    /**
+     * Sets the document cache used to resolve the documents of the tags
+     * @param documentCache the document cache
+     * @param documentFields the fields requested for documents
+     * @param collection the collection used to retrieve documents missing in
+     * the cache
+     */
+    void setDocumentCache(TagDocumentCache documentCache, String documentFields, String collection) {
+        this.documentCache = documentCache;
+        this.documentFields = documentFields;
+        this.collection = collection;
+    }
+
+    /**
+     * Sets the content of the request used by {@link Tag#getMatchText()}
+     * @param content the content or <code>null</code> if not available or
+     * if offsets do not refer to the content (e.g. if adjusted by the server)
+     */
+    void setContent(CharSequence content) {
+        this.content = content;
+        this.offsetIndex = null;
+    }
+
+    /**
+     * The index converting the char offsets of tags to UTF-8 byte and code
+     * point offsets. Built on first use by a single pass over the content.
+     * @return the index or <code>null</code> if the content of the request is
+     * not available (e.g. if sent as stream or if offsets were adjusted by
+     * the server)
+     * @see OffsetIndex#create(CharSequence)
+     */
+    public OffsetIndex getOffsetIndex() {
+        OffsetIndex index = offsetIndex;
+        if(index == null && content != null){
+            index = OffsetIndex.create(content);
+            offsetIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Sets the metrics of the request and the listener notified by
+     * {@link #setElapsedTime(long)}
+     * @param metrics the metrics
+     * @param metricsListener the listener
+     */
+    void setMetrics(TagRequestMetrics metrics, TagMetricsListener metricsListener) {
+        this.metrics = metrics;
+        this.metricsListener = metricsListener;
+    }
+
     /**
      * The Document ID field is required for assigning
      * {@link #getResults()} with the IDs of the {@link #getTags()}.
@@ -151,72 +433,447 @@ public class TagResponse extends SolrResponseBase {
     public List<Tag> getTags() {
         return tags;
     }
+
+    /**
+     * The number of tags
+     * @return the number of tags
+     */
+    public int getTagCount() {
+        return starts.length;
+    }
+
+    /**
+     * The start offsets of all tags. The index of the array corresponds to
+     * the index of the tag in {@link #getTags()}. A value of <code>-1</code>
+     * indicates a missing offset.
+     * <p>
+     * <b>NOTE:</b> The returned array is not copied and MUST NOT be modified.
+     * @return the start offsets
+     */
+    public int[] getStartOffsets() {
+        return starts;
+    }
+
+    /**
+     * The end offsets of all tags. The index of the array corresponds to
+     * the index of the tag in {@link #getTags()}. A value of <code>-1</code>
+     * indicates a missing offset.
+     * <p>
+     * <b>NOTE:</b> The returned array is not copied and MUST NOT be modified.
+     * @return the end offsets
+     */
+    public int[] getEndOffsets() {
+        return ends;
+    }
+
+    /**
+     * Allocation free iteration over the start and end offsets of all tags
+     * @param consumer the consumer called with the start and end offset of
+     * every tag
+     */
+    public void forEachTag(IntIntConsumer consumer) {
+        for(int i = 0; i < starts.length; i++){
+            consumer.accept(starts[i], ends[i]);
+        }
+    }
     
+    /**
+     * The document with the parsed id
+     * @param id the id
+     * @return the document or <code>null</code> if not present
+     */
     public SolrDocument getDocument(String id){
-        return null;
+        Integer ord = id == null ? null : ordinals.get(id);
+        SolrDocument doc = ord == null ? null : docs[ord];
+        return doc != null || docMap == null ? doc : docMap.get(id);
+    }
+
+    /**
+     * The tags referencing the document with the parsed id
+     * @param id the document id
+     * @return the tags (sorted by index) or an empty list if no tag references
+     * the parsed id
+     */
+    public List<Tag> getTagsForDocument(Object id){
+        Integer ord = id == null ? null : ordinals.get(id);
+        if(ord == null){
+            return Collections.emptyList();
+        }
+        int[] offsets = docTagOffsets;
+        int[] tagIndexes = docTags;
+        if(offsets == null){ //build the reverse index
+            offsets = new int[ids.length + 1];
+            for(int o = 0; o < ids.length; o++){
+                offsets[o + 1] = offsets[o] + mentions[o];
+            }
+            int[] pos = Arrays.copyOf(offsets, ids.length);
+            tagIndexes = new int[idOrdinals.length];
+            for(int t = 0; t < starts.length; t++){
+                for(int i = idOffsets[t]; i < idOffsets[t + 1]; i++){
+                    tagIndexes[pos[idOrdinals[i]]++] = t;
+                }
+            }
+            docTags = tagIndexes;
+            docTagOffsets = offsets;
+        }
+        int from = offsets[ord];
+        int size = offsets[ord + 1] - from;
+        int[] index = tagIndexes;
+        return new AbstractList<Tag>() {
+            @Override
+            public Tag get(int i) {
+                if(i < 0 || i >= size){
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+                }
+                return new Tag(index[from + i]);
+            }
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * The number of tags referencing the document with the parsed id
+     * @param id the document id
+     * @return the number of mentions
+     */
+    public int getMentionCount(Object id){
+        Integer ord = id == null ? null : ordinals.get(id);
+        return ord == null ? 0 : mentions[ord];
+    }
+
+    /**
+     * Allocation free iteration over the ids of all tagged documents and the
+     * number of tags referencing them
+     * @param consumer the consumer called with the id and the mention count
+     * of every document
+     */
+    public void forEachMentionCount(ObjIntConsumer<Object> consumer){
+        for(int ord = 0; ord < ids.length; ord++){
+            consumer.accept(ids[ord], mentions[ord]);
+        }
+    }
+
+    /*
+     * Package private access to the columnar representation (used by the
+     * TagPipeline). The returned arrays are not copied and MUST NOT be modified.
+     */
+    int[] getIdOffsets(){
+        return idOffsets;
+    }
+
+    int[] getIdOrdinals(){
+        return idOrdinals;
+    }
+
+    Object[] getIdTable(){
+        return ids;
+    }
+
+    SolrDocument[] getDocumentTable(){
+        return docs;
+    }
+
+    /**
+     * The matchText sent by the server
+     * @return the matchTexts or <code>null</code> if not present
+     */
+    String[] getMatchTexts(){
+        return matchTexts;
+    }
+
+    Tag getTag(int index){
+        return new Tag(index);
     }
     
     public SolrDocumentList getResults() {
         return _results;
       }
 
+    /**
+     * The bean for the document with the parsed id. Beans are bound on the
+     * first request by a binder cached per class and memorised per id.
+     * @param id the document id
+     * @param type the type of the bean (using {@link org.apache.solr.client.solrj.beans.Field}
+     * annotations)
+     * @return the bean or <code>null</code> if no tagged document has the parsed id
+     * @throws org.apache.solr.client.solrj.beans.BindingException if the
+     * document can not be bound
+     */
+    public <T> T getBean(Object id, Class<T> type){
+        Integer ord = id == null ? null : ordinals.get(id);
+        return ord == null ? null : bindBean(ord, type);
+    }
+
+    /**
+     * The (memorised) bean for the document with the parsed ordinal
+     */
+    private <T> T bindBean(int ord, Class<T> type){
+        SolrDocument doc = docs[ord];
+        if(doc == null){
+            return null;
+        }
+        Map<Class<?>, Object[]> beans = this.beans;
+        if(beans == null){
+            beans = new ConcurrentHashMap<>();
+            this.beans = beans;
+        }
+        Object[] bound = beans.computeIfAbsent(type, t -> new Object[docs.length]);
+        Object bean = bound[ord];
+        if(bean == null){ //concurrent calls may bind the same document twice
+            bean = BeanBinder.of(type).bind(doc, solrClient == null ? null : solrClient.getBinder());
+            bound[ord] = bean;
+        }
+        return type.cast(bean);
+    }
+
+    /**
+     * Binds all {@link #getResults() results} by using the {@link DocumentObjectBinder}
+     * @param type the type of the beans
+     * @return the beans
+     * @see #getBean(Object, Class)
+     * @see Tag#getDocs(Class)
+     */
     public <T> List<T> getBeans(Class<T> type){
         return solrClient == null ?
           new DocumentObjectBinder().getBeans(type,_results):
           solrClient.getBinder().getBeans(type, _results);
       }
 
-    public final class Tag {
-        
-        Integer _start;
-        Integer _end;
-        List<Object> _ids;
-        
-        @SuppressWarnings("unchecked")
-        Tag(NamedList<Object> res){
-            for( int i=0; i<res.size(); i++ ) {
-                String n = res.getName( i );
-                switch (n) {
-                case "startOffset":
-                    _start = (Integer)res.getVal(i);
-                    break;
-                case "endOffset":
-                    _end = (Integer)res.getVal(i);
-                    break;
-                case "ids":
-                    _ids = (List<Object>)res.getVal(i);
-                    break;
-                default:
-                    break;
-                }
+    /**
+     * {@link List} view over the columnar tag representation
+     */
+    private final class TagList extends AbstractList<Tag> implements RandomAccess {
+
+        @Override
+        public Tag get(int index) {
+            if(index < 0 || index >= starts.length){
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + starts.length);
             }
+            return new Tag(index);
         }
-        
+
+        @Override
+        public int size() {
+            return starts.length;
+        }
+    }
+
+    /**
+     * The tags as sent by the tagger (<code>startOffset</code>, <code>endOffset</code>,
+     * <code>ids</code> and <code>matchText</code>). Replaces the parsed tags in
+     * the {@link #getResponse() response}, so that those are not kept in
+     * memory in addition to the columnar representation. Tags are created on
+     * access.
+     */
+    private final class RawTagList extends AbstractList<NamedList<Object>> implements RandomAccess, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public NamedList<Object> get(int index) {
+            if(index < 0 || index >= starts.length){
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + starts.length);
+            }
+            NamedList<Object> tag = new NamedList<>();
+            if(starts[index] >= 0){
+                tag.add("startOffset", starts[index]);
+            }
+            if(ends[index] >= 0){
+                tag.add("endOffset", ends[index]);
+            }
+            tag.add("ids", new ArrayList<>(new Tag(index).getIds()));
+            if(matchTexts != null && matchTexts[index] != null){
+                tag.add("matchText", matchTexts[index]);
+            }
+            return tag;
+        }
+
+        @Override
+        public int size() {
+            return starts.length;
+        }
+    }
+
+    /**
+     * A flyweight over the columnar tag representation of the {@link TagResponse}
+     */
+    public final class Tag {
+
+        private final int index;
+
+        Tag(int index){
+            this.index = index;
+        }
+
         public int getStart(){
-            return _start == null ? -1 : _start.intValue();
+            return starts[index];
         }
-        
+
         public int getEnd(){
-            return _end == null ? -1 : _end.intValue();
+            return ends[index];
         }
-        
+
+        /**
+         * The start offset in the UTF-8 encoded content
+         * @return the byte offset
+         * @throws IllegalStateException if the content of the request is not available
+         * @see TagResponse#getOffsetIndex()
+         */
+        public int getStartByte(){
+            return requireOffsetIndex().toByteOffset(starts[index]);
+        }
+
+        /**
+         * The end offset in the UTF-8 encoded content
+         * @return the byte offset
+         * @throws IllegalStateException if the content of the request is not available
+         * @see TagResponse#getOffsetIndex()
+         */
+        public int getEndByte(){
+            return requireOffsetIndex().toByteOffset(ends[index]);
+        }
+
+        /**
+         * The start offset in code points
+         * @return the code point offset
+         * @throws IllegalStateException if the content of the request is not available
+         * @see TagResponse#getOffsetIndex()
+         */
+        public int getStartCodePoint(){
+            return requireOffsetIndex().toCodePointOffset(starts[index]);
+        }
+
+        /**
+         * The end offset in code points
+         * @return the code point offset
+         * @throws IllegalStateException if the content of the request is not available
+         * @see TagResponse#getOffsetIndex()
+         */
+        public int getEndCodePoint(){
+            return requireOffsetIndex().toCodePointOffset(ends[index]);
+        }
+
+        private OffsetIndex requireOffsetIndex(){
+            OffsetIndex offsets = getOffsetIndex();
+            if(offsets == null){
+                throw new IllegalStateException("The content of the request is not available!");
+            }
+            return offsets;
+        }
+
+        /**
+         * The matched text. If the content of the request is available this is
+         * a view over the content (use {@link Object#toString()} to get a
+         * {@link String}). Otherwise the <code>matchText</code> sent by the
+         * server is returned.
+         * @return the matched text or <code>null</code> if neither the content
+         * nor the <code>matchText</code> is available
+         * @see TagParams#setMatchText(boolean)
+         */
+        public CharSequence getMatchText(){
+            int start = starts[index];
+            int end = ends[index];
+            if(content != null && start >= 0 && start <= end && end <= content.length()){
+                return CharBuffer.wrap(content, start, end);
+            }
+            return matchTexts == null ? null : matchTexts[index];
+        }
+
         public List<Object> getIds(){
-            return _ids;
+            return new AbstractList<Object>() {
+                @Override
+                public Object get(int i) {
+                    return ids[idOrdinals[checkIdIndex(i)]];
+                }
+                @Override
+                public int size() {
+                    return idOffsets[index + 1] - idOffsets[index];
+                }
+            };
         }
-        
+
+        /**
+         * The documents referenced by this tag. Memorised by the {@link TagResponse}
+         * @return the (unmodifiable) list of documents
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
         public List<SolrDocument> getDocs(){
-            return _ids.stream()
-                .map(id -> docMap.get(id))
-                .filter(doc -> doc != null)
-                .collect(Collectors.toList());
+            List<SolrDocument>[] memo = tagDocs;
+            if(memo == null){
+                memo = new List[starts.length];
+                tagDocs = memo;
+            }
+            List<SolrDocument> docList = memo[index];
+            if(docList == null){
+                int size = idOffsets[index + 1] - idOffsets[index];
+                if(size == 1){
+                    SolrDocument doc = docs[idOrdinals[idOffsets[index]]];
+                    docList = doc == null ? Collections.emptyList() : Collections.singletonList(doc);
+                } else {
+                    List<SolrDocument> list = new ArrayList<>(size);
+                    for(int i = idOffsets[index]; i < idOffsets[index + 1]; i++){
+                        SolrDocument doc = docs[idOrdinals[i]];
+                        if(doc != null){
+                            list.add(doc);
+                        }
+                    }
+                    docList = Collections.unmodifiableList(list);
+                }
+                memo[index] = docList;
+            }
+            return docList;
+        }
+
+        /**
+         * The documents of this tag bound to beans. Beans are memorised per
+         * document (and type) by the {@link TagResponse}
+         * @param type the type of the beans
+         * @return the beans
+         * @see TagResponse#getBean(Object, Class)
+         */
+        public <T> List<T> getDocs(Class<T> type){
+            List<T> tagBeans = new ArrayList<>(idOffsets[index + 1] - idOffsets[index]);
+            for(int i = idOffsets[index]; i < idOffsets[index + 1]; i++){
+                T bean = bindBean(idOrdinals[i], type);
+                if(bean != null){
+                    tagBeans.add(bean);
+                }
+            }
+            return tagBeans;
+        }
+
+        private int checkIdIndex(int i){
+            int size = idOffsets[index + 1] - idOffsets[index];
+            if(i < 0 || i >= size){
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            }
+            return idOffsets[index] + i;
+        }
+
+        private TagResponse getResponse(){
+            return TagResponse.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Tag && ((Tag)obj).index == index &&
+                    ((Tag)obj).getResponse() == TagResponse.this;
         }
 
         @Override
         public String toString() {
-            return "Tag [span:" + _start + ".." + _end + ", docs=" + _ids + "]";
+            return "Tag [span:" + getStart() + ".." + getEnd() + ", docs=" + getIds() + "]";
         }
-        
+
     }
-    
-    
-}
\ No newline at end of file
+
+
+}
@@ -0,0 +1,227 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Builds a {@link TagResponse} by merging tags and documents of several
+ * responses (e.g. of chunks of a single document).
+ * <p>
+ * Tags are collected as {@link NamedList}s as sent by the tagger so that the
+ * built {@link TagResponse#getResponse()} looks like a single response of the
+ * SolrTextTagger request handler.
+ */
+class TagResponseBuilder {
+
+    private final String docIdField;
+    private final List<NamedList<Object>> tags = new ArrayList<>();
+    private final Map<Object, SolrDocument> docs = new LinkedHashMap<>();
+    private int qTime = 0;
+    private int status = 0;
+    private CharSequence content;
+
+    TagResponseBuilder(String docIdField) {
+        this.docIdField = docIdField;
+    }
+
+    /**
+     * Adds the header information of a response. The status is the
+     * maximum and the QTime the sum of all added headers.
+     * @param header the <code>responseHeader</code>
+     * @return this
+     */
+    TagResponseBuilder addHeader(NamedList<?> header) {
+        if(header != null){
+            Object s = header.get("status");
+            Object t = header.get("QTime");
+            if(s instanceof Number){
+                status = Math.max(status, ((Number)s).intValue());
+            }
+            if(t instanceof Number){
+                qTime += ((Number)t).intValue();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets the content used by {@link TagResponse.Tag#getMatchText()}. Ignored
+     * if the parsed params adjust offsets
+     * @param params the params of the requests
+     * @param content the content the offsets of added tags refer to
+     * @return this
+     */
+    TagResponseBuilder setContent(SolrParams params, CharSequence content) {
+        this.content = TagParams.isOffsetAdjust(params) ? null : content;
+        return this;
+    }
+
+    /**
+     * Adds a tag
+     * @param start the start offset
+     * @param end the end offset
+     * @param ids the ids of the referenced documents
+     * @return this
+     */
+    TagResponseBuilder addTag(int start, int end, List<Object> ids) {
+        return addTag(start, end, ids, null);
+    }
+
+    /**
+     * Adds a tag
+     * @param start the start offset or <code>-1</code> if not present
+     * @param end the end offset or <code>-1</code> if not present
+     * @param ids the ids of the referenced documents
+     * @param matchText the <code>matchText</code> sent by the tagger or
+     * <code>null</code> if not present
+     * @return this
+     */
+    TagResponseBuilder addTag(int start, int end, List<Object> ids, String matchText) {
+        NamedList<Object> tag = new NamedList<>();
+        if(start >= 0){
+            tag.add("startOffset", start);
+        }
+        if(end >= 0){
+            tag.add("endOffset", end);
+        }
+        tag.add("ids", ids);
+        if(matchText != null){
+            tag.add("matchText", matchText);
+        }
+        tags.add(tag);
+        return this;
+    }
+
+    /**
+     * Adds the tags of a response. Offsets are shifted by the parsed value
+     * and ids are mapped by the parsed function.
+     * @param response the response
+     * @param shift the value added to the start and end offset
+     * @param filter the filter called with the (unshifted) start and end
+     * offset of the tags or <code>null</code> to add all tags
+     * @param idMapper the function mapping the ids of the tags
+     * @return this
+     */
+    TagResponseBuilder addTags(TagResponse response, int shift, IntIntPredicate filter,
+            Function<Object, Object> idMapper) {
+        int[] starts = response.getStartOffsets();
+        int[] ends = response.getEndOffsets();
+        int[] idOffsets = response.getIdOffsets();
+        int[] idOrdinals = response.getIdOrdinals();
+        Object[] idTable = response.getIdTable();
+        String[] matchTexts = response.getMatchTexts();
+        for(int t = 0; t < starts.length; t++){
+            if(filter != null && !filter.test(starts[t], ends[t])){
+                continue;
+            }
+            List<Object> ids = new ArrayList<>(idOffsets[t + 1] - idOffsets[t]);
+            for(int i = idOffsets[t]; i < idOffsets[t + 1]; i++){
+                ids.add(idMapper.apply(idTable[idOrdinals[i]]));
+            }
+            addTag(starts[t] < 0 ? -1 : starts[t] + shift, ends[t] < 0 ? -1 : ends[t] + shift, ids,
+                    matchTexts == null ? null : matchTexts[t]);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a document. Documents with an id already added are ignored
+     * @param doc the document
+     * @return this
+     */
+    TagResponseBuilder addDocument(SolrDocument doc) {
+        docs.putIfAbsent(doc.get(docIdField), doc);
+        return this;
+    }
+
+    /**
+     * Sorts the tags by offsets and removes overlapping tags by applying the
+     * parsed {@link Overlaps} algorithm. Documents only referenced by removed
+     * tags are removed as well.
+     * @see OverlapResolver
+     * @param overlaps the algorithm or <code>null</code> to use the default
+     * ({@link Overlaps#NO_SUB}) of the tagger
+     * @return this
+     */
+    TagResponseBuilder applyOverlaps(Overlaps overlaps) {
+        List<NamedList<Object>> resolved = new OverlapResolver(overlaps).resolve(tags,
+                tag -> getOffset(tag, "startOffset"), tag -> getOffset(tag, "endOffset"));
+        boolean removed = resolved.size() < tags.size();
+        tags.clear();
+        tags.addAll(resolved);
+        if(removed){
+            retainReferencedDocs();
+        }
+        return this;
+    }
+
+    /**
+     * Retains the first <code>tagsLimit</code> tags and the documents
+     * referenced by those. Tags need to be sorted (see {@link #applyOverlaps(Overlaps)})
+     * @param tagsLimit the maximum number of tags
+     * @return this
+     */
+    TagResponseBuilder limit(int tagsLimit) {
+        if(tags.size() > tagsLimit){
+            tags.subList(Math.max(0, tagsLimit), tags.size()).clear();
+            retainReferencedDocs();
+        }
+        return this;
+    }
+
+    private void retainReferencedDocs() {
+        Set<Object> ids = new HashSet<>();
+        for(NamedList<Object> tag : tags){
+            Object tagIds = tag.get("ids");
+            if(tagIds instanceof Collection){
+                ids.addAll((Collection<?>)tagIds);
+            }
+        }
+        docs.keySet().retainAll(ids);
+    }
+
+    private static int getOffset(NamedList<Object> tag, String name) {
+        Object val = tag.get(name);
+        return val instanceof Integer ? (Integer)val : -1;
+    }
+
+    /**
+     * Builds the {@link TagResponse}
+     * @param client the client (used for {@link TagResponse#getBeans(Class)})
+     * @return the response
+     */
+    TagResponse build(SolrClient client) {
+        NamedList<Object> header = new SimpleOrderedMap<>();
+        header.add("status", status);
+        header.add("QTime", qTime);
+        SolrDocumentList results = new SolrDocumentList();
+        results.addAll(docs.values());
+        results.setNumFound(docs.size());
+        results.setStart(0);
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("responseHeader", header);
+        res.add("tagsCount", tags.size());
+        res.add("tags", new ArrayList<>(tags));
+        res.add("response", results);
+        TagResponse response = new TagResponse(client);
+        response.setDocIdField(docIdField);
+        response.setContent(content);
+        response.setResponse(res);
+        return response;
+    }
+}
@@ -0,0 +1,286 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.SolrParams;
+
+/**
+ * A bounded, thread-safe cache for tag results of text segments. Entries are
+ * keyed by the SHA-256 digest and the length of the text plus a canonical form
+ * of the request parameters and the path of the tag request handler.
+ * <p>
+ * Entries are evicted in LRU order if the maximum size is reached and expire
+ * after the configured time to live.
+ * <p>
+ * Typically used by the {@link CachingTagger}. A cache can be shared by
+ * several {@link CachingTagger}s.
+ *
+ * @see CachingTagger
+ */
+public class TagResultCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Key, CachedResult> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Creates a cache without a time to live
+     * @param maxSize the maximum number of entries
+     */
+    public TagResultCache(int maxSize) {
+        this(maxSize, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a cache
+     * @param maxSize the maximum number of entries
+     * @param ttl the time to live of entries or <code>0</code> for no expiration
+     * @param unit the time unit of the time to live
+     */
+    public TagResultCache(int maxSize, long ttl, TimeUnit unit) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum size MUST BE > 0 (parsed: " + maxSize + ")");
+        }
+        if(ttl < 0){
+            throw new IllegalArgumentException("The time to live MUST NOT be negative (parsed: " + ttl + ")");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.cache = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true){
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                if(size() > TagResultCache.this.maxSize){
+                    evictions.incrementAndGet();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates the key for a text segment
+     * @param params the canonical form of the parameters as returned by
+     * {@link #canonicalParams(String, SolrParams)}
+     * @param text the text
+     * @param start the start of the segment
+     * @param end the end of the segment
+     * @return the key
+     */
+    static Key key(String params, CharSequence text, int start, int end) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) { //required to be supported by every JVM
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        byte[] buffer = new byte[2048];
+        int pos = 0;
+        for(int i = start; i < end; i++){
+            char c = text.charAt(i);
+            buffer[pos++] = (byte)(c >>> 8);
+            buffer[pos++] = (byte)c;
+            if(pos == buffer.length){
+                digest.update(buffer, 0, pos);
+                pos = 0;
+            }
+        }
+        digest.update(buffer, 0, pos);
+        return new Key(params, digest.digest(), end - start);
+    }
+
+    /**
+     * A canonical form of the parsed path and parameters that does not
+     * depend on the order of the parameters.
+     * @param path the path of the tag request handler
+     * @param params the parameters
+     * @return the canonical form
+     */
+    static String canonicalParams(String path, SolrParams params) {
+        List<String> names = new ArrayList<>();
+        if(params != null){
+            for(Iterator<String> it = params.getParameterNamesIterator(); it.hasNext();){
+                names.add(it.next());
+            }
+        }
+        Collections.sort(names);
+        StringBuilder sb = new StringBuilder(path == null ? "" : path).append('?');
+        for(String name : names){
+            String[] values = params.getParams(name);
+            if(values != null){
+                values = values.clone();
+                Arrays.sort(values);
+                for(String value : values){
+                    sb.append(name).append('=').append(value).append('&');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    CachedResult get(Key key) {
+        CachedResult entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+            if(entry != null && entry.isExpired(System.nanoTime())){
+                cache.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+        }
+        (entry == null ? misses : hits).incrementAndGet();
+        return entry;
+    }
+
+    void put(Key key, CachedResult entry) {
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Creates a new cache entry
+     * @param starts the start offsets relative to the segment
+     * @param ends the end offsets relative to the segment
+     * @param ids the ids of the tags
+     * @param docs the documents referenced by the tags
+     * @return the entry
+     */
+    CachedResult createResult(int[] starts, int[] ends, List<List<Object>> ids, List<SolrDocument> docs) {
+        return new CachedResult(starts, ends, ids, docs, ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos);
+    }
+
+    /**
+     * Removes all entries from the cache
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The time to live of entries
+     * @param unit the time unit
+     * @return the time to live or <code>0</code> if entries do not expire
+     */
+    public long getTimeToLive(TimeUnit unit) {
+        return unit.convert(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    /**
+     * The ratio of lookups that were served from the cache
+     * @return the hit rate in the range <code>[0..1]</code>
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0d : (double)h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "TagResultCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + ", expirations=" + expirations + "]";
+    }
+
+    static final class Key {
+
+        private final String params;
+        private final byte[] digest;
+        private final int length;
+        private final int hash;
+
+        private Key(String params, byte[] digest, int length) {
+            this.params = params;
+            this.digest = digest;
+            this.length = length;
+            this.hash = Arrays.hashCode(digest) * 31 + params.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)){
+                return false;
+            }
+            Key other = (Key)obj;
+            return hash == other.hash && length == other.length && Arrays.equals(digest, other.digest)
+                    && params.equals(other.params);
+        }
+    }
+
+    /**
+     * The tags of a text segment with offsets relative to the start of the segment
+     */
+    static final class CachedResult {
+
+        final int[] starts;
+        final int[] ends;
+        final List<List<Object>> ids;
+        final List<SolrDocument> docs;
+        private final long expires;
+
+        private CachedResult(int[] starts, int[] ends, List<List<Object>> ids, List<SolrDocument> docs, long expires) {
+            this.starts = starts;
+            this.ends = ends;
+            this.ids = ids;
+            this.docs = docs;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires != Long.MAX_VALUE && now - expires > 0;
+        }
+    }
+}
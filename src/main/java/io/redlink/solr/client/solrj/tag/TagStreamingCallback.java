@@ -0,0 +1,54 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * Callback notified by the {@link StreamingTagResponseParser} while the
+ * response of the <a href="https://github.com/OpenSextant/SolrTextTagger">SolrTextTagger</a>
+ * request handler is still being decoded.
+ * <p>
+ * Tags and documents are passed to the callback as soon as they are read
+ * from the response and are not retained afterwards. Because of that the
+ * {@link TagResponse} of a streamed request will neither contain
+ * {@link TagResponse#getTags() tags} nor {@link TagResponse#getResults() documents}.
+ * <p>
+ * The SolrTextTagger writes all tags before the referenced documents. So
+ * {@link #onTag(int, int, List)} will be called for all tags before the
+ * first call to {@link #onDocument(SolrDocument)}.
+ * <p>
+ * <b>Usage:</b>
+ * <pre>
+ *  TagRequest request = new TagRequest(params,
+ *      new StringStream(content, "text/plain"));
+ *  request.setStreamingCallback(new TagStreamingCallback() {
+ *      public void onTag(int start, int end, List&lt;Object&gt; ids) {
+ *          //process the tag
+ *      }
+ *      public void onDocument(SolrDocument doc) {
+ *          //process the document
+ *      }
+ *  });
+ *  request.process(client);
+ * </pre>
+ *
+ * @see TagRequest#setStreamingCallback(TagStreamingCallback)
+ */
+public interface TagStreamingCallback {
+
+    /**
+     * Called for every tag decoded from the response
+     * @param start the start offset of the tag or <code>-1</code> if not present
+     * @param end the end offset of the tag or <code>-1</code> if not present
+     * @param ids the ids of the documents referenced by the tag
+     */
+    void onTag(int start, int end, List<Object> ids);
+
+    /**
+     * Called for every document decoded from the response
+     * @param doc the document
+     */
+    void onDocument(SolrDocument doc);
+
+}
@@ -0,0 +1,57 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.apache.solr.client.solrj.ResponseParser;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * {@link ResponseParser} wrapper that adds the decoding time to the
+ * {@link TagRequestMetrics}
+ */
+class TimingResponseParser extends ResponseParser {
+
+    private final ResponseParser delegate;
+    private final TagRequestMetrics metrics;
+
+    TimingResponseParser(ResponseParser delegate, TagRequestMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getWriterType() {
+        return delegate.getWriterType();
+    }
+
+    @Override
+    public String getContentType() {
+        return delegate.getContentType();
+    }
+
+    @Override
+    public String getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public NamedList<Object> processResponse(InputStream body, String encoding) {
+        long start = System.nanoTime();
+        try {
+            return delegate.processResponse(body, encoding);
+        } finally {
+            metrics.addDecodeNanos(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public NamedList<Object> processResponse(Reader reader) {
+        long start = System.nanoTime();
+        try {
+            return delegate.processResponse(reader);
+        } finally {
+            metrics.addDecodeNanos(System.nanoTime() - start);
+        }
+    }
+}
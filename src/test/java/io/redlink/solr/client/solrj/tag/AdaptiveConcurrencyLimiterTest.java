@@ -0,0 +1,113 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testTryAcquire() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.5);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+        limiter.release();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getLimit()); //release() does not adjust the limit
+    }
+
+    @Test
+    public void testGrowsWithConstantLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 50, 1.5);
+        for(int i = 0; i < 100; i++){
+            round(limiter, LATENCY, -1);
+        }
+        assertEquals(50, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testShrinksWithIncreasingLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 50, 1.5);
+        round(limiter, LATENCY, -1); //the no-load latency
+        for(int i = 0; i < 100; i++){
+            round(limiter, 10 * LATENCY, -1);
+        }
+        //converges towards limit = limit / 2 + sqrt(limit)
+        assertTrue(limiter.toString(), limiter.getLimit() < 10);
+    }
+
+    @Test
+    public void testNormalizedBySize() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 20, 1.5);
+        round(limiter, LATENCY, AdaptiveConcurrencyLimiter.NORMALIZATION_SIZE);
+        for(int i = 0; i < 100; i++){ //10 times the content in 10 times the time
+            round(limiter, 10 * LATENCY, 10 * AdaptiveConcurrencyLimiter.NORMALIZATION_SIZE);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testNotAdjustedBelowHalfTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 50, 1.5);
+        for(int i = 0; i < 100; i++){ //single requests
+            assertTrue(limiter.tryAcquire());
+            limiter.release(i == 0 ? LATENCY : 10 * LATENCY, -1, false);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testOverload() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, 1.5);
+        assertTrue(limiter.tryAcquire());
+        limiter.release(LATENCY, -1, true);
+        assertEquals(7, limiter.getLimit());
+        assertEquals(1, limiter.getErrorCount());
+        for(int i = 0; i < 10; i++){
+            assertTrue(limiter.tryAcquire());
+            limiter.release(LATENCY, -1, true);
+        }
+        assertEquals(2, limiter.getLimit()); //the minimum limit
+        assertEquals(11, limiter.getErrorCount());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testInitialLimitBounded() {
+        assertEquals(5, new AdaptiveConcurrencyLimiter(1, 5, 10, 1).getLimit());
+        assertEquals(10, new AdaptiveConcurrencyLimiter(100, 5, 10, 1).getLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalLimits() {
+        new AdaptiveConcurrencyLimiter(4, 10, 5, 1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalTolerance() {
+        new AdaptiveConcurrencyLimiter(4, 1, 5, 0.9);
+    }
+
+    /**
+     * Acquires all permits and releases them with the parsed latency
+     */
+    private static void round(AdaptiveConcurrencyLimiter limiter, long latency, long size) {
+        int acquired = 0;
+        while(limiter.tryAcquire()){
+            acquired++;
+        }
+        for(int i = 0; i < acquired; i++){
+            limiter.release(latency, size, false);
+        }
+    }
+}
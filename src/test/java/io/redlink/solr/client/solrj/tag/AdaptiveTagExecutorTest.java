@@ -0,0 +1,192 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.redlink.solr.client.solrj.tag.TagExecutorTest.awaitEquals;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagExecutorTest.ConcurrencyClient;
+
+public class AdaptiveTagExecutorTest {
+
+    private static final String CONTENT = "From Paris to New York";
+    private static final Supplier<AdaptiveConcurrencyLimiter> SINGLE = () -> new AdaptiveConcurrencyLimiter(1, 1, 1, 1.5);
+
+    @Test
+    public void testTag() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(5);
+        try (AdaptiveTagExecutor executor = new AdaptiveTagExecutor(client)) {
+            List<CompletableFuture<TagResponse>> responses = new ArrayList<>();
+            for(int i = 0; i < 50; i++){
+                responses.add(executor.tag(request(null)));
+            }
+            for(CompletableFuture<TagResponse> response : responses){
+                assertEquals(2, response.get(5, TimeUnit.SECONDS).getTagCount());
+            }
+            AdaptiveConcurrencyLimiter limiter = executor.getLimiter(null);
+            assertTrue(client.maxInFlight.get() <= AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT);
+            assertEquals(50, limiter.getLatencies().getCount());
+            awaitEquals(0, limiter::getInFlight);
+            assertEquals(0, executor.getQueued(null));
+        }
+    }
+
+    @Test
+    public void testLanesSharedByClientAndPath() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        try (AdaptiveTagExecutor first = new AdaptiveTagExecutor(client);
+                AdaptiveTagExecutor second = new AdaptiveTagExecutor(client, SINGLE, null);
+                AdaptiveTagExecutor other = new AdaptiveTagExecutor(new ConcurrencyClient(0))) {
+            AdaptiveConcurrencyLimiter limiter = second.getLimiter("/tag");
+            assertEquals(1, limiter.getMaxLimit()); //created by the factory of the second executor
+            assertSame(limiter, first.getLimiter(null)); //the default path
+            assertSame(limiter, first.getLimiter("/tag"));
+            assertNotSame(limiter, first.getLimiter("/tag2"));
+            assertSame(first.getLimiter("/tag2"), second.getLimiter("/tag2"));
+            assertNotSame(limiter, other.getLimiter("/tag"));
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        client.gate = new CountDownLatch(1);
+        try (AdaptiveTagExecutor first = new AdaptiveTagExecutor(client, SINGLE, null);
+                AdaptiveTagExecutor second = new AdaptiveTagExecutor(client, SINGLE, null)) {
+            first.setMaxQueued(1);
+            second.setMaxQueued(1);
+            CompletableFuture<TagResponse> running = first.tag(request(null));
+            CompletableFuture<TagResponse> queued = second.tag(request(null));
+            assertEquals(1, first.getQueued(null)); //the queue is shared
+            assertTrue(first.isSaturated(null));
+            assertFalse(first.isSaturated("/tag2"));
+            CompletableFuture<TagResponse> rejected = first.tag(request(null));
+            assertTrue(rejected.isCompletedExceptionally());
+            try {
+                rejected.get();
+                fail("RejectedExecutionException expected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            assertEquals(1, first.getRejectedCount());
+            assertEquals(0, second.getRejectedCount());
+            CompletableFuture<TagResponse> otherPath = first.tag(request("/tag2"));
+            client.gate.countDown();
+            assertEquals(2, running.get(5, TimeUnit.SECONDS).getTagCount());
+            assertEquals(2, queued.get(5, TimeUnit.SECONDS).getTagCount());
+            assertEquals(2, otherPath.get(5, TimeUnit.SECONDS).getTagCount());
+            assertTrue(client.maxInFlight.get() <= 2); //one request per path
+            assertEquals(0, first.getQueued(null));
+        }
+    }
+
+    @Test
+    public void testCanceledWhileQueued() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        client.gate = new CountDownLatch(1);
+        try (AdaptiveTagExecutor executor = new AdaptiveTagExecutor(client, SINGLE, null)) {
+            CompletableFuture<TagResponse> running = executor.tag(request(null));
+            CompletableFuture<TagResponse> queued = executor.tag(request(null));
+            queued.cancel(false);
+            client.gate.countDown();
+            assertEquals(2, running.get(5, TimeUnit.SECONDS).getTagCount());
+            awaitEquals(0, () -> executor.getQueued(null));
+            awaitEquals(0, executor.getLimiter(null)::getInFlight);
+            assertEquals(1, client.calls.get()); //the canceled request was not sent
+        }
+    }
+
+    @Test
+    public void testOverloadSignals() throws Exception {
+        ErrorClient client = new ErrorClient();
+        try (AdaptiveTagExecutor executor = new AdaptiveTagExecutor(client,
+                () -> new AdaptiveConcurrencyLimiter(10, 1, 10, 1.5), null)) {
+            AdaptiveConcurrencyLimiter limiter = executor.getLimiter(null);
+            client.error = new SolrException(ErrorCode.BAD_REQUEST, "bad request");
+            awaitFailure(executor.tag(request(null)));
+            assertEquals(0, limiter.getErrorCount());
+            assertEquals(10, limiter.getLimit());
+            client.error = new SolrException(ErrorCode.SERVICE_UNAVAILABLE, "overloaded");
+            awaitFailure(executor.tag(request(null)));
+            assertEquals(1, limiter.getErrorCount());
+            assertEquals(7, limiter.getLimit());
+            awaitEquals(0, limiter::getInFlight);
+        }
+    }
+
+    @Test
+    public void testIsOverload() {
+        assertTrue(AdaptiveTagExecutor.isOverload(new SocketTimeoutException()));
+        assertTrue(AdaptiveTagExecutor.isOverload(new SolrServerException(new IOException())));
+        assertTrue(AdaptiveTagExecutor.isOverload(new SolrException(ErrorCode.SERVICE_UNAVAILABLE, "")));
+        assertTrue(AdaptiveTagExecutor.isOverload(new SolrException(ErrorCode.UNKNOWN, "") {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public int code() {
+                return 504;
+            }
+        }));
+        assertFalse(AdaptiveTagExecutor.isOverload(new SolrException(ErrorCode.BAD_REQUEST, "")));
+        assertFalse(AdaptiveTagExecutor.isOverload(new IllegalStateException()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxQueued() {
+        new AdaptiveTagExecutor(new ConcurrencyClient(0)).setMaxQueued(-1);
+    }
+
+    private static TagRequest request(String path) {
+        TagRequest request = new TagRequest(new TagParams(), CONTENT, "text/plain");
+        if(path != null){
+            request.setPath(path);
+        }
+        return request;
+    }
+
+    private static void awaitFailure(CompletableFuture<TagResponse> response) throws Exception {
+        try {
+            response.get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            //expected
+        }
+    }
+
+    /**
+     * A client failing all requests with the configured error
+     */
+    private static class ErrorClient extends LocalTaggerClient {
+
+        private static final long serialVersionUID = 1L;
+
+        private volatile RuntimeException error;
+
+        @Override
+        public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+                throws SolrServerException, IOException {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.createContent;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.ids;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class BatchTagRequestTest {
+
+    @Test
+    public void testBatchEqualsSingleRequests() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        Random rnd = new Random(3);
+        List<String> texts = new ArrayList<>();
+        for(int i = 0; i < 300; i++){ //more tags as the default tags limit
+            texts.add(createContent(rnd, 1 + rnd.nextInt(40), " x "));
+        }
+        for(Overlaps overlaps : Overlaps.values()){
+            for(Integer tagsLimit : new Integer[]{null, 2}){
+                TagParams params = new TagParams();
+                params.setOverlaps(overlaps);
+                if(tagsLimit != null){
+                    params.setTagsLimit(tagsLimit);
+                }
+                BatchTagRequest request = new BatchTagRequest(params);
+                for(String text : texts){
+                    request.add(text);
+                }
+                List<TagResponse> responses = request.process(client);
+                assertEquals(texts.size(), responses.size());
+                for(int i = 0; i < texts.size(); i++){
+                    //also asserts that tags spanning the separator are dropped
+                    TagResponse expected = client.getTagger().tag(params, texts.get(i));
+                    String msg = overlaps + " with tagsLimit " + tagsLimit + " of text " + i;
+                    assertEquals(msg, offsets(expected), offsets(responses.get(i)));
+                    assertEquals(msg, ids(expected), ids(responses.get(i)));
+                    for(TagResponse.Tag tag : responses.get(i).getTags()){
+                        assertEquals(texts.get(i).substring(tag.getStart(), tag.getEnd()),
+                                tag.getMatchText().toString());
+                    }
+                }
+            }
+        }
+        assertEquals(Overlaps.values().length * 2, client.getRequestCount());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        BatchTagRequest request = new BatchTagRequest(new TagParams());
+        assertTrue(request.process(client).isEmpty());
+        assertEquals(0, request.add("a b"));
+        assertEquals(1, request.add("x"));
+        assertEquals(2, request.size());
+        assertEquals("a b".length() + BatchTagRequest.DEFAULT_SEPARATOR.length() + 1, request.length());
+        request.clear();
+        assertEquals(0, request.add("g h"));
+        List<TagResponse> responses = request.process(client);
+        assertEquals(1, responses.size());
+        assertEquals(offsets(client.getTagger().tag(new TagParams(), "g h")), offsets(responses.get(0)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSeparatorAfterAdd() {
+        BatchTagRequest request = new BatchTagRequest(new TagParams());
+        request.add("a");
+        request.setSeparator(" | ");
+    }
+}
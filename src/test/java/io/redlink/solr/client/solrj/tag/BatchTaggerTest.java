@@ -0,0 +1,139 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagExecutorTest.ConcurrencyClient;
+
+public class BatchTaggerTest {
+
+    private static final String[] TEXTS = {"From Paris", "to New York", "nothing", "Paris", "New York and Paris",
+            "", "York"};
+
+    @Test
+    public void testMaxTexts() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        try (BatchTagger tagger = new BatchTagger(client, new TagParams())) {
+            tagger.setMaxTexts(3);
+            tagger.setMaxDelay(1, TimeUnit.HOURS);
+            List<CompletableFuture<TagResponse>> responses = new ArrayList<>();
+            for(String text : TEXTS){
+                responses.add(tagger.tag(text));
+            }
+            for(int i = 0; i < 6; i++){
+                assertResponse(client, TEXTS[i], responses.get(i));
+            }
+            assertEquals(2, client.getRequestCount());
+            assertFalse(responses.get(6).isDone()); //waits for the next texts
+            tagger.flush();
+            assertResponse(client, TEXTS[6], responses.get(6));
+            assertEquals(3, client.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testMaxChars() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        try (BatchTagger tagger = new BatchTagger(client, new TagParams())) {
+            tagger.setMaxChars(15);
+            tagger.setMaxDelay(1, TimeUnit.HOURS);
+            CompletableFuture<TagResponse> first = tagger.tag("From Paris");
+            assertFalse(first.isDone());
+            CompletableFuture<TagResponse> second = tagger.tag("to New York");
+            assertResponse(client, "From Paris", first);
+            assertResponse(client, "to New York", second);
+            assertEquals(1, client.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testMaxDelay() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        try (BatchTagger tagger = new BatchTagger(client, new TagParams())) {
+            tagger.setMaxDelay(20, TimeUnit.MILLISECONDS);
+            CompletableFuture<TagResponse> first = tagger.tag("From Paris");
+            CompletableFuture<TagResponse> second = tagger.tag("to New York");
+            assertResponse(client, "From Paris", first);
+            assertResponse(client, "to New York", second);
+            assertEquals(1, client.getRequestCount());
+            //a new batch is started after the timer sent the previous one
+            assertResponse(client, "Paris", tagger.tag("Paris"));
+            assertEquals(2, client.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testNoDelay() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        try (BatchTagger tagger = new BatchTagger(client, new TagParams())) {
+            tagger.setMaxDelay(0, TimeUnit.MILLISECONDS);
+            for(String text : TEXTS){
+                assertResponse(client, text, tagger.tag(text));
+            }
+            assertEquals(TEXTS.length, client.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        BatchTagger tagger = new BatchTagger(client, new TagParams());
+        tagger.setMaxDelay(1, TimeUnit.HOURS);
+        CompletableFuture<TagResponse> response = tagger.tag("From Paris");
+        tagger.close(); //sends pending texts
+        assertResponse(client, "From Paris", response);
+        try {
+            tagger.tag("Paris");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        client.failing = true;
+        try (BatchTagger tagger = new BatchTagger(client, new TagParams())) {
+            tagger.setMaxTexts(2);
+            List<CompletableFuture<TagResponse>> responses = new ArrayList<>();
+            responses.add(tagger.tag("From Paris"));
+            responses.add(tagger.tag("to New York"));
+            for(CompletableFuture<TagResponse> response : responses){
+                try {
+                    response.get(5, TimeUnit.SECONDS);
+                    fail("ExecutionException expected");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            assertEquals(1, client.calls.get());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxTexts() {
+        try (BatchTagger tagger = new BatchTagger(new LocalTaggerClient(), new TagParams())) {
+            tagger.setMaxTexts(0);
+        }
+    }
+
+    private static void assertResponse(LocalTaggerClient client, String text, CompletableFuture<TagResponse> response)
+            throws Exception {
+        TagResponse expected = client.getTagger().tag(new TagParams(), text);
+        assertEquals(text, offsets(expected), offsets(response.get(5, TimeUnit.SECONDS)));
+    }
+}
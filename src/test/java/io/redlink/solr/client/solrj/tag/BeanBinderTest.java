@@ -0,0 +1,169 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.beans.BindingException;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.client.solrj.beans.Field;
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+public class BeanBinderTest {
+
+    @Test
+    public void testBind() {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", "e1");
+        doc.setField("name", Arrays.asList("Paris", "Paris, France"));
+        doc.setField("label", Arrays.asList("Paris", "Paris, France"));
+        doc.setField("labels", Arrays.asList("Paris", "Paris, France"));
+        doc.setField("types", Arrays.asList("city", "capital", "city"));
+        doc.setField("population", 2161000); //an Integer
+        doc.setField("score", 1.5f);
+        doc.setField("lat", 48.86);
+        doc.setField("alias", "Lutetia");
+        doc.setField("data", ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        doc.setField("unmapped", "ignored");
+
+        BeanBinder<Place> binder = BeanBinder.of(Place.class);
+        assertSame(binder, BeanBinder.of(Place.class));
+        assertFalse(binder.isFallback());
+        Place place = binder.bind(doc, null);
+        assertEquals("e1", place.id);
+        assertEquals("Paris", place.label); //the first value
+        assertArrayEquals(new String[]{"Paris", "Paris, France"}, place.labels);
+        assertEquals(Arrays.asList("Paris", "Paris, France"), place.names);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("city", "capital")), place.types);
+        assertEquals(2161000L, place.population);
+        assertEquals(1.5, place.score, 0.0001);
+        assertEquals(48.86, place.lat, 0.0001);
+        assertEquals(Collections.singletonList("Lutetia"), place.aliases); //set by the setter
+        assertArrayEquals(new byte[]{1, 2, 3}, place.data);
+    }
+
+    @Test
+    public void testMissingValues() {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", "e2");
+        Place place = BeanBinder.of(Place.class).bind(doc, null);
+        assertEquals("e2", place.id);
+        assertNull(place.names);
+        assertEquals(0L, place.population);
+        assertEquals(-1, place.lat, 0); //keeps the initial value
+    }
+
+    @Test
+    public void testEqualsDocumentObjectBinder() {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", "e3");
+        doc.setField("name", Arrays.asList("New York", "NYC"));
+        doc.setField("label", "New York");
+        doc.setField("labels", Arrays.asList("New York", "NYC"));
+        doc.setField("population", 8336000L);
+        doc.setField("lat", 40.71);
+        Place expected = new DocumentObjectBinder().getBean(Place.class, doc);
+        Place place = BeanBinder.of(Place.class).bind(doc, null);
+        assertEquals(expected.id, place.id);
+        assertEquals(expected.label, place.label);
+        assertArrayEquals(expected.labels, place.labels);
+        assertEquals(expected.names, place.names);
+        assertEquals(expected.population, place.population);
+        assertEquals(expected.lat, place.lat, 0);
+    }
+
+    @Test
+    public void testFallback() {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", "e4");
+        doc.setField("name_en", "Vienna");
+        doc.setField("name_de", "Wien");
+        BeanBinder<DynamicPlace> binder = BeanBinder.of(DynamicPlace.class);
+        assertTrue(binder.isFallback());
+        DynamicPlace place = binder.bind(doc, null);
+        assertEquals("e4", place.id);
+        assertEquals("Wien", place.names.get("name_de"));
+        assertEquals(2, place.names.size());
+        assertTrue(BeanBinder.of(AnnotatedGetter.class).isFallback());
+    }
+
+    @Test
+    public void testTagResponse() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        TagResponse response = client.getTagger().tag(new TagParams(), "From Paris to New York");
+        Place place = response.getBean("e1", Place.class);
+        assertEquals("e1", place.id);
+        assertEquals(Collections.singletonList("new york"), place.names);
+        assertSame(place, response.getBean("e1", Place.class)); //cached
+        assertEquals("e0", response.getTags().get(0).getDocs(Place.class).get(0).id);
+    }
+
+    @Test(expected = BindingException.class)
+    public void testIncompatibleValue() {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("population", "many");
+        BeanBinder.of(Place.class).bind(doc, null);
+    }
+
+    public static class Base {
+
+        @Field
+        String id;
+    }
+
+    public static class Place extends Base {
+
+        @Field("name")
+        List<String> names;
+        @Field
+        String label;
+        @Field
+        String[] labels;
+        @Field
+        Set<String> types;
+        @Field
+        long population;
+        @Field
+        float score;
+        @Field
+        double lat = -1;
+        @Field
+        byte[] data;
+        List<String> aliases;
+
+        @Field("alias")
+        public void setAliases(List<String> aliases) {
+            this.aliases = aliases;
+        }
+    }
+
+    public static class DynamicPlace {
+
+        @Field
+        String id;
+        @Field("name_*")
+        Map<String, Object> names;
+    }
+
+    public static class AnnotatedGetter {
+
+        private String id;
+
+        @Field
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.ids;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class CachingTaggerTest {
+
+    @Test
+    public void testParagraphModeEqualsUncached() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        Random rnd = new Random(7);
+        List<String> paragraphs = new ArrayList<>();
+        for(int i = 0; i < 20; i++){
+            paragraphs.add(TagFixtures.createContent(rnd, 100, " x ") + " x"); //no tags across paragraphs
+        }
+        TagResultCache cache = new TagResultCache(1000);
+        CachingTagger tagger = new CachingTagger(client, cache);
+        tagger.setParagraphMode(true);
+        for(int i = 0; i < 100; i++){
+            StringBuilder content = new StringBuilder();
+            for(int p = 0; p < 5; p++){
+                content.append(paragraphs.get(rnd.nextInt(paragraphs.size()))).append("\n\n");
+            }
+            Overlaps overlaps = Overlaps.values()[rnd.nextInt(Overlaps.values().length)];
+            TagParams params = new TagParams();
+            params.setOverlaps(overlaps);
+            params.setTagsLimit(1 + rnd.nextInt(120));
+            TagResponse expected = client.getTagger().tag(params, content);
+            TagResponse actual = tagger.tag(params, content.toString());
+            assertEquals(overlaps + " with tagsLimit " + params.getTagsLimit(), offsets(expected), offsets(actual));
+            assertEquals(ids(expected), ids(actual));
+        }
+        //the tags limit is not part of the key
+        int requests = client.getRequestCount();
+        TagParams params = new TagParams();
+        params.setTagsLimit(1);
+        tagger.tag(params, paragraphs.get(0));
+        params.setTagsLimit(1000);
+        assertEquals(offsets(client.getTagger().tag(params, paragraphs.get(0))),
+                offsets(tagger.tag(params, paragraphs.get(0))));
+        assertEquals(requests + 1, client.getRequestCount());
+    }
+}
@@ -0,0 +1,79 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.createContent;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.ids;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class ChunkedTaggerTest {
+
+    /*
+     * sentence ends and words that are no names between runs of the alphabet
+     */
+    private static final String[] SEPARATORS = {". ", " x ", " x ", " x "};
+
+    @Test
+    public void testChunkedEqualsUnchunked() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        Random rnd = new Random(42);
+        ChunkedTagger tagger = new ChunkedTagger(client);
+        tagger.setOverlap(14); //at least twice the longest label
+        for(int i = 0; i < 200; i++){
+            String content = createContent(rnd, 1000, SEPARATORS);
+            tagger.setChunkSize(20 + rnd.nextInt(100));
+            for(Overlaps overlaps : Overlaps.values()){
+                TagParams params = new TagParams();
+                params.setOverlaps(overlaps);
+                params.setTagsLimit(Integer.MAX_VALUE);
+                TagResponse expected = client.getTagger().tag(params, content);
+                TagResponse actual = tagger.tag(params, content);
+                assertEquals(overlaps + " of chunk size " + tagger.getChunkSize(), offsets(expected), offsets(actual));
+                assertEquals(ids(expected), ids(actual));
+            }
+        }
+        assertTrue(client.getRequestCount() > 200 * Overlaps.values().length * 2);
+    }
+
+    @Test
+    public void testTagsLimit() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        Random rnd = new Random(11);
+        String content = createContent(rnd, 20000, SEPARATORS); //more tags as the default limit in every chunk
+        ChunkedTagger tagger = new ChunkedTagger(client);
+        tagger.setChunkSize(5000);
+        tagger.setOverlap(14);
+        for(Overlaps overlaps : Overlaps.values()){
+            TagParams params = new TagParams();
+            params.setOverlaps(overlaps);
+            TagResponse expected = client.getTagger().tag(params, content);
+            assertEquals(TagParams.DEFAULT_TAGS_LIMIT, expected.getTagCount());
+            assertEquals(overlaps + " with the default tags limit", offsets(expected), offsets(tagger.tag(params, content)));
+            params.setTagsLimit(10);
+            assertEquals(overlaps + " with tagsLimit 10", offsets(client.getTagger().tag(params, content)),
+                    offsets(tagger.tag(params, content)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlapNotSmallerAsChunkSize() {
+        ChunkedTagger tagger = new ChunkedTagger(new LocalTaggerClient(NAMES));
+        tagger.setChunkSize(100);
+        tagger.setOverlap(100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChunkSizeNotGreaterAsOverlap() {
+        ChunkedTagger tagger = new ChunkedTagger(new LocalTaggerClient(NAMES));
+        tagger.setOverlap(100);
+        tagger.setChunkSize(50);
+    }
+}
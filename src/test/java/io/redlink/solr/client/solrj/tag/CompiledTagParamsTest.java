@@ -0,0 +1,113 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class CompiledTagParamsTest {
+
+    @Test
+    public void testCompile() {
+        TagParams params = new TagParams();
+        params.setOverlaps(Overlaps.LONGEST_DOMINANT_RIGHT).setMatchText(true).setTagsLimit(10)
+                .setFields("id", "name");
+        params.add("custom", "a", "b");
+        CompiledTagParams compiled = params.compile();
+        assertEquals(Overlaps.LONGEST_DOMINANT_RIGHT, compiled.getOverlaps());
+        assertTrue(compiled.isMatchText());
+        assertFalse(compiled.isOffsetAdjust());
+        assertEquals(10, compiled.getTagsLimit());
+        assertEquals("id,name", compiled.getFields());
+        assertArrayEquals(new String[]{"a", "b"}, compiled.getParams("custom"));
+        assertEquals(params.toQueryString(), compiled.toQueryString());
+        assertEquals(compiled.toQueryString(), compiled.toString());
+        assertEquals(Overlaps.LONGEST_DOMINANT_RIGHT, TagParams.getOverlaps(compiled));
+        assertEquals(10, TagParams.getTagsLimit(compiled));
+
+        //a snapshot
+        params.setTagsLimit(20);
+        params.add("custom", "c");
+        assertEquals(10, compiled.getTagsLimit());
+        assertEquals("10", compiled.get(TagParams.STT_TAGS_LIMIT));
+        compiled.getParams("custom")[0] = "modified";
+        assertArrayEquals(new String[]{"a", "b"}, compiled.getParams("custom"));
+    }
+
+    @Test
+    public void testDefaults() {
+        CompiledTagParams compiled = new TagParams().compile();
+        assertNull(compiled.getOverlaps());
+        assertFalse(compiled.isMatchText());
+        assertEquals(TagParams.DEFAULT_TAGS_LIMIT, compiled.getTagsLimit());
+        assertNull(compiled.getFields());
+        assertTrue(new TagParams().setHtmlOffsetAdjust(true).compile().isOffsetAdjust());
+        assertTrue(new TagParams().setXmlOffsetAdjust(true).compile().isOffsetAdjust());
+    }
+
+    @Test
+    public void testValidation() {
+        ModifiableSolrParams illegal = new ModifiableSolrParams();
+        illegal.set(TagParams.STT_OVERLAPPS, "UNKNOWN");
+        assertBadRequest(illegal);
+        illegal = new ModifiableSolrParams();
+        illegal.set(TagParams.STT_TAGS_LIMIT, "many");
+        assertBadRequest(illegal);
+        illegal = new ModifiableSolrParams();
+        illegal.set(TagParams.STT_MATCH_TEXT, "maybe");
+        assertBadRequest(illegal);
+        illegal = new ModifiableSolrParams();
+        illegal.set(TagParams.STT_NON_TAGGABLETAGS, "a");
+        assertBadRequest(illegal);
+        illegal.set(TagParams.STT_HTML_OFFSET_ADJUST, true);
+        new CompiledTagParams(illegal); //valid with htmlOffsetAdjust
+    }
+
+    @Test
+    public void testVariants() {
+        CompiledTagParams compiled = new TagParams().setFields("id", "name").compile();
+        assertSame(compiled, compiled.with(CommonParams.FL, "id,name"));
+        CompiledTagParams variant = compiled.with(CommonParams.FL, "id");
+        assertNotSame(compiled, variant);
+        assertSame(variant, compiled.with(CommonParams.FL, "id")); //cached
+        assertEquals("id", variant.getFields());
+        assertEquals("id,name", compiled.getFields());
+        assertEquals("true", compiled.with(TagParams.STT_MATCH_TEXT, "true").get(TagParams.STT_MATCH_TEXT));
+    }
+
+    @Test
+    public void testRequestParams() throws Exception {
+        CompiledTagParams compiled = new TagParams().setMatchText(true).compile();
+        TagRequest request = new TagRequest(compiled, "From Paris to New York", "text/plain");
+        //the match text is sliced from the content
+        assertFalse(request.getParams().getBool(TagParams.STT_MATCH_TEXT));
+        assertSame(request.getParams(), new TagRequest(compiled, "Paris", "text/plain").getParams());
+
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york");
+        TagResponse response = request.process(client);
+        assertEquals(offsets(client.getTagger().tag(new TagParams(), "From Paris to New York")), offsets(response));
+        assertEquals("New York", response.getTags().get(1).getMatchText().toString());
+    }
+
+    private static void assertBadRequest(ModifiableSolrParams params) {
+        try {
+            new CompiledTagParams(params);
+            fail("SolrException expected for " + params);
+        } catch (SolrException e) {
+            assertEquals(SolrException.ErrorCode.BAD_REQUEST.code, e.code());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.EntityEnclosingRequestWrapper;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class GzipContentStreamTest {
+
+    @Test
+    public void testStream() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 10000; i++){
+            text.append("Tag New York and Paris ").append(i).append(' ');
+        }
+        GzipContentStream stream = new GzipContentStream(new CharSequenceContentStream(text, "text/plain"));
+        assertEquals(text.toString(), gunzip(stream.getStream()));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testContentEncodingInterceptor() throws Exception {
+        GzipContentStream stream = new GzipContentStream(new CharSequenceContentStream("New York", "text/plain"));
+        HttpPost post = new HttpPost("http://localhost:8983/solr/tagger/tag");
+        post.setEntity(new InputStreamEntity(stream.getStream(), -1));
+        EntityEnclosingRequestWrapper wrapper = new EntityEnclosingRequestWrapper(post);
+        GzipContentStream.CONTENT_ENCODING_INTERCEPTOR.process(wrapper, new BasicHttpContext());
+        assertEquals("gzip", wrapper.getFirstHeader("Content-Encoding").getValue());
+        assertTrue(wrapper.isRepeatable()); //the content of the wrapper was not accessed
+
+        HttpPost plain = new HttpPost("http://localhost:8983/solr/tagger/tag");
+        plain.setEntity(new InputStreamEntity(new CharSequenceContentStream("New York", "text/plain").getStream(), -1));
+        GzipContentStream.CONTENT_ENCODING_INTERCEPTOR.process(plain, new BasicHttpContext());
+        assertFalse(plain.containsHeader("Content-Encoding"));
+    }
+
+    @Test
+    public void testContentEncodingWithMetrics() throws Exception {
+        String content = "Tag New York and Paris";
+        LocalTagger tagger = new LocalTaggerClient("new york", "paris").getTagger();
+        List<String> received = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/solr/tagger/tag", exchange -> {
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            received.add(encoding);
+            String body = "gzip".equals(encoding) ? gunzip(exchange.getRequestBody()) : null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                new JavaBinCodec().marshal(tagger.tag(new TagParams(), body == null ? "" : body).getResponse(), out);
+            } catch (SolrServerException e) {
+                throw new IOException(e);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, out.size());
+            try (OutputStream response = exchange.getResponseBody()) {
+                out.writeTo(response);
+            }
+        });
+        server.start();
+        HttpClientUtil.addRequestInterceptor(GzipContentStream.CONTENT_ENCODING_INTERCEPTOR);
+        try (HttpSolrClient client = new HttpSolrClient.Builder("http://127.0.0.1:"
+                + server.getAddress().getPort() + "/solr/tagger").build()) {
+            List<TagRequestMetrics> reported = new CopyOnWriteArrayList<>();
+            TagRequest request = new TagRequest(new TagParams(), new GzipContentStream(
+                    new CharSequenceContentStream(content, "text/plain; charset=UTF-8")));
+            request.setMetricsListener(reported::add); //wraps the content to count the sent bytes
+            assertEquals(2, request.process(client).getTagCount());
+            assertEquals(1, received.size());
+            assertEquals("gzip", received.get(0));
+            assertEquals(1, reported.size());
+            assertTrue(reported.get(0).getRequestBytes() > 0);
+        } finally {
+            HttpClientUtil.removeRequestInterceptor(GzipContentStream.CONTENT_ENCODING_INTERCEPTOR);
+            server.stop(0);
+        }
+    }
+
+    private static String gunzip(InputStream compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(compressed)) {
+            byte[] buffer = new byte[4096];
+            for(int n = in.read(buffer); n >= 0; n = in.read(buffer)){
+                out.write(buffer, 0, n);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
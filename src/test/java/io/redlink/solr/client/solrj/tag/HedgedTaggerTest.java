@@ -0,0 +1,186 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+public class HedgedTaggerTest {
+
+    private static final String CONTENT = "From Paris to New York";
+
+    @Test
+    public void testHedgeAfterDelay() throws Exception {
+        Replica slow = new Replica(2000, true);
+        Replica fast = new Replica(0, true);
+        request().process(fast); //warm up, so that the fast replica is never hedged
+        try (HedgedTagger tagger = new HedgedTagger(replicas(slow, fast))) {
+            tagger.setInitialDelay(100, TimeUnit.MILLISECONDS);
+            tagger.setMaxHedgeRate(1);
+            for(int i = 0; i < 10; i++){
+                long start = System.nanoTime();
+                assertEquals(2, tagger.process(request()).getTagCount());
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+            }
+            assertTrue(tagger.getHedgeCount() > 0);
+            assertEquals(tagger.getHedgeCount(), tagger.getHedgeWinCount());
+            //the slow replica was canceled for every hedge
+            awaitEquals(tagger.getHedgeCount(), slow.interrupts::get);
+            assertEquals(0, fast.interrupts.get());
+        }
+    }
+
+    @Test
+    public void testMaxHedgeRate() throws Exception {
+        Replica a = new Replica(50, true);
+        Replica b = new Replica(50, true);
+        try (HedgedTagger tagger = new HedgedTagger(replicas(a, b))) {
+            tagger.setInitialDelay(1, TimeUnit.MILLISECONDS);
+            tagger.setMaxHedgeRate(0.1);
+            for(int i = 0; i < 20; i++){
+                assertEquals(2, tagger.process(request()).getTagCount());
+            }
+            //a single credit at start plus 0.1 credits per request
+            assertTrue(tagger.getHedgeCount() >= 2 && tagger.getHedgeCount() <= 3);
+            assertEquals(20, tagger.getHedgeCount() + tagger.getRateLimitedCount());
+            assertEquals(20, tagger.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        Replica failing = new Replica(0, true);
+        failing.failing = true;
+        Replica ok = new Replica(0, true);
+        try (HedgedTagger tagger = new HedgedTagger(replicas(failing, ok))) {
+            tagger.setMaxHedgeRate(0); //failover does not require hedge credits
+            for(int i = 0; i < 10; i++){
+                assertEquals(2, tagger.process(request()).getTagCount());
+            }
+            assertEquals(10, ok.calls.get());
+            assertEquals(0, tagger.getHedgeCount() - failing.calls.get()); //every failover is counted as hedge
+            ok.failing = true;
+            try {
+                tagger.process(request());
+                fail("IOException expected");
+            } catch (IOException e) {
+                //expected: both replicas failed
+            }
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Replica a = new Replica(5000, true);
+        Replica b = new Replica(5000, true);
+        try (HedgedTagger tagger = new HedgedTagger(replicas(a, b))) {
+            tagger.setInitialDelay(10, TimeUnit.MILLISECONDS);
+            tagger.setMaxHedgeRate(1);
+            CompletableFuture<TagResponse> response = tagger.tag(request());
+            awaitEquals(2, () -> a.calls.get() + b.calls.get()); //hedged
+            response.cancel(true);
+            awaitEquals(2, () -> a.interrupts.get() + b.interrupts.get());
+        }
+    }
+
+    @Test
+    public void testMetricsReportedOnce() throws Exception {
+        Replica slow = new Replica(300, false); //completes although canceled
+        Replica fast = new Replica(0, true);
+        try (HedgedTagger tagger = new HedgedTagger(replicas(slow, fast))) {
+            tagger.setInitialDelay(20, TimeUnit.MILLISECONDS);
+            tagger.setMaxHedgeRate(1);
+            AtomicInteger reported = new AtomicInteger();
+            int requests = 5;
+            for(int i = 0; i < requests; i++){
+                TagRequest request = request();
+                request.setMetricsListener(metrics -> reported.incrementAndGet());
+                tagger.process(request);
+            }
+            awaitEquals(requests, reported::get);
+            awaitEquals(requests + tagger.getHedgeCount(), () -> slow.completed.get() + fast.completed.get());
+            Thread.sleep(50); //the listener is notified after the response was completed
+            assertEquals(requests, reported.get()); //not reported by hedges
+        }
+    }
+
+    private static TagRequest request() {
+        return new TagRequest(new TagParams(), CONTENT, "text/plain");
+    }
+
+    private static Map<String, Replica> replicas(Replica...replicas) {
+        Map<String, Replica> map = new LinkedHashMap<>();
+        for(int i = 0; i < replicas.length; i++){
+            map.put("replica" + i, replicas[i]);
+        }
+        return map;
+    }
+
+    private static void awaitEquals(long expected, IntSupplier actual) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(actual.getAsInt() != expected && System.nanoTime() < end){
+            Thread.sleep(5);
+        }
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    /**
+     * A replica with a fixed latency that may fail all requests
+     */
+    private static class Replica extends LocalTaggerClient {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long latencyMillis;
+        private final boolean interruptible;
+        private volatile boolean failing;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger interrupts = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+
+        Replica(long latencyMillis, boolean interruptible) {
+            super("paris", "new york");
+            this.latencyMillis = latencyMillis;
+            this.interruptible = interruptible;
+        }
+
+        @Override
+        public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+                throws SolrServerException, IOException {
+            calls.incrementAndGet();
+            if(failing){
+                throw new IOException("simulated failure");
+            }
+            if(interruptible){
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    interrupts.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                    throw new SolrServerException(e);
+                }
+            } else {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+                for(long now = System.nanoTime(); now < end; now = System.nanoTime()){
+                    LockSupport.parkNanos(end - now); //returns early if interrupted
+                }
+            }
+            NamedList<Object> response = super.request(request, collection);
+            completed.incrementAndGet();
+            return response;
+        }
+    }
+}
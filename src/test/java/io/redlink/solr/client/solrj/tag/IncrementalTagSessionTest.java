@@ -0,0 +1,88 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.createContent;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.ids;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class IncrementalTagSessionTest {
+
+    @Test
+    public void testEditsEqualFullTagging() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        for(Overlaps overlaps : Overlaps.values()){
+            Random rnd = new Random(overlaps.ordinal());
+            TagParams params = new TagParams();
+            params.setOverlaps(overlaps);
+            IncrementalTagSession session = new IncrementalTagSession(client, params);
+            session.setContext(32);
+            String content = createContent(rnd, 5000, " ", " x ");
+            session.tag(content);
+            assertEquals(content.length(), session.getTaggedChars());
+            for(int i = 0; i < 100; i++){
+                content = edit(rnd, content);
+                TagResponse response = session.tag(content);
+                TagResponse expected = client.getTagger().tag(params, content);
+                String msg = overlaps + " after edit " + i;
+                assertEquals(msg, offsets(expected), offsets(response));
+                assertEquals(msg, ids(expected), ids(response));
+                assertTrue(msg, session.getTaggedChars() < content.length() / 2);
+                assertEquals(content, session.getContent());
+            }
+        }
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        IncrementalTagSession session = new IncrementalTagSession(client, new TagParams());
+        TagResponse response = session.tag("a b c d");
+        assertSame(response, session.tag("a b c d"));
+        assertEquals(0, session.getTaggedChars());
+        assertEquals(1, client.getRequestCount());
+        session.reset();
+        session.tag("a b c d");
+        assertEquals("a b c d".length(), session.getTaggedChars());
+        assertEquals(2, client.getRequestCount());
+    }
+
+    @Test
+    public void testLargeEdit() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        IncrementalTagSession session = new IncrementalTagSession(client, new TagParams());
+        session.tag("a b c d e f g h");
+        String content = "h g f e d c b a";
+        TagResponse response = session.tag(content);
+        assertEquals(content.length(), session.getTaggedChars()); //the whole content
+        assertEquals(offsets(client.getTagger().tag(new TagParams(), content)), offsets(response));
+    }
+
+    @Test
+    public void testWordBoundaries() {
+        assertEquals(2, IncrementalTagSession.wordStart("a bcd e", 4));
+        assertEquals(2, IncrementalTagSession.wordStart("a bcd e", 2));
+        assertEquals(0, IncrementalTagSession.wordStart("abc", 2));
+        assertEquals(5, IncrementalTagSession.wordEnd("a bcd e", 3));
+        assertEquals(3, IncrementalTagSession.wordEnd("abc", 1));
+    }
+
+    /**
+     * Inserts, deletes or replaces a short region at a random position
+     */
+    private static String edit(Random rnd, String content) {
+        int start = rnd.nextInt(content.length());
+        int end = Math.min(content.length(), start + rnd.nextInt(8));
+        String insert = rnd.nextBoolean() ? createContent(rnd, rnd.nextInt(8), " ") : "";
+        return content.substring(0, start) + insert + content.substring(end);
+    }
+}
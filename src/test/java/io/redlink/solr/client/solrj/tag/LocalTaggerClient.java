@@ -0,0 +1,70 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.util.NamedList;
+
+/**
+ * A {@link SolrClient} processing {@link TagRequest}s with a {@link LocalTagger}.
+ * {@link QueryRequest}s return all documents of the dictionary in a single
+ * page (also if a cursor is used).
+ */
+class LocalTaggerClient extends SolrClient {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SolrDocumentList docs = new SolrDocumentList();
+    private final transient LocalTagger tagger;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    LocalTaggerClient(String... names) {
+        for(int i = 0; i < names.length; i++){
+            SolrDocument doc = new SolrDocument();
+            doc.setField("id", "e" + i);
+            doc.setField("name", names[i]);
+            docs.add(doc);
+        }
+        docs.setNumFound(docs.size());
+        this.tagger = new LocalTagger(TagDictionary.build(docs, "name", "id", null));
+    }
+
+    LocalTagger getTagger() {
+        return tagger;
+    }
+
+    int getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+            throws SolrServerException, IOException {
+        requests.incrementAndGet();
+        if(request instanceof QueryRequest){
+            NamedList<Object> response = new NamedList<>();
+            response.add("response", docs);
+            String cursorMark = request.getParams().get(CursorMarkParams.CURSOR_MARK_PARAM);
+            if(cursorMark != null){
+                response.add(CursorMarkParams.CURSOR_MARK_NEXT, cursorMark); //no more pages
+            }
+            return response;
+        }
+        if(!(request instanceof TagRequest)){
+            throw new SolrServerException("Unsupported request " + request.getClass().getName());
+        }
+        return tagger.process((TagRequest)request).getResponse();
+    }
+
+    @Override
+    public void close() {
+        //nothing to close
+    }
+}
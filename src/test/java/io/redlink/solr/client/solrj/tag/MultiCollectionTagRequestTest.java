@@ -0,0 +1,109 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.ids;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.offsets;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+public class MultiCollectionTagRequestTest {
+
+    private static final String CONTENT = "From Paris to New York";
+
+    @Test
+    public void testMerge() throws Exception {
+        CollectionsClient client = new CollectionsClient();
+        MultiCollectionTagRequest request = new MultiCollectionTagRequest(new TagParams(), CONTENT);
+        request.addSource("people", "people", null).addSource("places", "places", null);
+        assertEquals(Arrays.asList("people", "places"), request.getSources());
+        TagResponse response = request.process(client);
+
+        assertEquals(3, response.getTagCount());
+        assertEquals(Arrays.asList("5-10", "14-22", "18-22"), offsets(response)); //sorted by offset
+        assertEquals(Arrays.asList("people:e1", "places:e0", "places:e1"), ids(response));
+        assertEquals("Paris", response.getTags().get(0).getMatchText().toString());
+        SolrDocument doc = response.getDocument("places:e0");
+        assertEquals("paris", doc.getFieldValue("name"));
+        assertEquals("e0", doc.getFieldValue(MultiCollectionTagRequest.SOURCE_ID_FIELD));
+        assertEquals("places", doc.getFieldValue(MultiCollectionTagRequest.SOURCE_FIELD));
+        assertEquals("york", response.getDocument("people:e1").getFieldValue("name"));
+        assertEquals(Arrays.asList("people:e1"), response.getTags().get(2).getIds());
+    }
+
+    @Test
+    public void testOverlaps() throws Exception {
+        CollectionsClient client = new CollectionsClient();
+        MultiCollectionTagRequest request = new MultiCollectionTagRequest(new TagParams(), "Paris Hilton");
+        request.addSource("people", "people", null).addSource("places", "places", null);
+        assertEquals(Arrays.asList("0-5", "0-12"), offsets(request.process(client)));
+        request.setOverlaps(Overlaps.LONGEST_DOMINANT_RIGHT);
+        request.setSeparator("/");
+        TagResponse response = request.process(client);
+        assertEquals(Arrays.asList("0-12"), offsets(response));
+        assertEquals(Arrays.asList("people/e0"), ids(response)); //documents of removed tags are dropped
+    }
+
+    @Test(expected = SolrServerException.class)
+    public void testSourceFailure() throws Exception {
+        MultiCollectionTagRequest request = new MultiCollectionTagRequest(new TagParams(), CONTENT);
+        request.addSource("places", "places", null).addSource("unknown", "unknown", null);
+        request.process(new CollectionsClient());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateSource() {
+        new MultiCollectionTagRequest(new TagParams(), CONTENT).addSource("places", "places", null)
+                .addSource("places", "other", null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoSource() throws Exception {
+        new MultiCollectionTagRequest(new TagParams(), CONTENT).process(new CollectionsClient());
+    }
+
+    /**
+     * A client tagging with a {@link LocalTaggerClient} per collection. The
+     * documents of both collections use the same ids.
+     */
+    private static class CollectionsClient extends SolrClient {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, LocalTaggerClient> collections = new HashMap<>();
+
+        CollectionsClient() {
+            collections.put("people", new LocalTaggerClient("paris hilton", "york"));
+            collections.put("places", new LocalTaggerClient("paris", "new york"));
+        }
+
+        @Override
+        public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+                throws SolrServerException, IOException {
+            LocalTaggerClient client = collections.get(collection);
+            if(client == null){
+                throw new SolrServerException("Unknown collection " + collection);
+            }
+            assertTrue(request instanceof TagRequest);
+            return client.request(request, collection);
+        }
+
+        @Override
+        public void close() {
+            //nothing to close
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OffsetIndexTest {
+
+    private static final String PAIR = new String(Character.toChars(0x1F600)); //4 bytes in UTF-8
+
+    @Test
+    public void testSimple() {
+        String content = "aä€" + PAIR + "b"; //1, 2, 3, 4 and 1 bytes
+        OffsetIndex index = OffsetIndex.create(content);
+        assertEquals(6, index.length());
+        assertEquals(11, index.getByteLength());
+        assertEquals(5, index.getCodePointLength());
+        assertArrayEquals(new int[]{0, 1, 3, 6, 10, 10, 11}, index.toByteOffsets(new int[]{0, 1, 2, 3, 4, 5, 6}));
+        //the offset between the chars of the pair is mapped to the end of the pair
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 4, 5}, index.toCodePointOffsets(new int[]{0, 1, 2, 3, 4, 5, 6}));
+    }
+
+    @Test
+    public void testSurrogatePairsAtSampleBoundaries() {
+        int interval = OffsetIndex.SAMPLE_INTERVAL;
+        for(int shift = 0; shift < 3; shift++){
+            StringBuilder content = new StringBuilder();
+            for(int i = 0; i < interval - 2 + shift; i++){
+                content.append('x');
+            }
+            //pairs starting before, at and after the sample boundary
+            for(int i = 0; i < interval; i++){
+                content.append(PAIR);
+            }
+            assertOffsets(content, OffsetIndex.create(content));
+        }
+    }
+
+    @Test
+    public void testLengthAtSampleBoundary() {
+        StringBuilder content = new StringBuilder();
+        for(int i = 0; i < OffsetIndex.SAMPLE_INTERVAL * 2; i++){
+            content.append('ä');
+        }
+        OffsetIndex index = OffsetIndex.create(content);
+        assertEquals(content.length() * 2, index.toByteOffset(content.length()));
+        assertOffsets(content, index);
+        assertOffsets("", OffsetIndex.create(""));
+    }
+
+    @Test
+    public void testUnpairedSurrogates() {
+        String content = "a\ud83d b\ude00c" + PAIR + "\ud83d";
+        OffsetIndex index = OffsetIndex.create(content);
+        assertEquals(content.getBytes(StandardCharsets.UTF_8).length, index.getByteLength()); //replaced by '?'
+        assertOffsets(content, index);
+    }
+
+    @Test
+    public void testRandom() {
+        Random rnd = new Random(11);
+        for(int run = 0; run < 20; run++){
+            StringBuilder content = new StringBuilder();
+            int length = rnd.nextInt(1000);
+            while(content.length() < length){
+                switch (rnd.nextInt(6)) {
+                case 0:
+                    content.append((char)('a' + rnd.nextInt(26)));
+                    break;
+                case 1:
+                    content.append((char)(0x80 + rnd.nextInt(0x780)));
+                    break;
+                case 2:
+                    content.append((char)(0x800 + rnd.nextInt(0xD000)));
+                    break;
+                case 3:
+                    content.appendCodePoint(0x10000 + rnd.nextInt(0x100000));
+                    break;
+                case 4:
+                    content.append((char)(Character.MIN_SURROGATE + rnd.nextInt(0x800))); //unpaired
+                    break;
+                default:
+                    content.append(' ');
+                }
+            }
+            assertOffsets(content, OffsetIndex.create(content));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        OffsetIndex.create("abc").toByteOffset(4);
+    }
+
+    /**
+     * Asserts the conversion of all char offsets against the encoded content
+     */
+    private static void assertOffsets(CharSequence content, OffsetIndex index) {
+        String text = content.toString();
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, index.getByteLength());
+        assertEquals(text.codePointCount(0, text.length()), index.getCodePointLength());
+        for(int offset = 0; offset <= text.length(); offset++){
+            int aligned = offset > 0 && offset < text.length() && Character.isHighSurrogate(text.charAt(offset - 1))
+                    && Character.isLowSurrogate(text.charAt(offset)) ? offset + 1 : offset;
+            String prefix = text.substring(0, aligned);
+            assertEquals("byte offset of char " + offset, prefix.getBytes(StandardCharsets.UTF_8).length,
+                    index.toByteOffset(offset));
+            assertEquals("code point offset of char " + offset, prefix.codePointCount(0, prefix.length()),
+                    index.toCodePointOffset(offset));
+        }
+    }
+}
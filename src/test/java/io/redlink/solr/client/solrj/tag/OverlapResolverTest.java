@@ -0,0 +1,248 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.redlink.solr.client.solrj.tag.TagParams.Overlaps;
+
+/**
+ * Compares the {@link OverlapResolver} with a literal port of the
+ * <code>TagClusterReducer</code> of the SolrTextTagger on random spans.
+ */
+public class OverlapResolverTest {
+
+    private static final long SEED = 0x5eed0f7a9L;
+    private static final int ITERATIONS = 20000;
+
+    @Test
+    public void testAll() {
+        assertEquivalent(Overlaps.ALL);
+    }
+
+    @Test
+    public void testNoSub() {
+        assertEquivalent(Overlaps.NO_SUB);
+    }
+
+    @Test
+    public void testLongestDominantRight() {
+        assertEquivalent(Overlaps.LONGEST_DOMINANT_RIGHT);
+    }
+
+    @Test
+    public void testExamples() {
+        int[] starts = {0, 0, 2, 5, 6, 10};
+        int[] ends =   {4, 8, 4, 9, 9, 12};
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, new OverlapResolver(Overlaps.ALL).resolve(starts, ends));
+        assertArrayEquals(new int[]{1, 3, 5}, new OverlapResolver(Overlaps.NO_SUB).resolve(starts, ends));
+        assertArrayEquals(new int[]{1, 5}, new OverlapResolver(Overlaps.LONGEST_DOMINANT_RIGHT).resolve(starts, ends));
+        //equal length: the right-most wins
+        assertArrayEquals(new int[]{1}, new OverlapResolver(Overlaps.LONGEST_DOMINANT_RIGHT)
+                .resolve(new int[]{0, 2}, new int[]{4, 6}));
+        //duplicated spans: the first one is retained
+        assertArrayEquals(new int[]{0}, new OverlapResolver(Overlaps.NO_SUB)
+                .resolve(new int[]{3, 3}, new int[]{7, 7}));
+        assertArrayEquals(new int[0], new OverlapResolver(Overlaps.NO_SUB).resolve(new int[0], new int[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentLength() {
+        new OverlapResolver(Overlaps.ALL).resolve(new int[1], new int[2]);
+    }
+
+    private static void assertEquivalent(Overlaps overlaps) {
+        Random rnd = new Random(SEED + overlaps.ordinal());
+        OverlapResolver resolver = new OverlapResolver(overlaps);
+        for(int i = 0; i < ITERATIONS; i++){
+            int n = rnd.nextInt(40);
+            int textLength = 1 + rnd.nextInt(80);
+            int[] starts = new int[n];
+            int[] ends = new int[n];
+            for(int t = 0; t < n; t++){
+                if(t > 0 && rnd.nextInt(10) == 0){ //duplicated span
+                    int other = rnd.nextInt(t);
+                    starts[t] = starts[other];
+                    ends[t] = ends[other];
+                } else {
+                    starts[t] = rnd.nextInt(textLength);
+                    ends[t] = starts[t] + 1 + rnd.nextInt(12);
+                }
+            }
+            int[] expected = reduce(overlaps, starts, ends);
+            int[] actual = resolver.resolve(starts, ends);
+            assertArrayEquals(overlaps + " of starts " + Arrays.toString(starts) + " and ends "
+                    + Arrays.toString(ends), expected, actual);
+        }
+    }
+
+    /**
+     * Emits the tags in the order of the tagger (by start and end offset),
+     * groups them in clusters of overlapping tags and reduces every cluster
+     * @return the indexes of the retained tags
+     */
+    private static int[] reduce(Overlaps overlaps, int[] starts, int[] ends) {
+        Integer[] order = new Integer[starts.length];
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> starts[a] != starts[b] ? Integer.compare(starts[a], starts[b])
+                : Integer.compare(ends[a], ends[b])); //stable
+        List<Integer> result = new ArrayList<>();
+        TagLL[] head = new TagLL[1];
+        TagLL tail = null;
+        int clusterEnd = Integer.MIN_VALUE;
+        for(int idx : order){
+            if(head[0] != null && starts[idx] >= clusterEnd){
+                emit(overlaps, head, result);
+                tail = null;
+            }
+            TagLL tag = new TagLL(head, idx, starts[idx], ends[idx]);
+            if(tail == null){
+                head[0] = tag;
+                clusterEnd = tag.endOffset;
+            } else {
+                tail.nextTag = tag;
+                tag.prevTag = tail;
+                clusterEnd = Math.max(clusterEnd, tag.endOffset);
+            }
+            tail = tag;
+        }
+        if(head[0] != null){
+            emit(overlaps, head, result);
+        }
+        int[] retained = new int[result.size()];
+        for(int i = 0; i < retained.length; i++){
+            retained[i] = result.get(i);
+        }
+        return retained;
+    }
+
+    private static void emit(Overlaps overlaps, TagLL[] head, List<Integer> result) {
+        switch (overlaps) {
+            case NO_SUB:
+                reduceNoSub(head);
+                break;
+            case LONGEST_DOMINANT_RIGHT:
+                reduceLongestDominantRight(head);
+                break;
+            default:
+                break;
+        }
+        for(TagLL t = head[0]; t != null; t = t.nextTag){
+            result.add(t.index);
+        }
+        head[0] = null;
+    }
+
+    /*
+     * Port of TagClusterReducer.NO_SUB
+     */
+    private static void reduceNoSub(TagLL[] head) {
+        //loop forward over all tags
+        for (TagLL tag = head[0].nextTag; tag != null; tag = tag.nextTag) {
+            //loop backwards over prev tags from this tag
+            for (TagLL tPrev = tag.prevTag; tPrev != null; tPrev = tPrev.prevTag) {
+                //if a previous tag's endOffset is <= this one's, tForward can be removed
+                if (tPrev.endOffset >= tag.endOffset) {
+                    tag.removeLL();
+                    break;
+                } else if (tPrev.startOffset == tag.startOffset) {
+                    tPrev.removeLL();
+                    //continue; 'tag' is still valid
+                }
+            }
+        }
+    }
+
+    /*
+     * Port of TagClusterReducer.LONGEST_DOMINANT_RIGHT
+     */
+    private static void reduceLongestDominantRight(TagLL[] head) {
+        //--Optimize for common single-tag case
+        if (head[0].nextTag == null) {
+            return;
+        }
+        while (true) {
+            //--Find longest not already marked
+            TagLL longest = null;
+            for (TagLL t = head[0]; t != null; t = t.nextTag) {
+                if (!t.mark && (longest == null || t.charLen() >= longest.charLen())) {
+                    longest = t;
+                }
+            }
+            if (longest == null) {
+                break;
+            }
+            //--Mark longest (so we return it eventually)
+            longest.mark = true;
+            //--Remove tags overlapping this longest
+            for (TagLL t = head[0]; t != null; t = t.nextTag) {
+                if (t.mark) {
+                    continue;
+                }
+                if (t.overlaps(longest)) {
+                    t.removeLL();
+                } else if (t.startOffset >= longest.endOffset) {
+                    break;//no subsequent can possibly overlap
+                }
+            }
+        }
+    }
+
+    /*
+     * Port of the TagLL linked list of the tagger (reduced to the offsets)
+     */
+    private static final class TagLL {
+
+        private final TagLL[] head;
+        private final int index;
+        private final int startOffset;
+        private final int endOffset;
+        private TagLL prevTag;
+        private TagLL nextTag;
+        private boolean mark;
+
+        TagLL(TagLL[] head, int index, int startOffset, int endOffset) {
+            this.head = head;
+            this.index = index;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        /**
+         * Removes this tag from the chain, connecting prevTag and nextTag. Does
+         * not modify "this" object's pointers, so the caller can refer to
+         * nextTag after removing it.
+         */
+        void removeLL() {
+            if (head[0] == this) {
+                head[0] = nextTag;
+            }
+            if (prevTag != null) {
+                prevTag.nextTag = nextTag;
+            }
+            if (nextTag != null) {
+                nextTag.prevTag = prevTag;
+            }
+        }
+
+        boolean overlaps(TagLL other) {
+            //don't use >= or <= because startOffset is inclusive while endOffset is exclusive
+            if (startOffset < other.startOffset) {
+                return endOffset > other.startOffset;
+            } else {
+                return startOffset < other.endOffset;
+            }
+        }
+
+        int charLen() {
+            return endOffset - startOffset;
+        }
+    }
+}
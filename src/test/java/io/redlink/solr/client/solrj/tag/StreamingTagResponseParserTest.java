@@ -0,0 +1,80 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class StreamingTagResponseParserTest {
+
+    @Test
+    public void testTopLevelDocumentsOnly() throws Exception {
+        SolrDocument parent = doc("p1");
+        parent.addChildDocument(doc("c1"));
+        parent.addChildDocument(doc("c2"));
+        SolrDocumentList results = new SolrDocumentList();
+        results.add(parent);
+        results.add(doc("p2"));
+        results.setNumFound(2);
+        SolrDocumentList other = new SolrDocumentList();
+        other.add(doc("o1"));
+        other.setNumFound(1);
+        NamedList<Object> debug = new SimpleOrderedMap<>();
+        debug.add("docs", other);
+        NamedList<Object> tag = new NamedList<>();
+        tag.add("startOffset", 0);
+        tag.add("endOffset", 5);
+        tag.add("ids", Arrays.asList("p1", "p2"));
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("tagsCount", 1);
+        res.add("tags", Arrays.asList(tag));
+        res.add("response", results);
+        res.add("debug", debug);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JavaBinCodec().marshal(res, out);
+
+        List<SolrDocument> docs = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        NamedList<Object> parsed = new StreamingTagResponseParser(new TagStreamingCallback() {
+            @Override
+            public void onTag(int start, int end, List<Object> ids) {
+                tags.add(start + "-" + end + ids);
+            }
+            @Override
+            public void onDocument(SolrDocument doc) {
+                docs.add(doc);
+            }
+        }).processResponse(new ByteArrayInputStream(out.toByteArray()), null);
+
+        assertEquals(Arrays.asList("0-5[p1, p2]"), tags);
+        assertEquals(2, docs.size());
+        assertEquals("p1", docs.get(0).getFieldValue("id"));
+        assertEquals(2, docs.get(0).getChildDocumentCount());
+        assertEquals("c2", docs.get(0).getChildDocuments().get(1).getFieldValue("id"));
+        assertEquals("p2", docs.get(1).getFieldValue("id"));
+        SolrDocumentList parsedResults = (SolrDocumentList)parsed.get("response");
+        assertEquals(2, parsedResults.getNumFound());
+        assertTrue(parsedResults.isEmpty());
+        //documents of other lists are decoded normally
+        SolrDocumentList parsedOther = (SolrDocumentList)((NamedList<?>)parsed.get("debug")).get("docs");
+        assertEquals(1, parsedOther.size());
+        assertEquals("o1", parsedOther.get(0).getFieldValue("id"));
+    }
+
+    private static SolrDocument doc(String id) {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        return doc;
+    }
+}
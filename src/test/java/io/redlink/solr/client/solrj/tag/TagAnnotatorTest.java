@@ -0,0 +1,130 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.createContent;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TagAnnotatorTest {
+
+    private static final TagAnnotator<Span> ANNOTATOR = new TagAnnotator<>(new TagAnnotator.Template<Span>() {
+
+        @Override
+        public void open(Writer out, Span tag) throws IOException {
+            out.write("<" + tag.name + ">");
+        }
+
+        @Override
+        public void close(Writer out, Span tag) throws IOException {
+            out.write("</" + tag.name + ">");
+        }
+    }, t -> t.start, t -> t.end);
+
+    @Test
+    public void testAnnotate() throws Exception {
+        assertEquals("From <a>Paris</a> to <b>New York</b>",
+                annotate("From Paris to New York", new Span(5, 10, "a"), new Span(14, 22, "b")));
+        assertEquals("no tags", annotate("no tags"));
+        assertEquals("<a>Paris</a>", annotate("Paris", new Span(0, 10, "a"))); //ends after the content
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        //longer tags with the same start are opened first
+        assertEquals("<b><a>New York</a> City</b>",
+                annotate("New York City", new Span(0, 8, "a"), new Span(0, 13, "b")));
+        assertEquals("<b>New <c>York</c> City</b>",
+                annotate("New York City", new Span(0, 13, "b"), new Span(4, 8, "c")));
+        assertEquals("<a><b>New York</b></a>", //same span keep their order
+                annotate("New York", new Span(0, 8, "a"), new Span(0, 8, "b")));
+    }
+
+    @Test
+    public void testOverlapping() throws Exception {
+        assertEquals("<x>a <y>b</y></x><y> c</y>",
+                annotate("a b c", new Span(0, 3, "x"), new Span(2, 5, "y")));
+        assertEquals("<x>a <y>b <z>c</z></y></x><y><z> d</z></y><z> e</z>",
+                annotate("a b c d e", new Span(0, 5, "x"), new Span(2, 7, "y"), new Span(4, 9, "z")));
+    }
+
+    @Test
+    public void testSession() throws Exception {
+        StringWriter out = new StringWriter();
+        TagAnnotator<Span>.Session session = ANNOTATOR.open(new StringReader("From Paris to New York"), out);
+        session.add(new Span(5, 10, "a"));
+        session.add(new Span(14, 22, "b"));
+        assertEquals("From <a>", out.toString()); //the last tag is pending for tags with the same start
+        session.finish();
+        session.finish(); //ignored
+        assertEquals("From <a>Paris</a> to <b>New York</b>", out.toString());
+    }
+
+    @Test
+    public void testElement() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "new york", "new york");
+        String content = "From Paris to New York";
+        TagResponse response = client.getTagger().tag(new TagParams(), content);
+        StringWriter out = new StringWriter();
+        TagAnnotator.create(TagAnnotator.element("span", "data-ids")).annotate(response.getTags(),
+                new StringReader(content), out);
+        assertEquals("From <span data-ids=\"e0\">Paris</span> to <span data-ids=\"e1 e2\">New York</span>",
+                out.toString());
+        StringWriter escaped = new StringWriter();
+        TagAnnotator.escape(escaped, "a&b<c>\"d'");
+        assertEquals("a&amp;b&lt;c&gt;&quot;d&apos;", escaped.toString());
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        String content = createContent(new Random(7), 20000, ". ", " x ");
+        TagResponse response = client.getTagger().tag(new TagParams(), content);
+        StringWriter out = new StringWriter();
+        TagAnnotator.create(TagAnnotator.element("t", null)).annotate(response.getTags(),
+                new StringReader(content), out);
+        String annotated = out.toString();
+        assertEquals(content, annotated.replaceAll("</?t>", ""));
+        int opened = annotated.split("<t>", -1).length - 1;
+        assertEquals(opened, annotated.split("</t>", -1).length - 1);
+        assertTrue(opened >= response.getTagCount()); //overlapping tags are split
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsorted() throws Exception {
+        annotate("a b c", new Span(2, 3, "b"), new Span(0, 1, "a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSpan() throws Exception {
+        annotate("a b c", new Span(3, 2, "a"));
+    }
+
+    private static String annotate(String content, Span...tags) throws IOException {
+        StringWriter out = new StringWriter();
+        ANNOTATOR.annotate(Arrays.asList(tags), new StringReader(content), out);
+        return out.toString();
+    }
+
+    private static class Span {
+
+        final int start;
+        final int end;
+        final String name;
+
+        Span(int start, int end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+public class TagExecutorTest {
+
+    private static final String CONTENT = "From Paris to New York";
+
+    @Test
+    public void testTagAll() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(5);
+        try (TagExecutor executor = new TagExecutor(client, 4)) {
+            List<ContentStream> contents = new ArrayList<>();
+            for(int i = 0; i < 20; i++){
+                contents.add(new ContentStreamBase.StringStream(i % 2 == 0 ? CONTENT : "Paris"));
+            }
+            List<CompletableFuture<TagResponse>> responses = executor.tagAll(new TagParams(), contents);
+            assertEquals(contents.size(), responses.size());
+            for(int i = 0; i < responses.size(); i++){
+                assertEquals(i % 2 == 0 ? 2 : 1, responses.get(i).get(5, TimeUnit.SECONDS).getTagCount());
+            }
+            assertEquals(4, client.maxInFlight.get());
+            awaitEquals(0, executor::getInFlight); //permits are released after completion
+        }
+    }
+
+    @Test
+    public void testLimitSharedByClient() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(5);
+        try (TagExecutor first = new TagExecutor(client, 3);
+                TagExecutor second = new TagExecutor(client, 6)) { //uses the limit of the first
+            assertEquals(3, second.getMaxInFlight());
+            List<CompletableFuture<TagResponse>> responses = new ArrayList<>();
+            for(int i = 0; i < 20; i++){
+                responses.add(first.tag(request()));
+                responses.add(second.tag(request()));
+            }
+            for(CompletableFuture<TagResponse> response : responses){
+                assertEquals(2, response.get(5, TimeUnit.SECONDS).getTagCount());
+            }
+            assertEquals(3, client.maxInFlight.get());
+        }
+        try (TagExecutor other = new TagExecutor(new ConcurrencyClient(0), 6)) {
+            assertEquals(6, other.getMaxInFlight()); //not shared with other clients
+        }
+    }
+
+    @Test
+    public void testCancelQueued() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        client.gate = new CountDownLatch(1);
+        try (TagExecutor executor = new TagExecutor(client, 1)) {
+            CompletableFuture<TagResponse> running = executor.tag(request());
+            CompletableFuture<TagResponse> queued = executor.tag(request());
+            awaitEquals(1, executor::getInFlight);
+            queued.cancel(false);
+            client.gate.countDown();
+            assertEquals(2, running.get(5, TimeUnit.SECONDS).getTagCount());
+            awaitEquals(0, executor::getInFlight);
+            assertEquals(1, client.calls.get()); //the canceled request was not sent
+            assertTrue(queued.isCancelled());
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ConcurrencyClient client = new ConcurrencyClient(0);
+        client.failing = true;
+        try (TagExecutor executor = new TagExecutor(client, 2)) {
+            for(CompletableFuture<TagResponse> response : executor.tagAll(Arrays.asList(request(), request()))){
+                try {
+                    response.get(5, TimeUnit.SECONDS);
+                    fail("ExecutionException expected");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+            awaitEquals(0, executor::getInFlight);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMaxInFlight() {
+        new TagExecutor(new ConcurrencyClient(0), 0);
+    }
+
+    private static TagRequest request() {
+        return new TagRequest(new TagParams(), CONTENT, "text/plain");
+    }
+
+    static void awaitEquals(long expected, IntSupplier actual) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(actual.getAsInt() != expected && System.nanoTime() < end){
+            Thread.sleep(5);
+        }
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    /**
+     * A client tracking the maximum number of concurrent requests
+     */
+    static class ConcurrencyClient extends LocalTaggerClient {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long latencyMillis;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        volatile CountDownLatch gate;
+        volatile boolean failing;
+
+        ConcurrencyClient(long latencyMillis) {
+            super("paris", "new york");
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request, String collection)
+                throws SolrServerException, IOException {
+            calls.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                if(gate != null){
+                    gate.await(5, TimeUnit.SECONDS);
+                }
+                Thread.sleep(latencyMillis);
+                if(failing){
+                    throw new IOException("simulated failure");
+                }
+                return super.request(request, collection);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SolrServerException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
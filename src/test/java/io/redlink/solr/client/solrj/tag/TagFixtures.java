@@ -0,0 +1,79 @@
+package io.redlink.solr.client.solrj.tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * Dictionary and content shared by tests comparing client side tagging with
+ * the {@link LocalTagger}
+ */
+final class TagFixtures {
+
+    /**
+     * The words of the generated content
+     */
+    static final String[] ALPHABET = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    /**
+     * names of one to four consecutive words of the {@link #ALPHABET} so that
+     * runs of the alphabet in the content create long chains of overlapping tags
+     */
+    static final String[] NAMES = {"a b", "b c d", "c d e f", "d", "e f", "f g h", "g h", "a b c d",
+            "h"};
+
+    private TagFixtures() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Creates content of runs of consecutive words of the {@link #ALPHABET}
+     * @param rnd the random
+     * @param length the minimum length of the content
+     * @param separators the separators of runs (randomly selected)
+     * @return the content
+     */
+    static String createContent(Random rnd, int length, String...separators) {
+        StringBuilder content = new StringBuilder(length + 32);
+        while(content.length() < length){
+            if(content.length() > 0){
+                content.append(separators[rnd.nextInt(separators.length)]);
+            }
+            int start = rnd.nextInt(ALPHABET.length);
+            int end = start + 1 + rnd.nextInt(ALPHABET.length - start);
+            for(int i = start; i < end; i++){
+                content.append(i > start ? " " : "").append(ALPHABET[i]);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * The offsets of the tags
+     * @param response the response
+     * @return the <code>{start}-{end}</code> offsets of the tags in the order
+     * of the response
+     */
+    static List<String> offsets(TagResponse response) {
+        List<String> offsets = new ArrayList<>();
+        for(TagResponse.Tag tag : response.getTags()){
+            offsets.add(tag.getStart() + "-" + tag.getEnd());
+        }
+        return offsets;
+    }
+
+    /**
+     * The sorted ids of the documents
+     * @param response the response
+     * @return the sorted ids of the documents of the response
+     */
+    static List<Object> ids(TagResponse response) {
+        List<Object> ids = new ArrayList<>();
+        for(SolrDocument doc : response.getResults()){
+            ids.add(doc.getFieldValue("id"));
+        }
+        ids.sort(null);
+        return ids;
+    }
+}
@@ -0,0 +1,171 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class TagPipelineTest {
+
+    private static final String[] TYPES = {"place", "person", "organization"};
+
+    @Test
+    public void testStages() {
+        TagResponse response = response(
+                new int[][]{{0, 5}, {6, 8}, {10, 20}, {21, 30}},
+                new String[][]{{"p1", "o1"}, {"p1"}, {"o1", "p2", "p3"}, {"o1"}},
+                doc("p1", "place", 10), doc("p2", "place", 30), doc("p3", "place", null), doc("o1", "organization", 5));
+
+        TagPipeline.Result result = new TagPipeline().apply(response);
+        assertEquals(4, result.size()); //no stages
+        assertEquals(Arrays.asList("o1", "p2", "p3"), result.getIds(2));
+
+        result = new TagPipeline()
+                .filterLength(3)
+                .filterDocs("type", "place"::equals)
+                .limitDocs(2, "popularity")
+                .mapDocs("popularity")
+                .apply(response);
+        assertEquals(2, result.size()); //too short and only organizations
+        assertEquals(0, result.getTagIndex(0));
+        assertEquals(Arrays.asList("p1"), result.getIds(0));
+        assertEquals(10, result.getStart(1));
+        assertEquals(20, result.getEnd(1));
+        //the highest popularity first and documents without popularity last
+        assertEquals(Arrays.asList("p2", "p3"), result.getIds(1));
+        assertEquals(Arrays.asList(30, null), result.getValues(1));
+        assertEquals("p2", result.getDocs(1).get(0).getFieldValue("id"));
+        assertEquals(3, result.getTag(1).getIds().size()); //the tag of the response
+
+        result = new TagPipeline().filter((start, end) -> start > 0).limit(2).apply(response);
+        assertEquals(2, result.size());
+        assertEquals(Arrays.asList(6, 10), Arrays.asList(result.getStart(0), result.getStart(1)));
+        assertNull(result.getValues(0).get(0)); //no mapping
+    }
+
+    @Test
+    public void testAggregate() {
+        TagResponse response = response(
+                new int[][]{{0, 5}, {6, 8}, {10, 20}},
+                new String[][]{{"p1", "o1"}, {"p1"}, {"o1", "p2"}},
+                doc("p1", "place", 10), doc("p2", "place", 30), doc("o1", "organization", 5));
+        Map<Object, Integer> counts = new TagPipeline().filterDocs("type", "place"::equals)
+                .aggregate(response, TagAggregator.mentionCounts());
+        Map<Object, Integer> expected = new HashMap<>();
+        expected.put("p1", 2);
+        expected.put("p2", 1);
+        assertEquals(expected, counts);
+    }
+
+    @Test
+    public void testParallelEqualsSequential() {
+        Random rnd = new Random(13);
+        int numDocs = 200;
+        SolrDocument[] docs = new SolrDocument[numDocs];
+        for(int i = 0; i < numDocs; i++){
+            docs[i] = doc("d" + i, TYPES[rnd.nextInt(TYPES.length)], rnd.nextBoolean() ? rnd.nextInt(100) : null);
+        }
+        int numTags = 20000;
+        int[][] spans = new int[numTags][];
+        String[][] ids = new String[numTags][];
+        for(int t = 0; t < numTags; t++){
+            int start = t * 10 + rnd.nextInt(3);
+            spans[t] = new int[]{start, start + 1 + rnd.nextInt(8)};
+            ids[t] = new String[1 + rnd.nextInt(5)];
+            for(int i = 0; i < ids[t].length; i++){
+                ids[t][i] = "d" + rnd.nextInt(numDocs);
+            }
+        }
+        TagResponse response = response(spans, ids, docs);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for(int limit : new int[]{Integer.MAX_VALUE, 0, 10, 3000, 7000}){
+                TagPipeline pipeline = new TagPipeline()
+                        .filterLength(3)
+                        .filterDocs("type", type -> !"person".equals(type))
+                        .limitDocs(2, "popularity")
+                        .limit(limit);
+                TagPipeline.Result expected = pipeline.apply(response);
+                assertEquals(Math.min(limit, expected(response)), expected.size());
+                Map<Object, Integer> expectedCounts = pipeline.aggregate(response, TagAggregator.mentionCounts());
+                pipeline.setParallelism(4).setMinSegmentSize(1000).setExecutor(executor);
+                TagPipeline.Result result = pipeline.apply(response);
+                assertEquals("limit " + limit, expected.size(), result.size());
+                for(int i = 0; i < result.size(); i++){
+                    assertEquals(expected.getTagIndex(i), result.getTagIndex(i));
+                    assertEquals(expected.getIds(i), result.getIds(i));
+                }
+                assertEquals("limit " + limit, expectedCounts, pipeline.aggregate(response,
+                        TagAggregator.mentionCounts()));
+                pipeline.setExecutor(null); //the common pool
+                assertEquals(expected.size(), pipeline.apply(response).size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The number of tags emitted by the pipeline of {@link #testParallelEqualsSequential()}
+     * without a limit calculated by using the {@link TagResponse.Tag}s
+     */
+    private static int expected(TagResponse response) {
+        int count = 0;
+        for(TagResponse.Tag tag : response.getTags()){
+            if(tag.getEnd() - tag.getStart() >= 3){
+                for(SolrDocument doc : tag.getDocs()){
+                    if(!"person".equals(doc.getFirstValue("type"))){
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static SolrDocument doc(String id, String type, Integer popularity) {
+        SolrDocument doc = new SolrDocument();
+        doc.setField("id", id);
+        doc.setField("type", type);
+        if(popularity != null){
+            doc.setField("popularity", popularity);
+        }
+        return doc;
+    }
+
+    private static TagResponse response(int[][] spans, String[][] ids, SolrDocument...docs) {
+        List<NamedList<Object>> tags = new ArrayList<>();
+        for(int t = 0; t < spans.length; t++){
+            NamedList<Object> tag = new NamedList<>();
+            tag.add("startOffset", spans[t][0]);
+            tag.add("endOffset", spans[t][1]);
+            tag.add("ids", new ArrayList<>(Arrays.asList(ids[t])));
+            tags.add(tag);
+        }
+        SolrDocumentList results = new SolrDocumentList();
+        results.addAll(Arrays.asList(docs));
+        results.setNumFound(docs.length);
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("tagsCount", tags.size());
+        res.add("tags", tags);
+        res.add("response", results);
+        TagResponse response = new TagResponse(null);
+        response.setDocIdField("id");
+        response.setResponse(res);
+        return response;
+    }
+}
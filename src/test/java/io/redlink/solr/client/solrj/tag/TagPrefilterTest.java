@@ -0,0 +1,64 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.solr.common.util.ContentStreamBase;
+import org.junit.Test;
+
+public class TagPrefilterTest {
+
+    private static final String[] NAMES = {"New York", "Paris", "San Francisco"};
+    private static final double FPP = 0.000001;
+
+    @Test
+    public void testFirstTokens() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        TagPrefilter[] filters = new TagPrefilter[]{
+                TagPrefilter.create(Arrays.asList(NAMES), FPP),
+                TagPrefilter.create(client.getTagger().getDictionary(), FPP),
+                TagPrefilter.fromNames(client, null, "name", "id", FPP)};
+        for(TagPrefilter filter : filters){
+            assertEquals(3, filter.getTokenCount()); //new, paris and san
+            assertTrue(filter.mightMatch("Flights from NEW Jersey"));
+            assertTrue(filter.mightMatch("paris"));
+            assertFalse(filter.mightMatch("York and Francisco")); //not the first tokens
+            assertFalse(filter.mightMatch("Newark"));
+            assertFalse(filter.mightMatch(""));
+        }
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        TagPrefilter filter = TagPrefilter.create(Arrays.asList(NAMES), FPP);
+        TagParams params = new TagParams();
+
+        TagResponse response = filter.process(new TagRequest(params, "ERROR connection refused", "text/plain"), client);
+        assertEquals(0, response.getTagCount());
+        assertEquals(0, client.getRequestCount()); //skipped
+        response = filter.process(new TagRequest(params, "From Paris to New York", "text/plain"), client);
+        assertEquals(2, response.getTagCount());
+        response = filter.process(new TagRequest(params, "New Jersey", "text/plain"), client);
+        assertEquals(0, response.getTagCount()); //sent but no tag
+        response = filter.process(new TagRequest(params, new ContentStreamBase.StringStream("Paris")), client);
+        assertEquals(1, response.getTagCount()); //the content is not available
+        assertEquals(3, client.getRequestCount());
+
+        assertEquals(2, filter.getHitCount());
+        assertEquals(1, filter.getSkipCount());
+        assertEquals(1, filter.getFalsePositiveCount());
+        assertEquals(1, filter.getUnscreenedCount());
+        assertEquals(2d / 3, filter.getHitRate(), 0.0001);
+        assertEquals(1d / 3, filter.getSkipRate(), 0.0001);
+        assertEquals(0.5, filter.getFalsePositiveRate(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalFalsePositiveProbability() {
+        TagPrefilter.create(Arrays.asList(NAMES), 1);
+    }
+}
@@ -0,0 +1,112 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.util.ContentStream;
+import org.apache.solr.common.util.ContentStreamBase;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+public class TagRequestTest {
+
+    private static final String CONTENT = "Paris is the capital of France and New York is a city";
+
+    @Test
+    public void testConcurrentMetrics() throws Exception {
+        int threads = 4;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        //all threads have created their response before a request is sent
+        LocalTaggerClient client = new LocalTaggerClient("paris", "france", "new york") {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request,
+                    String collection) throws SolrServerException, IOException {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new SolrServerException(e);
+                }
+                return super.request(request, collection);
+            }
+        };
+        List<TagRequestMetrics> reported = new CopyOnWriteArrayList<>();
+        TagRequest request = new TagRequest(new TagParams(), new ContentStreamBase.StringStream(CONTENT)); //read by the client
+        request.setMetricsListener(reported::add);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<TagResponse>> futures = new CopyOnWriteArrayList<>();
+            for(int i = 0; i < threads; i++){
+                futures.add(executor.submit(() -> request.process(client)));
+            }
+            for(Future<TagResponse> future : futures){
+                assertEquals(3, future.get(30, TimeUnit.SECONDS).getTagCount());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads, reported.size());
+        for(TagRequestMetrics metrics : reported){
+            assertEquals(CONTENT.length(), metrics.getRequestBytes());
+            assertEquals(3, metrics.getTagCount());
+        }
+    }
+
+    @Test
+    public void testCallStateRemoved() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris", "france", "new york");
+        ContentStream content = new ContentStreamBase.StringStream(CONTENT);
+        TagRequest request = new TagRequest(new TagParams(), content);
+        request.setMetricsListener(metrics -> {});
+        assertEquals(3, request.process(client).getTagCount());
+        //no longer wrapped to count the bytes
+        assertSame(content, request.getContentStreams().iterator().next());
+        assertFalse(request.getResponseParser() instanceof TimingResponseParser);
+    }
+
+    @Test
+    public void testFailedRequestNotRetained() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient("paris") {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public NamedList<Object> request(@SuppressWarnings("rawtypes") SolrRequest request,
+                    String collection) throws SolrServerException, IOException {
+                throw new IOException("simulated network error");
+            }
+        };
+        TagRequest request = new TagRequest(new TagParams(), new ContentStreamBase.StringStream(CONTENT));
+        request.setMetricsListener(metrics -> fail("failed requests are not reported"));
+        WeakReference<TagRequest> ref = new WeakReference<>(request);
+        try {
+            request.process(client);
+            fail("IOException expected");
+        } catch (IOException e) {
+            //expected
+        }
+        request = null;
+        for(int i = 0; i < 50 && ref.get() != null; i++){
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+}
@@ -0,0 +1,108 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import static io.redlink.solr.client.solrj.tag.TagFixtures.NAMES;
+import static io.redlink.solr.client.solrj.tag.TagFixtures.createContent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.Test;
+
+public class TagResponseTest {
+
+    @Test
+    public void testRawTagsReplaced() {
+        List<NamedList<Object>> tags = new ArrayList<>();
+        tags.add(tag(0, 5, "Paris", "p1", "p2"));
+        tags.add(tag(10, 15, null, "p2"));
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("tagsCount", tags.size());
+        res.add("tags", tags);
+        TagResponse response = new TagResponse(res, null);
+
+        assertArrayEquals(new int[]{0, 10}, response.getStartOffsets());
+        assertArrayEquals(new int[]{5, 15}, response.getEndOffsets());
+        Object raw = response.getResponse().get("tags");
+        assertNotSame(tags, raw);
+        assertEquals(tags, raw); //the view creates equal tags
+        assertEquals("Paris", response.getTags().get(0).getMatchText());
+        //the view can be parsed again
+        TagResponse copy = new TagResponse(response.getResponse(), null);
+        assertArrayEquals(response.getStartOffsets(), copy.getStartOffsets());
+        assertEquals(Arrays.asList("p1", "p2"), copy.getTags().get(0).getIds());
+    }
+
+    @Test
+    public void testTagsForDocument() {
+        List<NamedList<Object>> tags = new ArrayList<>();
+        tags.add(tag(0, 5, null, "p1", "p2"));
+        tags.add(tag(10, 15, null, "p2"));
+        tags.add(tag(20, 25, null, "p3"));
+        NamedList<Object> res = new SimpleOrderedMap<>();
+        res.add("tagsCount", tags.size());
+        res.add("tags", tags);
+        TagResponse response = new TagResponse(res, null);
+
+        assertEquals(2, response.getTagsForDocument("p2").size());
+        assertEquals(0, response.getTagsForDocument("p2").get(0).getStart());
+        assertEquals(10, response.getTagsForDocument("p2").get(1).getStart());
+        assertEquals(20, response.getTagsForDocument("p3").get(0).getStart());
+        assertTrue(response.getTagsForDocument("unknown").isEmpty());
+        assertTrue(response.getTagsForDocument(null).isEmpty());
+        assertEquals(1, response.getMentionCount("p1"));
+        assertEquals(2, response.getMentionCount("p2"));
+        assertEquals(0, response.getMentionCount("unknown"));
+        Map<Object, Integer> counts = new HashMap<>();
+        response.forEachMentionCount(counts::put);
+        Map<Object, Integer> expected = new HashMap<>();
+        expected.put("p1", 1);
+        expected.put("p2", 2);
+        expected.put("p3", 1);
+        assertEquals(expected, counts);
+    }
+
+    @Test
+    public void testTagsForDocumentEqualsTags() throws Exception {
+        LocalTaggerClient client = new LocalTaggerClient(NAMES);
+        TagParams params = new TagParams();
+        params.setOverlaps(TagParams.Overlaps.ALL);
+        TagResponse response = client.getTagger().tag(params, createContent(new Random(5), 2000, " ", ". "));
+        Map<Object, List<Integer>> expected = new HashMap<>();
+        for(int t = 0; t < response.getTagCount(); t++){
+            for(Object id : response.getTags().get(t).getIds()){
+                expected.computeIfAbsent(id, k -> new ArrayList<>()).add(response.getTags().get(t).getStart());
+            }
+        }
+        assertEquals(NAMES.length, expected.size());
+        for(Map.Entry<Object, List<Integer>> entry : expected.entrySet()){
+            List<Integer> starts = new ArrayList<>();
+            for(TagResponse.Tag tag : response.getTagsForDocument(entry.getKey())){
+                starts.add(tag.getStart());
+            }
+            assertEquals(entry.getValue(), starts);
+            assertEquals(entry.getValue().size(), response.getMentionCount(entry.getKey()));
+        }
+    }
+
+    private static NamedList<Object> tag(int start, int end, String matchText, Object... ids) {
+        NamedList<Object> tag = new NamedList<>();
+        tag.add("startOffset", start);
+        tag.add("endOffset", end);
+        tag.add("ids", new ArrayList<>(Arrays.asList(ids)));
+        if(matchText != null){
+            tag.add("matchText", matchText);
+        }
+        return tag;
+    }
+}
@@ -0,0 +1,30 @@
+package io.redlink.solr.client.solrj.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class TagResultCacheTest {
+
+    @Test
+    public void testKey() {
+        String text = "first paragraph\n\nsecond paragraph";
+        assertEquals(TagResultCache.key("/tag?", text, 0, 15), TagResultCache.key("/tag?", "first paragraph", 0, 15));
+        assertEquals(TagResultCache.key("/tag?", text, 0, 15).hashCode(),
+                TagResultCache.key("/tag?", "first paragraph", 0, 15).hashCode());
+        assertNotEquals(TagResultCache.key("/tag?", text, 0, 15), TagResultCache.key("/tag?", text, 17, 33));
+        assertNotEquals(TagResultCache.key("/tag?", text, 0, 15), TagResultCache.key("/tag?a=b&", text, 0, 15));
+        //differ only in the high byte of a char
+        assertNotEquals(TagResultCache.key("/tag?", "\u0161", 0, 1), TagResultCache.key("/tag?", "a", 0, 1));
+        //longer as the digest buffer
+        StringBuilder large = new StringBuilder();
+        for(int i = 0; i < 5000; i++){
+            large.append((char)('a' + i % 26));
+        }
+        String other = large.substring(0, 4999) + 'x';
+        assertNotEquals(TagResultCache.key("/tag?", large, 0, 5000), TagResultCache.key("/tag?", other, 0, 5000));
+        assertEquals(TagResultCache.key("/tag?", large, 0, 5000),
+                TagResultCache.key("/tag?", large.toString(), 0, 5000));
+    }
+}